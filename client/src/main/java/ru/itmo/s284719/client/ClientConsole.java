@@ -1,13 +1,18 @@
 package ru.itmo.s284719.client;
 import ru.itmo.s284719.network.*;
 import ru.itmo.s284719.network.commands.*;
+import ru.itmo.s284719.network.commands.Command;
+import ru.itmo.s284719.network.collection.SpaceMarineQuery;
 
 import java.io.*;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.SocketAddress;
 import java.net.UnknownHostException;
+import java.nio.channels.DatagramChannel;
 import java.nio.channels.SocketChannel;
 import java.util.*;
+import java.util.function.Consumer;
 
 /**
  * Client's class with really commands.
@@ -28,10 +33,68 @@ public class ClientConsole extends ModifiedCMD {
      * The client's channel.
      */
     private SocketChannel channel;
+    /**
+     * The connection for transmitting objects through the client's channel.
+     */
+    private ObjectSocketChannel objectChannel;
     /**
      * The field with information about connection.
      */
     public boolean wasConnected = false;
+    /**
+     * The maximal count of requests sent without answers while a script is executed.
+     */
+    public static final int MAX_REQUESTS_IN_FLIGHT = 256;
+    /**
+     * The ID of the last sent request.
+     */
+    private int lastRequestId = 0;
+    /**
+     * The handlers of answers for the sent requests by the requests' IDs.
+     */
+    private final Map<Integer, Consumer<Object>> pendingRequests = new LinkedHashMap<>();
+    /**
+     * The maximal count of commands in one batch of a not atomic script.
+     */
+    public static final int MAX_BATCH_SIZE = 1000;
+    /**
+     * The commands of the executed script collected for sending in one batch (null if a script isn't executed).
+     */
+    private ArrayList<Command> batchCommands;
+    /**
+     * The handlers of answers for the collected commands.
+     */
+    private List<Consumer<Object>> batchHandlers;
+    /**
+     * The field with information about the atomic execution of the script.
+     */
+    private boolean batchAtomic;
+    /**
+     * The field with information about negotiation of the compression with the server.
+     * It's chosen by the system's property "compression" (true by default).
+     */
+    public static final boolean COMPRESSION = Boolean.parseBoolean(System.getProperty("compression", "true"));
+    /**
+     * The field with information about sending of read-only queries by datagrams.
+     * It's chosen by the system's property "udp" (false by default).
+     */
+    public static final boolean UDP = Boolean.getBoolean("udp");
+    /**
+     * The time of waiting for the first answer to the datagram in milliseconds (it's doubled for every retry).
+     */
+    public static final int DATAGRAM_TIMEOUT = 100;
+    /**
+     * The maximal count of sending of one query by datagrams.
+     */
+    public static final int DATAGRAM_ATTEMPTS = 5;
+    /**
+     * The channel for read-only queries by datagrams (opened at the first query).
+     */
+    private DatagramObjectChannel datagramChannel;
+    /**
+     * The ID of the last query sent by datagrams (IDs are repeated after 32767).
+     */
+    private int lastDatagramId = 0;
 
     /**
      * Client's constructor.
@@ -53,6 +116,7 @@ public class ClientConsole extends ModifiedCMD {
             try {
                 channel = SocketChannel.open(new InetSocketAddress(IP, PORT));
                 channel.configureBlocking(false);
+                openObjectChannel();
                 if (channel == null) {
                     throw new IOException("The server is disconnected.");
                 }
@@ -84,7 +148,7 @@ public class ClientConsole extends ModifiedCMD {
                         err.flush();
                         channel = SocketChannel.open(new InetSocketAddress(IP, PORT));
                         channel.configureBlocking(false);
-
+                        openObjectChannel();
                     } catch (InterruptedException | IOException e2) {
 //                          // for logging.
 //                          e2.printStacktrace();
@@ -95,6 +159,268 @@ public class ClientConsole extends ModifiedCMD {
         } while (true);
     }
 
+    /**
+     * Open the connection for transmitting objects through the new client's channel.
+     * The old connection is closed and its buffers are returned to the pool.
+     * The compression of big payloads is negotiated with the server before other requests.
+     */
+    private void openObjectChannel() throws IOException {
+        if (objectChannel != null) {
+            objectChannel.close();
+        }
+        // the answers for requests to the old connection will never be received.
+        pendingRequests.clear();
+        objectChannel = new ObjectSocketChannel(channel);
+
+        if (COMPRESSION) {
+            ObjectSocketChannel negotiated = objectChannel;
+            int id = ++lastRequestId;
+            pendingRequests.put(id, object -> negotiated.setCompression(Boolean.TRUE.equals(object)));
+            objectChannel.sendObject(new Request(id, new Compression(true)));
+            // wait for the answer, so the first read-only query can be sent by datagrams.
+            awaitResponses(0);
+        }
+    }
+
+    /**
+     * Send the command to the server and handle the answer when it's received.
+     * While a script is executed the command is added to the batch of the script.
+     *
+     * @param command the command for the server.
+     * @param handler the handler of the server's answer.
+     */
+    private void request(Command command, Consumer<Object> handler) throws IOException {
+        if (batchCommands == null) {
+            send(command, handler);
+            return;
+        }
+        batchCommands.add(command);
+        batchHandlers.add(handler);
+        if (!batchAtomic && batchCommands.size() >= MAX_BATCH_SIZE) {
+            sendBatch();
+        }
+    }
+
+    /**
+     * Send the read-only query to the server and handle the answer.
+     * If the datagram mode is on and there aren't waiting requests through the client's channel
+     * than the query is sent by datagrams, else it's sent as the usual request.
+     * The query is repeated as the usual request if it or its answer doesn't fit into one datagram.
+     *
+     * @param command the read-only command for the server.
+     * @param handler the handler of the server's answer.
+     */
+    private void query(Command command, Consumer<Object> handler) throws IOException {
+        if (!UDP || batchCommands != null || !pendingRequests.isEmpty()) {
+            request(command, handler);
+            return;
+        }
+        // open datagram's channel only once.
+        if (datagramChannel == null) {
+            datagramChannel = new DatagramObjectChannel(DatagramChannel.open());
+        }
+        InetSocketAddress server = new InetSocketAddress(IP, PORT);
+        lastDatagramId = (lastDatagramId + 1) & Short.MAX_VALUE;
+        int id = lastDatagramId;
+
+        try {
+            for (int attempt = 0; attempt < DATAGRAM_ATTEMPTS; ++attempt) {
+                try {
+                    datagramChannel.send(new Request(id, command), server);
+                } catch (DatagramTooBigException e) {
+                    // if (the query doesn't fit into the datagram) than: send it through the client's channel.
+                    request(command, handler);
+                    return;
+                }
+                long deadline = System.currentTimeMillis() + ((long) DATAGRAM_TIMEOUT << attempt);
+                long left;
+                while ((left = deadline - System.currentTimeMillis()) > 0) {
+                    Pair<SocketAddress, Object> received = datagramChannel.receive(left);
+                    // if (it's the late answer for the old query) than: ignore that.
+                    if (received == null || !(received.second instanceof Response)
+                            || ((Response) received.second).id != id) {
+                        continue;
+                    }
+                    Object result = ((Response) received.second).result;
+                    // if (the answer doesn't fit into the datagram) than: repeat the query through the client's channel.
+                    if (result instanceof DatagramTooBigException) {
+                        request(command, handler);
+                    } else if (result instanceof Exception) {
+                        err.println("Exception: " + ((Exception) result).getMessage());
+                    } else {
+                        handler.accept(result);
+                    }
+                    return;
+                }
+            }
+        } catch (ClassNotFoundException e) {
+            err.println(Arrays.toString(e.getStackTrace()));
+            return;
+        }
+        err.println("Server with IP: " + IP + ", Port: " + PORT + " doesn't answer to datagrams.");
+    }
+
+    /**
+     * Send collected commands of the script in one batch.
+     * The handler of the batch passes every result to the handler of its command.
+     */
+    private void sendBatch() throws IOException {
+        if (batchCommands.isEmpty()) {
+            return;
+        }
+        List<Consumer<Object>> handlers = batchHandlers;
+        Batch batch = new Batch(batchCommands, batchAtomic);
+        batchCommands = new ArrayList<>();
+        batchHandlers = new ArrayList<>();
+
+        send(batch, object -> {
+            if (object instanceof Exception) {
+                err.println("The script is rolled back: " + ((Exception) object).getMessage());
+            } else if (!(object instanceof List) || ((List<?>) object).size() != handlers.size()) {
+                err.println("Invalid object type returned: expected \"List\" with results of the batch.");
+            } else {
+                List<?> results = (List<?>) object;
+                for (int i = 0; i < results.size(); ++i) {
+                    if (results.get(i) instanceof Exception) {
+                        err.println("Exception: " + ((Exception) results.get(i)).getMessage());
+                    } else {
+                        handlers.get(i).accept(results.get(i));
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Send the command to the server and handle the answer when it's received.
+     * In the interactive mode the function waits for the answer.
+     * While a script is executed the function doesn't wait
+     * (if there are less than {@link #MAX_REQUESTS_IN_FLIGHT} requests without answers).
+     *
+     * @param command the command for the server.
+     * @param handler the handler of the server's answer.
+     */
+    private void send(Command command, Consumer<Object> handler) throws IOException {
+        checkConnection();
+        int id = ++lastRequestId;
+        pendingRequests.put(id, handler);
+        objectChannel.sendObject(new Request(id, command));
+
+        // handle already received answers.
+        objectChannel.read();
+        while (objectChannel.hasObject()) {
+            handleResponse();
+        }
+        awaitResponses(stackReaders.isEmpty() ? 0 : MAX_REQUESTS_IN_FLIGHT - 1);
+    }
+
+    /**
+     * Wait for answers while the count of requests without answers is greater than the specified count.
+     *
+     * @param maxPending the count of requests which can stay without answers.
+     */
+    private void awaitResponses(int maxPending) throws IOException {
+        while (pendingRequests.size() > maxPending) {
+            handleResponse();
+        }
+    }
+
+    /**
+     * Receive the answer and run the handler of its request.
+     */
+    private void handleResponse() throws IOException {
+        try {
+            Object object = objectChannel.getObject();
+            if (!(object instanceof Response)) {
+                err.println("Invalid object type returned: expected \"Response\".");
+                return;
+            }
+            Response response = (Response) object;
+            // if (the answer isn't the last chunk) than: keep the handler for next chunks.
+            Consumer<Object> handler = response.result instanceof Chunk && !((Chunk) response.result).last
+                    ? pendingRequests.get(response.id)
+                    : pendingRequests.remove(response.id);
+            if (handler == null) {
+                err.println("Received the answer for unknown request: " + response.id + ".");
+                return;
+            }
+            handler.accept(response.result);
+        } catch (ClassNotFoundException e) {
+            err.println(Arrays.toString(e.getStackTrace()));
+        }
+    }
+
+    /**
+     * Handler of answers which must be empty.
+     *
+     * @param object the server's answer.
+     */
+    private void expectNull(Object object) {
+        if (object != null) {
+            err.println("Invalid object type returned: expected \"null\".");
+        }
+    }
+
+    /**
+     * Handler of answers with a string for printing.
+     *
+     * @param object the server's answer.
+     */
+    private void printString(Object object) {
+        if (!(object instanceof String)) {
+            err.println("Invalid object type returned: expected \"String\".");
+            return;
+        }
+        out.println(object);
+    }
+
+    /**
+     * Handler of answers with chunks of space marines (the chunks are printed as one array in the format JSON).
+     *
+     * @param object the server's answer.
+     */
+    private void printChunk(Object object) {
+        if (!(object instanceof Chunk)) {
+            err.println("Invalid object type returned: expected \"Chunk\".");
+            return;
+        }
+        Chunk chunk = (Chunk) object;
+        if (chunk.offset == 0) {
+            out.println(chunk.last && chunk.spaceMarines.isEmpty() ? "[]" : "[");
+        }
+        for (int i = 0; i < chunk.spaceMarines.size(); ++i) {
+            out.print(chunk.offset + i == 0 ? "" : ",\n");
+            out.print(gson.toJson(chunk.spaceMarines.get(i)));
+        }
+        if (chunk.last && !(chunk.offset == 0 && chunk.spaceMarines.isEmpty())) {
+            out.println("\n]");
+        }
+        out.flush();
+    }
+
+    /**
+     * Handler of answers with pages of space marines (the page is printed as the array in the format JSON
+     * with the command of the next page).
+     *
+     * @param object the server's answer.
+     */
+    private void printPage(Object object) {
+        // if (the server hasn't found the page) than: print the server's message.
+        if (object instanceof String) {
+            err.println(object);
+            return;
+        }
+        if (!(object instanceof Page)) {
+            err.println("Invalid object type returned: expected \"Page\".");
+            return;
+        }
+        Page page = (Page) object;
+        out.println(page.spaceMarines.isEmpty() ? "[]" : gson.toJson(page.spaceMarines));
+        if (page.cursor != null) {
+            out.println("The next page: show next " + page.cursor);
+        }
+        out.flush();
+    }
 
     public void checkConnection() throws IOException {
         if (!channel.isConnected()) {
@@ -119,19 +445,7 @@ public class ClientConsole extends ModifiedCMD {
         }
 
         // else print to client's console an information about the collection.
-        try {
-            checkConnection();
-            ObjectSocketChannel.sendObject(channel, new Info());
-            Object object = ObjectSocketChannel.getObject(channel);
-
-            if (!object.getClass().equals(String.class)) {
-                err.println("Invalid object type returned: expected \"String\".");
-            } else {
-                out.println(object);
-            }
-        } catch (ClassNotFoundException e) {
-            e.printStackTrace();
-        }
+        query(new Info(), this::printString);
     }
 
     /**
@@ -142,27 +456,21 @@ public class ClientConsole extends ModifiedCMD {
      */
     @Override
     public void show(String[] args) throws IOException {
-        // if (the command has easy parameters) than: print exception and return.
-        if (args == null || args.length != 0) {
-            err.println("show: this command hasn't parameters.");
+        // if (the command hasn't parameters) than: print the whole collection by chunks.
+        if (args == null || args.length == 0) {
+            request(new Show(), this::printChunk);
             return;
         }
 
-        // else: print that.
+        // else: check parameters of the page and print the page.
+        ShowPage showPage;
         try {
-            checkConnection();
-            ObjectSocketChannel.sendObject(channel, new Show());
-            Object object = ObjectSocketChannel.getObject(channel);
-
-            if (!object.getClass().equals(String.class)) {
-                err.println("Invalid object type returned: expected \"String\".");
-                return;
-            }
-
-            out.println(object);
-        } catch (ClassNotFoundException e) {
-            err.println(Arrays.toString(e.getStackTrace()));
+            showPage = ShowCursors.parse(args);
+        } catch (IllegalArgumentException e) {
+            err.println("show: " + e.getMessage());
+            return;
         }
+        request(showPage, this::printPage);
     }
 
     /**
@@ -178,21 +486,9 @@ public class ClientConsole extends ModifiedCMD {
             return;
         }
         // else: read composite parameter (SpaceMarine) and add that to the collection.
-        try {
-            checkConnection();
-            SpaceMarine spaceMarine = inputSpaceMarine();
-
-            checkConnection();
-            ObjectSocketChannel.sendObject(channel, new Add(spaceMarine));
-            Object object = ObjectSocketChannel.getObject(channel);
-
-
-            if (object != null) {
-                err.println("Invalid object type returned: expected \"null\".");
-            }
-        } catch (ClassNotFoundException e) {
-            err.println(Arrays.toString(e.getStackTrace()));
-        }
+        checkConnection();
+        SpaceMarine spaceMarine = inputSpaceMarine();
+        request(new Add(spaceMarine), this::expectNull);
     }
 
     /**
@@ -223,21 +519,11 @@ public class ClientConsole extends ModifiedCMD {
             return;
         }
 
-        try {
-            // read composite parameter (SpaceMarine).
-            checkConnection();
-            SpaceMarine spaceMarine = inputSpaceMarine();
-            // update element from collection with the ID.
-            checkConnection();
-            ObjectSocketChannel.sendObject(channel, new Update(id, spaceMarine));
-            Object object = ObjectSocketChannel.getObject(channel);
-
-            if (object != null) {
-                err.println("Invalid object type returned: expected \"null\".");
-            }
-        } catch (ClassNotFoundException e) {
-            err.println(Arrays.toString(e.getStackTrace()));
-        }
+        // read composite parameter (SpaceMarine).
+        checkConnection();
+        SpaceMarine spaceMarine = inputSpaceMarine();
+        // update element from collection with the ID.
+        request(new Update(id, spaceMarine), this::expectNull);
     }
 
     /**
@@ -247,33 +533,27 @@ public class ClientConsole extends ModifiedCMD {
      */
     @Override
     public void removeById(String[] args) throws IOException {
-        try {
-            // if (the command hasn't only one easy parameter) than: print exception and return.
-            if (args == null || args.length != 1) {
-                err.println("remove_by_id: this command has one easy parameter \"ID\".");
-                return;
-            }
+        // if (the command hasn't only one easy parameter) than: print exception and return.
+        if (args == null || args.length != 1) {
+            err.println("remove_by_id: this command has one easy parameter \"ID\".");
+            return;
+        }
 
-            // else: check parameter (Integer, not null, greater than zero)
-            // and remove element from collection with the ID.
-            int id = Integer.parseInt(args[0]);
+        // else: check parameter (Integer, not null, greater than zero)
+        // and remove element from collection with the ID.
+        int id;
+        try {
+            id = Integer.parseInt(args[0]);
             if (id <= 0) {
                 throw new IllegalArgumentException();
             }
-
-            checkConnection();
-            ObjectSocketChannel.sendObject(channel, new RemoveById(id));
-            Object object = ObjectSocketChannel.getObject(channel);
-
-            if (object != null) {
-                err.println("Invalid object type returned: expected \"null\".");
-            }
-        } catch (ClassNotFoundException e) {
-            err.println(Arrays.toString(e.getStackTrace()));
         } catch (IllegalArgumentException e) {
             // if (check is fail) than: print exception and return.
             err.println("remove_by_id: the command's parameter is a positive number.");
+            return;
         }
+
+        request(new RemoveById(id), this::expectNull);
     }
 
     /**
@@ -283,17 +563,7 @@ public class ClientConsole extends ModifiedCMD {
      */
     @Override
     public void clear(String[] args) throws IOException {
-        try {
-            checkConnection();
-            ObjectSocketChannel.sendObject(channel, new Clear());
-            Object object = ObjectSocketChannel.getObject(channel);
-
-            if (object != null) {
-                err.println("Invalid object type returned: expected \"null\".");
-            }
-        } catch (ClassNotFoundException e) {
-            err.println(Arrays.toString(e.getStackTrace()));
-        }
+        request(new Clear(), this::expectNull);
     }
 
     /**
@@ -306,6 +576,60 @@ public class ClientConsole extends ModifiedCMD {
         err.println("save: this command is not available on the client application.");
     }
 
+    /**
+     * Read and execute the script from the specified file.
+     * Commands of the script (with nested scripts) are sent to the server in batches,
+     * all answers are received at the end of the script.
+     * With the second parameter "atomic" the script is sent in one batch
+     * and the server executes all its commands or none of them.
+     *
+     * @param args the command's arguments.
+     */
+    @Override
+    public void executeScript(String[] args) throws IOException {
+        // if (the script is nested) than: its commands are added to the batch of the outer script.
+        if (batchCommands != null) {
+            super.executeScript(args);
+            return;
+        }
+
+        // else: check the parameter "atomic".
+        if (args != null && args.length == 2) {
+            if (!args[1].equals("atomic")) {
+                err.println("execute_script: the second parameter can be only \"atomic\".");
+                return;
+            }
+            batchAtomic = true;
+            args = new String[] {args[0]};
+        } else {
+            batchAtomic = false;
+        }
+
+        batchCommands = new ArrayList<>();
+        batchHandlers = new ArrayList<>();
+        Throwable failure = null;
+        try {
+            super.executeScript(args);
+            sendBatch();
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            batchCommands = null;
+            batchHandlers = null;
+            // wait for answers for all commands of the script.
+            try {
+                awaitResponses(0);
+            } catch (IOException | RuntimeException e) {
+                // if (the script has failed) than: keep its exception and attach this one to it.
+                if (failure == null) {
+                    throw e;
+                }
+                failure.addSuppressed(e);
+            }
+        }
+    }
+
     /**
      * Terminate the program without saving in to a fail.
      *
@@ -319,7 +643,15 @@ public class ClientConsole extends ModifiedCMD {
         }
 
         try {
-            channel.close();
+            // send collected commands of the executed script and receive answers for all sent commands.
+            if (batchCommands != null) {
+                sendBatch();
+            }
+            awaitResponses(0);
+            objectChannel.close();
+            if (datagramChannel != null) {
+                datagramChannel.close();
+            }
         } finally {
             System.exit(0);
         }
@@ -339,20 +671,14 @@ public class ClientConsole extends ModifiedCMD {
         }
 
         // else if (the queue isn't empty): print and remove element from head of the collection.
-        try {
-            checkConnection();
-            ObjectSocketChannel.sendObject(channel, new RemoveHead());
-            Object object = ObjectSocketChannel.getObject(channel);
-
+        request(new RemoveHead(), object -> {
             if (object == null) {
             } else if (object.getClass().equals(SpaceMarine.class)) {
                 out.println(object);
             } else {
                 err.println("Invalid object type returned: expected \"Optional<SpaceMarine>\".");
             }
-        } catch (ClassNotFoundException e) {
-            e.printStackTrace();
-        }
+        });
     }
 
     /**
@@ -368,21 +694,11 @@ public class ClientConsole extends ModifiedCMD {
             return;
         }
 
-        try {
-            // else: read composite parameter (SpaceMarine).
-            checkConnection();
-            SpaceMarine spaceMarine = inputSpaceMarine();
-            // if (the element is minimal) than: add the element to the collection.
-            checkConnection();
-            ObjectSocketChannel.sendObject(channel, new AddIfMin(spaceMarine));
-            Object object = ObjectSocketChannel.getObject(channel);
-
-            if (object != null) {
-                err.println("Invalid object type returned: expected \"null\".");
-            }
-        } catch (ClassNotFoundException e) {
-            err.println(Arrays.toString(e.getStackTrace()));
-        }
+        // else: read composite parameter (SpaceMarine).
+        checkConnection();
+        SpaceMarine spaceMarine = inputSpaceMarine();
+        // if (the element is minimal) than: add the element to the collection.
+        request(new AddIfMin(spaceMarine), this::expectNull);
     }
 
     /**
@@ -398,21 +714,11 @@ public class ClientConsole extends ModifiedCMD {
             return;
         }
 
-        try {
-            // read composite parameter (SpaceMarine).
-            checkConnection();
-            SpaceMarine spaceMarine = inputSpaceMarine();
-            // remove all elements from the collection greater than the element.
-            checkConnection();
-            ObjectSocketChannel.sendObject(channel, new RemoveGreater(spaceMarine));
-            Object object = ObjectSocketChannel.getObject(channel);
-
-            if (object != null) {
-                err.println("Invalid object type returned: expected \"null\".");
-            }
-        } catch (ClassNotFoundException e) {
-            err.println(Arrays.toString(e.getStackTrace()));
-        }
+        // read composite parameter (SpaceMarine).
+        checkConnection();
+        SpaceMarine spaceMarine = inputSpaceMarine();
+        // remove all elements from the collection greater than the element.
+        request(new RemoveGreater(spaceMarine), this::expectNull);
     }
 
     /**
@@ -431,29 +737,21 @@ public class ClientConsole extends ModifiedCMD {
 
         // else if (the command hasn't parameters) than: the command has one easy parameter "zero".
         if (args.length == 0) {
-            checkConnection();
-            ObjectSocketChannel.sendObject(channel,new RemoveAnyByHeight(0));
-            return;
+            args = new String[] {"0"};
         }
 
         // check the parameter (Integer)
         // and remove any element from the collection whose has a height equal to the height.
+        int height;
         try {
-            int height = Integer.parseInt(args[0]);
-
-            checkConnection();
-            ObjectSocketChannel.sendObject(channel, new RemoveAnyByHeight(height));
-            Object object = ObjectSocketChannel.getObject(channel);
-
-            if (object != null) {
-                err.println("Invalid object type returned: expected \"null\".");
-            }
-        } catch (ClassNotFoundException e) {
-            err.println(Arrays.toString(e.getStackTrace()));
+            height = Integer.parseInt(args[0]);
         } catch (NumberFormatException e) {
             // if (check is fail) than: print the exception and return.
             err.println("remove_any_by_height: the command's parameter is a number.");
+            return;
         }
+
+        request(new RemoveAnyByHeight(height), this::expectNull);
     }
 
     /**
@@ -470,21 +768,51 @@ public class ClientConsole extends ModifiedCMD {
         }
 
         // else: get and print server's answer.
-        try {
-            checkConnection();
-            ObjectSocketChannel.sendObject(channel, new AverageOfHeight());
-            Object object = ObjectSocketChannel.getObject(channel);
+        query(new AverageOfHeight(), this::printString);
+    }
 
-            if (!object.getClass().equals(String.class)) {
-                err.println("Invalid object type returned: expected \"String\".");
-                return;
-            }
+    /**
+     * Output counts of elements by values of the category field.
+     *
+     * @param args the command's arguments.
+     */
+    @Override
+    public void categoryStats(String[] args) throws IOException {
+        // if (the command has parameters) than: print the exception and return.
+        if (args == null || args.length != 0) {
+            err.println("category_stats: this command hasn't parameters.");
+            return;
+        }
 
-            String str = (String) object;
-            out.println(str);
-        } catch (ClassNotFoundException e) {
-            err.println(Arrays.toString(e.getStackTrace()));
+        // else: get and print server's answer.
+        query(new CategoryStats(), this::printString);
+    }
+
+    /**
+     * Run the query over the collection on the server and output its result.
+     * The query is compiled locally first, so incorrect queries aren't sent.
+     *
+     * @param args words of the query.
+     */
+    @Override
+    public void query(String[] args) throws IOException {
+        // if (the command hasn't parameters) than: print the exception and return.
+        if (args == null || args.length == 0) {
+            err.println("query: this command has the parameter: query.");
+            return;
         }
+
+        String text = String.join(" ", args);
+        try {
+            SpaceMarineQuery.compile(text);
+        } catch (IllegalArgumentException e) {
+            // if (the query isn't correct) than: print the exception and return.
+            err.println("query: " + e.getMessage());
+            return;
+        }
+
+        // else: get and print server's answer.
+        query(new Query(text), this::printString);
     }
 
     /**
@@ -502,30 +830,16 @@ public class ClientConsole extends ModifiedCMD {
 
         // else: check parameter(MeleeWeapon) and print count elements from the collection
         // with MeleeWeapon greater than the MeleeWeapon.
+        MeleeWeapon meleeWeapon;
         try {
-            MeleeWeapon meleeWeapon = MeleeWeapon.valueOf(args[0]);
-            // if (check is fail) than: print the exception and return.
-            if (meleeWeapon == null) {
-                err.println("count_greater_than_melee_weapon: this command has one easy parameter \"MeleeWeapon\" type of enumeration.");
-                return;
-            }
-
-            // else: print the count.
-            checkConnection();
-            ObjectSocketChannel.sendObject(channel, new CountGreaterThanMeleeWeapon(meleeWeapon));
-            Object object = ObjectSocketChannel.getObject(channel);
-
-            if (!object.getClass().equals(String.class)) {
-                err.println("Invalid object type returned: expected \"String\".");
-                return;
-            }
-
-            out.println(object);
-        } catch (ClassNotFoundException e) {
-            err.println(Arrays.toString(e.getStackTrace()));
+            meleeWeapon = MeleeWeapon.valueOf(args[0]);
         } catch (IllegalArgumentException e) {
-            // warning: the code should not start.
+            // if (check is fail) than: print the exception and return.
             err.println("count_greater_than_melee_weapon: this command has one easy parameter \"MeleeWeapon\" type of enumeration.");
+            return;
         }
+
+        // else: print the count.
+        query(new CountGreaterThanMeleeWeapon(meleeWeapon), this::printString);
     }
-}
\ No newline at end of file
+}
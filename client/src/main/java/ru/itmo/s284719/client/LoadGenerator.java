@@ -0,0 +1,120 @@
+package ru.itmo.s284719.client;
+
+import ru.itmo.s284719.network.ObjectSocketChannel;
+import ru.itmo.s284719.network.Request;
+import ru.itmo.s284719.network.Response;
+import ru.itmo.s284719.network.commands.Info;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Load generator for comparing engines of the server.
+ * It opens idle connections (without requests) and active connections,
+ * every active connection sends the command "info" and waits for the answer in the loop.
+ * At the end the throughput and percentiles of the latency are printed.
+ * Arguments: IP, PORT, count of idle connections, count of active connections, duration in seconds.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class LoadGenerator {
+    /**
+     * Main function of the load generator.
+     *
+     * @param args IP, PORT, count of idle connections, count of active connections, duration in seconds.
+     */
+    public static void main(String[] args) throws Exception {
+        String ip = args.length > 0 ? args[0] : Client.DEFAULT_IP;
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : Client.DEFAULT_PORT;
+        int idle = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+        int active = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+        long duration = (args.length > 4 ? Long.parseLong(args[4]) : 10) * 1000;
+        InetSocketAddress address = new InetSocketAddress(ip, port);
+
+        // open idle connections.
+        List<SocketChannel> idleChannels = new ArrayList<>(idle);
+        for (int i = 0; i < idle; ++i) {
+            idleChannels.add(SocketChannel.open(address));
+        }
+        System.out.println("Idle connections: " + idleChannels.size() + ".");
+
+        // start active connections, every connection is served by its own virtual thread.
+        long[][] latencies = new long[active][];
+        AtomicInteger failed = new AtomicInteger();
+        long deadline = System.currentTimeMillis() + duration;
+        Thread[] threads = new Thread[active];
+        for (int i = 0; i < active; ++i) {
+            int index = i;
+            threads[i] = Thread.ofVirtual().start(() -> {
+                try {
+                    latencies[index] = runActive(address, deadline);
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                    latencies[index] = new long[0];
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (SocketChannel channel : idleChannels) {
+            channel.close();
+        }
+
+        // print the throughput and the latency.
+        long[] all = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+        System.out.printf("Requests: %d, failed connections: %d, throughput: %.1f requests/s.%n",
+                all.length, failed.get(), all.length * 1000.0 / duration);
+        if (all.length != 0) {
+            System.out.printf("Latency (ms): p50 %.3f, p90 %.3f, p99 %.3f, p99.9 %.3f, max %.3f.%n",
+                    percentile(all, 0.5), percentile(all, 0.9), percentile(all, 0.99),
+                    percentile(all, 0.999), all[all.length - 1] / 1e6);
+        }
+    }
+
+    /**
+     * Send requests through one connection until the deadline.
+     *
+     * @param address the server's address.
+     * @param deadline the time of the end in milliseconds.
+     * @return latencies of requests in nanoseconds.
+     */
+    private static long[] runActive(InetSocketAddress address, long deadline)
+            throws IOException, ClassNotFoundException {
+        long[] latencies = new long[1024];
+        int count = 0;
+        try (ObjectSocketChannel channel = new ObjectSocketChannel(SocketChannel.open(address))) {
+            int id = 0;
+            while (System.currentTimeMillis() < deadline) {
+                long start = System.nanoTime();
+                channel.sendObject(new Request(++id, new Info()));
+                Response response = (Response) channel.getObject();
+                if (response.id != id) {
+                    throw new IOException("Received the answer for unknown request: " + response.id + ".");
+                }
+                if (count == latencies.length) {
+                    latencies = Arrays.copyOf(latencies, count * 2);
+                }
+                latencies[count++] = System.nanoTime() - start;
+            }
+        }
+        return Arrays.copyOf(latencies, count);
+    }
+
+    /**
+     * Get the percentile of sorted latencies.
+     *
+     * @param sorted the sorted latencies in nanoseconds.
+     * @param fraction the fraction of the percentile (from 0 to 1).
+     * @return the percentile in milliseconds.
+     */
+    private static double percentile(long[] sorted, double fraction) {
+        return sorted[Math.min(sorted.length - 1, (int) (sorted.length * fraction))] / 1e6;
+    }
+}
@@ -0,0 +1,473 @@
+package ru.itmo.s284719.network;
+
+import ru.itmo.s284719.network.commands.*;
+import ru.itmo.s284719.network.commands.Command;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary codec for commands, space marines and strings.
+ * The payload is the magic byte, the version of the format and one tagged value.
+ * Enumerations are written as ordinals and dates as epoch's seconds and nanoseconds.
+ * Objects of other classes are written with the Java's serialization.
+ * Lengths, counts and ordinals of received payloads are checked before arrays are allocated,
+ * so a broken payload is rejected by {@link StreamCorruptedException} instead of exhausting the memory.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class BinaryCodec implements Codec {
+    /**
+     * The single instance of the codec.
+     */
+    public static final BinaryCodec INSTANCE = new BinaryCodec();
+    /**
+     * The first byte of every payload (Java's serialization starts with 0xAC).
+     */
+    public static final byte MAGIC = (byte) 0xB1;
+    /**
+     * The version of the format.
+     */
+    public static final byte VERSION = 1;
+
+    // tags of values.
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte SPACE_MARINE = 2;
+    private static final byte SERIALIZED = 3;
+    private static final byte REQUEST = 4;
+    private static final byte RESPONSE = 5;
+    private static final byte LIST = 6;
+    private static final byte BOOLEAN = 7;
+    private static final byte CHUNK = 8;
+    private static final byte ADD = 16;
+    private static final byte ADD_IF_MIN = 17;
+    private static final byte AVERAGE_OF_HEIGHT = 18;
+    private static final byte CLEAR = 19;
+    private static final byte COUNT_GREATER_THAN_MELEE_WEAPON = 20;
+    private static final byte INFO = 21;
+    private static final byte REMOVE_ANY_BY_HEIGHT = 22;
+    private static final byte REMOVE_BY_ID = 23;
+    private static final byte REMOVE_GREATER = 24;
+    private static final byte REMOVE_HEAD = 25;
+    private static final byte SHOW = 26;
+    private static final byte UPDATE = 27;
+    private static final byte BATCH = 28;
+    private static final byte COMPRESSION = 29;
+    private static final byte CATEGORY_STATS = 30;
+    private static final byte QUERY = 31;
+    private static final byte SHOW_PAGE = 32;
+    private static final byte PAGE = 33;
+
+    /**
+     * The cached values of enumerations.
+     */
+    private static final AstartesCategory[] CATEGORIES = AstartesCategory.values();
+    private static final MeleeWeapon[] MELEE_WEAPONS = MeleeWeapon.values();
+
+    @Override
+    public void encode(Object object, OutputStream out) throws IOException {
+        DataOutputStream dataOut = new DataOutputStream(out);
+        dataOut.writeByte(MAGIC);
+        dataOut.writeByte(VERSION);
+        writeValue(object, dataOut);
+        dataOut.flush();
+    }
+
+    @Override
+    public Object decode(InputStream stream) throws IOException, ClassNotFoundException {
+        DataInputStream in = new DataInputStream(stream);
+        if (in.readByte() != MAGIC) {
+            throw new StreamCorruptedException("Invalid magic byte of the binary codec.");
+        }
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new StreamCorruptedException("Unsupported version of the binary codec: " + version + ".");
+        }
+        return readValue(in);
+    }
+
+    /**
+     * Encode the value in advance, so it can be written many times without encoding.
+     *
+     * @param object the value.
+     * @return the encoded value for writing inside other values (e.g. as the result of the response).
+     */
+    public Encoded encodeValue(Object object) throws IOException {
+        ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
+        DataOutputStream dataOut = new DataOutputStream(byteOut);
+        writeValue(object, dataOut);
+        dataOut.flush();
+        return new Encoded(byteOut.toByteArray());
+    }
+
+    /**
+     * Write the tagged value.
+     *
+     * @param object the value.
+     * @param out the stream for writing.
+     */
+    protected void writeValue(Object object, DataOutputStream out) throws IOException {
+        if (object == null) {
+            out.writeByte(NULL);
+        } else if (object instanceof Encoded) {
+            // the value is encoded already (with its tag).
+            ((Encoded) object).writeTo(out);
+        } else if (object instanceof String) {
+            out.writeByte(STRING);
+            writeString((String) object, out);
+        } else if (object instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) object);
+        } else if (object instanceof SpaceMarine) {
+            out.writeByte(SPACE_MARINE);
+            writeSpaceMarine((SpaceMarine) object, out);
+        } else if (object instanceof Request) {
+            out.writeByte(REQUEST);
+            out.writeInt(((Request) object).id);
+            writeValue(((Request) object).command, out);
+        } else if (object instanceof Response) {
+            out.writeByte(RESPONSE);
+            out.writeInt(((Response) object).id);
+            writeValue(((Response) object).result, out);
+        } else if (object instanceof List) {
+            out.writeByte(LIST);
+            List<?> list = (List<?>) object;
+            out.writeInt(list.size());
+            for (Object element : list) {
+                writeValue(element, out);
+            }
+        } else if (object instanceof Chunk) {
+            out.writeByte(CHUNK);
+            Chunk chunk = (Chunk) object;
+            out.writeInt(chunk.offset);
+            out.writeBoolean(chunk.last);
+            out.writeInt(chunk.spaceMarines.size());
+            for (SpaceMarine spaceMarine : chunk.spaceMarines) {
+                writeSpaceMarine(spaceMarine, out);
+            }
+        } else if (object instanceof Page) {
+            out.writeByte(PAGE);
+            Page page = (Page) object;
+            writeString(page.cursor, out);
+            out.writeInt(page.spaceMarines.size());
+            for (SpaceMarine spaceMarine : page.spaceMarines) {
+                writeSpaceMarine(spaceMarine, out);
+            }
+        } else if (object instanceof Add) {
+            out.writeByte(ADD);
+            writeSpaceMarine(((Add) object).spaceMarine, out);
+        } else if (object instanceof AddIfMin) {
+            out.writeByte(ADD_IF_MIN);
+            writeSpaceMarine(((AddIfMin) object).spaceMarine, out);
+        } else if (object instanceof AverageOfHeight) {
+            out.writeByte(AVERAGE_OF_HEIGHT);
+        } else if (object instanceof CategoryStats) {
+            out.writeByte(CATEGORY_STATS);
+        } else if (object instanceof Clear) {
+            out.writeByte(CLEAR);
+        } else if (object instanceof Query) {
+            out.writeByte(QUERY);
+            writeString(((Query) object).text, out);
+        } else if (object instanceof CountGreaterThanMeleeWeapon) {
+            out.writeByte(COUNT_GREATER_THAN_MELEE_WEAPON);
+            out.writeByte(((CountGreaterThanMeleeWeapon) object).meleeWeapon.ordinal());
+        } else if (object instanceof Info) {
+            out.writeByte(INFO);
+        } else if (object instanceof RemoveAnyByHeight) {
+            out.writeByte(REMOVE_ANY_BY_HEIGHT);
+            writeNullableInt(((RemoveAnyByHeight) object).height, out);
+        } else if (object instanceof RemoveById) {
+            out.writeByte(REMOVE_BY_ID);
+            out.writeInt(((RemoveById) object).id);
+        } else if (object instanceof RemoveGreater) {
+            out.writeByte(REMOVE_GREATER);
+            writeSpaceMarine(((RemoveGreater) object).spaceMarine, out);
+        } else if (object instanceof RemoveHead) {
+            out.writeByte(REMOVE_HEAD);
+        } else if (object instanceof Show) {
+            out.writeByte(SHOW);
+        } else if (object instanceof ShowPage) {
+            out.writeByte(SHOW_PAGE);
+            ShowPage showPage = (ShowPage) object;
+            out.writeInt(showPage.offset);
+            out.writeInt(showPage.limit);
+            writeString(showPage.top, out);
+            writeString(showPage.cursor, out);
+        } else if (object instanceof Update) {
+            out.writeByte(UPDATE);
+            out.writeInt(((Update) object).id);
+            writeSpaceMarine(((Update) object).newSpaceMarine, out);
+        } else if (object instanceof Batch) {
+            out.writeByte(BATCH);
+            out.writeBoolean(((Batch) object).atomic);
+            writeValue(((Batch) object).commands, out);
+        } else if (object instanceof Compression) {
+            out.writeByte(COMPRESSION);
+            out.writeBoolean(((Compression) object).enabled);
+        } else {
+            // if (the class isn't known) than: write that with the Java's serialization.
+            out.writeByte(SERIALIZED);
+            ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
+            JavaCodec.INSTANCE.encode(object, byteOut);
+            out.writeInt(byteOut.size());
+            byteOut.writeTo(out);
+        }
+    }
+
+    /**
+     * Read the tagged value.
+     *
+     * @param in the stream for reading.
+     * @return the value.
+     */
+    protected Object readValue(DataInputStream in) throws IOException, ClassNotFoundException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case BOOLEAN:
+                return in.readBoolean();
+            case SPACE_MARINE:
+                return readSpaceMarine(in);
+            case SERIALIZED:
+                byte[] bytes = new byte[readLength(in)];
+                in.readFully(bytes);
+                return JavaCodec.INSTANCE.decode(new ByteArrayInputStream(bytes));
+            case REQUEST:
+                int requestId = in.readInt();
+                return new Request(requestId, (Command) readValue(in));
+            case RESPONSE:
+                int responseId = in.readInt();
+                return new Response(responseId, readValue(in));
+            case ADD:
+                return new Add(readSpaceMarine(in));
+            case ADD_IF_MIN:
+                return new AddIfMin(readSpaceMarine(in));
+            case AVERAGE_OF_HEIGHT:
+                return new AverageOfHeight();
+            case CATEGORY_STATS:
+                return new CategoryStats();
+            case CLEAR:
+                return new Clear();
+            case QUERY:
+                return new Query(readString(in));
+            case COUNT_GREATER_THAN_MELEE_WEAPON:
+                return new CountGreaterThanMeleeWeapon(readOrdinal(in, MELEE_WEAPONS));
+            case INFO:
+                return new Info();
+            case REMOVE_ANY_BY_HEIGHT:
+                return new RemoveAnyByHeight(readNullableInt(in));
+            case REMOVE_BY_ID:
+                return new RemoveById(in.readInt());
+            case REMOVE_GREATER:
+                return new RemoveGreater(readSpaceMarine(in));
+            case REMOVE_HEAD:
+                return new RemoveHead();
+            case SHOW:
+                return new Show();
+            case SHOW_PAGE:
+                int pageOffset = in.readInt();
+                int limit = in.readInt();
+                String top = readString(in);
+                return new ShowPage(pageOffset, limit, top, readString(in));
+            case UPDATE:
+                int id = in.readInt();
+                return new Update(id, readSpaceMarine(in));
+            case LIST:
+                int size = readLength(in);
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; ++i) {
+                    list.add(readValue(in));
+                }
+                return list;
+            case CHUNK:
+                int offset = in.readInt();
+                boolean last = in.readBoolean();
+                int count = readLength(in);
+                List<SpaceMarine> spaceMarines = new ArrayList<>(count);
+                for (int i = 0; i < count; ++i) {
+                    spaceMarines.add(readSpaceMarine(in));
+                }
+                return new Chunk(offset, spaceMarines, last);
+            case PAGE:
+                String cursor = readString(in);
+                int pageSize = readLength(in);
+                List<SpaceMarine> page = new ArrayList<>(pageSize);
+                for (int i = 0; i < pageSize; ++i) {
+                    page.add(readSpaceMarine(in));
+                }
+                return new Page(page, cursor);
+            case BATCH:
+                boolean atomic = in.readBoolean();
+                @SuppressWarnings("unchecked")
+                ArrayList<Command> commands = (ArrayList<Command>) readValue(in);
+                return new Batch(commands, atomic);
+            case COMPRESSION:
+                return new Compression(in.readBoolean());
+            default:
+                throw new StreamCorruptedException("Unknown tag of the binary codec: " + tag + ".");
+        }
+    }
+
+    /**
+     * Write the space marine without the tag.
+     *
+     * @param spaceMarine the space marine.
+     * @param out the stream for writing.
+     */
+    protected void writeSpaceMarine(SpaceMarine spaceMarine, DataOutputStream out) throws IOException {
+        out.writeInt(spaceMarine.getId());
+        writeString(spaceMarine.getName(), out);
+        out.writeLong(spaceMarine.getCoordinates().getX());
+        out.writeLong(spaceMarine.getCoordinates().getY());
+        ZonedDateTime creationDate = spaceMarine.getCreationDate();
+        out.writeLong(creationDate.toEpochSecond());
+        out.writeInt(creationDate.getNano());
+        writeString(creationDate.getZone().getId(), out);
+        out.writeLong(spaceMarine.getHealth());
+        writeNullableInt(spaceMarine.getHeight(), out);
+        out.writeByte(spaceMarine.getCategory().ordinal());
+        out.writeByte(spaceMarine.getMeleeWeapon().ordinal());
+        Chapter chapter = spaceMarine.getChapter();
+        writeString(chapter.getName(), out);
+        writeString(chapter.getParentLegion(), out);
+        out.writeInt(chapter.getMarinesCount());
+        writeString(chapter.getWorld(), out);
+    }
+
+    /**
+     * Read the space marine without the tag.
+     *
+     * @param in the stream for reading.
+     * @return the space marine.
+     */
+    protected SpaceMarine readSpaceMarine(DataInputStream in) throws IOException {
+        SpaceMarine spaceMarine = new SpaceMarine();
+        spaceMarine.setId(in.readInt());
+        spaceMarine.setName(readString(in));
+        long x = in.readLong();
+        spaceMarine.setCoordinates(new Coordinates(x, in.readLong()));
+        long seconds = in.readLong();
+        int nanos = in.readInt();
+        ZoneId zone = ZoneId.of(readString(in));
+        spaceMarine.setCreationDate(ZonedDateTime.ofInstant(Instant.ofEpochSecond(seconds, nanos), zone));
+        spaceMarine.setHealth(in.readLong());
+        spaceMarine.setHeight(readNullableInt(in));
+        spaceMarine.setCategory(readOrdinal(in, CATEGORIES));
+        spaceMarine.setMeleeWeapon(readOrdinal(in, MELEE_WEAPONS));
+        String name = readString(in);
+        String parentLegion = readString(in);
+        int marinesCount = in.readInt();
+        // equal chapters of received space marines are shared.
+        spaceMarine.setChapter(ChapterDictionary.SHARED.chapter(new Chapter(name, parentLegion, marinesCount, readString(in))));
+        return spaceMarine;
+    }
+
+    /**
+     * Write the string as its length and UTF-8 bytes (the length of null is -1).
+     *
+     * @param string the string.
+     * @param out the stream for writing.
+     */
+    protected static void writeString(String string, DataOutputStream out) throws IOException {
+        if (string == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read the string written by {@link #writeString(String, DataOutputStream)}.
+     *
+     * @param in the stream for reading.
+     * @return the string or null.
+     */
+    protected static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+        byte[] bytes = new byte[checkLength(length, in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read the length of bytes or the count of elements and check that.
+     *
+     * @param in the stream for reading.
+     * @return the length.
+     * @throws StreamCorruptedException if the length is negative or greater than the count of bytes left in the payload.
+     */
+    protected static int readLength(DataInputStream in) throws IOException {
+        return checkLength(in.readInt(), in);
+    }
+
+    /**
+     * Check the read length of bytes or count of elements: every byte or element takes at least one byte
+     * of the payload, so the length can't be greater than the count of bytes left in that.
+     *
+     * @param length the length.
+     * @param in the stream for reading (its available bytes are bytes left in the payload).
+     * @return the length.
+     * @throws StreamCorruptedException if the length is negative or greater than the count of bytes left in the payload.
+     */
+    private static int checkLength(int length, DataInputStream in) throws IOException {
+        if (length < 0 || length > in.available()) {
+            throw new StreamCorruptedException("Invalid length in the payload of the binary codec: " + length + ".");
+        }
+        return length;
+    }
+
+    /**
+     * Read the ordinal of the enumeration and get its value.
+     *
+     * @param in the stream for reading.
+     * @param values values of the enumeration.
+     * @param <E> the type of the enumeration.
+     * @return the value.
+     * @throws StreamCorruptedException if the ordinal isn't of the enumeration.
+     */
+    protected static <E extends Enum<E>> E readOrdinal(DataInputStream in, E[] values) throws IOException {
+        byte ordinal = in.readByte();
+        if (ordinal < 0 || ordinal >= values.length) {
+            throw new StreamCorruptedException("Invalid ordinal in the payload of the binary codec: " + ordinal + ".");
+        }
+        return values[ordinal];
+    }
+
+    /**
+     * Write the nullable integer as the flag of presence and the value.
+     *
+     * @param value the integer or null.
+     * @param out the stream for writing.
+     */
+    protected static void writeNullableInt(Integer value, DataOutputStream out) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeInt(value);
+        }
+    }
+
+    /**
+     * Read the nullable integer.
+     *
+     * @param in the stream for reading.
+     * @return the integer or null.
+     */
+    protected static Integer readNullableInt(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readInt() : null;
+    }
+}
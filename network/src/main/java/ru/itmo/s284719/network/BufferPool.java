@@ -0,0 +1,147 @@
+package ru.itmo.s284719.network;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of direct byte's buffers divided into size classes (powers of two).
+ * Connections take buffers from the pool and return them after use,
+ * so the steady-state path of requests doesn't allocate new buffers.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class BufferPool {
+    /**
+     * The pool shared by all connections of the program.
+     */
+    public static final BufferPool SHARED = new BufferPool();
+    /**
+     * The binary logarithm of the smallest size class (4 KB).
+     */
+    private static final int MIN_SHIFT = 12;
+    /**
+     * The binary logarithm of the biggest size class (128 MB).
+     */
+    private static final int MAX_SHIFT = 27;
+    /**
+     * The maximal count of bytes retained by the pool in one size class.
+     */
+    private static final int MAX_RETAINED_BYTES = 32 * 1024 * 1024;
+
+    /**
+     * The free buffers of every size class.
+     */
+    private final List<Queue<ByteBuffer>> free;
+    /**
+     * The count of free buffers of every size class.
+     */
+    private final AtomicInteger[] freeCounts;
+    /**
+     * The count of requests served with a free buffer.
+     */
+    private final AtomicLong hits = new AtomicLong();
+    /**
+     * The count of requests served with a new buffer.
+     */
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Constructor without parameters.
+     */
+    public BufferPool() {
+        free = new ArrayList<>(MAX_SHIFT - MIN_SHIFT + 1);
+        freeCounts = new AtomicInteger[MAX_SHIFT - MIN_SHIFT + 1];
+        for (int i = 0; i < freeCounts.length; ++i) {
+            free.add(new ConcurrentLinkedQueue<>());
+            freeCounts[i] = new AtomicInteger();
+        }
+    }
+
+    /**
+     * Take a cleared buffer with the capacity not less than the specified one.
+     *
+     * @param capacity the minimal capacity.
+     * @return the buffer.
+     */
+    public ByteBuffer acquire(int capacity) {
+        int sizeClass = sizeClass(capacity);
+        // if (the capacity is bigger than the biggest class) than: the buffer isn't pooled.
+        if (sizeClass >= free.size()) {
+            misses.incrementAndGet();
+            return ByteBuffer.allocateDirect(capacity);
+        }
+        ByteBuffer buffer = free.get(sizeClass).poll();
+        if (buffer == null) {
+            misses.incrementAndGet();
+            return ByteBuffer.allocateDirect(1 << (sizeClass + MIN_SHIFT));
+        }
+        freeCounts[sizeClass].decrementAndGet();
+        hits.incrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Return the buffer to the pool.
+     *
+     * @param buffer the buffer taken by {@link #acquire(int)}.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect() || Integer.bitCount(buffer.capacity()) != 1) {
+            return;
+        }
+        int sizeClass = sizeClass(buffer.capacity());
+        if (sizeClass >= free.size()) {
+            return;
+        }
+        // if (the class has too much free bytes) than: leave the buffer to the garbage collector.
+        int maxCount = Math.max(1, MAX_RETAINED_BYTES >> (sizeClass + MIN_SHIFT));
+        if (freeCounts[sizeClass].incrementAndGet() > maxCount) {
+            freeCounts[sizeClass].decrementAndGet();
+            return;
+        }
+        free.get(sizeClass).offer(buffer);
+    }
+
+    /**
+     * Get the count of requests served with a free buffer.
+     *
+     * @return the count of hits.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Get the count of requests served with a new buffer.
+     *
+     * @return the count of misses.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Get the index of size class for the capacity.
+     *
+     * @param capacity the capacity.
+     * @return the index of size class.
+     */
+    private static int sizeClass(int capacity) {
+        if (capacity <= 1 << MIN_SHIFT) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(capacity - 1) - MIN_SHIFT;
+    }
+
+    @Override
+    public String toString() {
+        return "BufferPool: {hits: " + getHits() + ", misses: " + getMisses() + "}";
+    }
+}
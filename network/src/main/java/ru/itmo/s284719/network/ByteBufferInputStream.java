@@ -0,0 +1,59 @@
+package ru.itmo.s284719.network;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Input's stream reading the remaining bytes of a byte's buffer.
+ * The stream can be reused for other buffers.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class ByteBufferInputStream extends InputStream {
+    /**
+     * The buffer for reading.
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * Start reading the other buffer.
+     *
+     * @param buffer the buffer for reading.
+     * @return this stream.
+     */
+    public ByteBufferInputStream reset(ByteBuffer buffer) {
+        this.buffer = buffer;
+        return this;
+    }
+
+    @Override
+    public int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        length = Math.min(length, buffer.remaining());
+        buffer.get(bytes, offset, length);
+        return length;
+    }
+
+    @Override
+    public long skip(long n) {
+        int count = (int) Math.max(0, Math.min(n, buffer.remaining()));
+        buffer.position(buffer.position() + count);
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+}
@@ -0,0 +1,96 @@
+package ru.itmo.s284719.network;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Output's stream writing to a direct buffer from the pool.
+ * The buffer is replaced by a bigger one from the pool when it's full.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class ByteBufferOutputStream extends OutputStream {
+    /**
+     * The pool of buffers.
+     */
+    private final BufferPool pool;
+    /**
+     * The initial capacity of the buffer.
+     */
+    private final int initialCapacity;
+    /**
+     * The buffer with written bytes (in write mode).
+     */
+    private ByteBuffer buffer;
+
+    /**
+     * Constructor with all parameters.
+     *
+     * @param pool the pool of buffers.
+     * @param initialCapacity the initial capacity of the buffer.
+     */
+    public ByteBufferOutputStream(BufferPool pool, int initialCapacity) {
+        this.pool = pool;
+        this.initialCapacity = initialCapacity;
+        this.buffer = pool.acquire(initialCapacity);
+    }
+
+    /**
+     * Get the buffer with written bytes.
+     *
+     * @return the buffer in write mode.
+     */
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Forget written bytes. The grown buffer is returned to the pool.
+     */
+    public void reset() {
+        if (buffer.capacity() > initialCapacity) {
+            pool.release(buffer);
+            buffer = pool.acquire(initialCapacity);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Return the buffer to the pool. The stream can't be used after that.
+     */
+    @Override
+    public void close() {
+        pool.release(buffer);
+        buffer = null;
+    }
+
+    @Override
+    public void write(int b) {
+        ensureRemaining(1);
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+        ensureRemaining(length);
+        buffer.put(bytes, offset, length);
+    }
+
+    /**
+     * Replace the buffer with a bigger one if it hasn't enough free space.
+     * The buffer must be got by {@link #buffer()} again after that.
+     *
+     * @param count the count of bytes for writing.
+     */
+    public void ensureRemaining(int count) {
+        if (buffer.remaining() >= count) {
+            return;
+        }
+        ByteBuffer newBuffer = pool.acquire(Math.max(buffer.capacity() * 2, buffer.position() + count));
+        buffer.flip();
+        newBuffer.put(buffer);
+        pool.release(buffer);
+        buffer = newBuffer;
+    }
+}
@@ -1,12 +1,16 @@
 package ru.itmo.s284719.network;
 
 import java.io.Serializable;
+import java.util.Comparator;
+import java.util.Objects;
 
 public class Chapter implements Comparable<Chapter>, Serializable {
     private String name; //Поле не может быть null, Строка не может быть пустой
     private String parentLegion; //
     private int marinesCount; //Значение поля должно быть больше 0, Максимальное значение поля: 1000
     private String world; //
+    // the chapter is shared by space marines through the dictionary and can't be changed.
+    private transient boolean shared = false;
 
     //mine code here
     public Chapter() {}
@@ -41,6 +45,21 @@ public class Chapter implements Comparable<Chapter>, Serializable {
     public static void checkWorld(String world) {
         return;
     }
+    public void checkNotShared() throws UnsupportedOperationException {
+        if (shared) {
+            throw new UnsupportedOperationException("The chapter is shared by space marines and can't be changed.");
+        }
+    }
+    public boolean isShared() {
+        return shared;
+    }
+    // replace strings by shared strings of the dictionary and forbid changes.
+    void share(ChapterDictionary dictionary) {
+        name = dictionary.string(name);
+        parentLegion = dictionary.string(parentLegion);
+        world = dictionary.string(world);
+        shared = true;
+    }
     public static void check(Chapter chapter) {
         if (chapter == null) {
             throw new NullPointerException("Значение поля \"Chapter\" не может быть null");
@@ -62,36 +81,43 @@ public class Chapter implements Comparable<Chapter>, Serializable {
     }
 
     public void setName(String name) throws NullPointerException, IllegalArgumentException {
+        checkNotShared();
         checkName(name);
         this.name = name;
     }
     public void setParentLegion(String parentLegion) {
+        checkNotShared();
         checkParentLegion(parentLegion);
         this.parentLegion = parentLegion;
     }
     public void setMarinesCount(int marinesCount) throws IllegalArgumentException {
+        checkNotShared();
         checkMarinesCount(marinesCount);
         this.marinesCount = marinesCount;
     }
     public void setWorld(String world) {
+        checkNotShared();
         checkWorld(world);
         this.world = world;
     }
 
     @Override
     public boolean equals(Object ob) {
-        if (ob == null || !getClass().equals(ob.getClass()) || hashCode() != ob.hashCode()) {
-            return false;
+        if (this == ob) {
+            return true;
         }
-        Chapter chapter = (Chapter) ob;
-        if (!getName().equals(chapter.getName()) || getMarinesCount() != chapter.getMarinesCount()) {
-            return false;
-        } else if ((getParentLegion() == null) != (chapter.getParentLegion() == null)) {
-            return false;
-        } else if ((getWorld() == null) != (chapter.getWorld() == null)) {
+        if (ob == null || !getClass().equals(ob.getClass())) {
             return false;
         }
-        return getParentLegion().equals(chapter.getParentLegion()) && getWorld().equals(chapter.getWorld());
+        Chapter chapter = (Chapter) ob;
+        return getMarinesCount() == chapter.getMarinesCount() && Objects.equals(getName(), chapter.getName())
+                && Objects.equals(getParentLegion(), chapter.getParentLegion())
+                && Objects.equals(getWorld(), chapter.getWorld());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getName(), getParentLegion(), getMarinesCount(), getWorld());
     }
 
     @Override
@@ -104,19 +130,20 @@ public class Chapter implements Comparable<Chapter>, Serializable {
 
     @Override
     public int compareTo(Chapter chapter) {
+        // null legions and worlds are less than other ones.
+        Comparator<String> nullsFirst = Comparator.nullsFirst(Comparator.<String>naturalOrder());
         if (!getName().equals(chapter.getName())) {
             return getName().compareTo(chapter.getName());
-        } else if (getParentLegion() == null && chapter.getParentLegion() != null) {
-            return -1;
-        } else if (!getParentLegion().equals(chapter.getParentLegion())) {
-            return getParentLegion().compareTo(chapter.getParentLegion());
+        } else if (!Objects.equals(getParentLegion(), chapter.getParentLegion())) {
+            return nullsFirst.compare(getParentLegion(), chapter.getParentLegion());
         } else if (getMarinesCount() != chapter.getMarinesCount()) {
-            return getMarinesCount() - chapter.getMarinesCount();
-        } else if (getWorld() == null && chapter.getWorld() != null) {
-            return -2;
-        } else if (getWorld() != null && chapter.getWorld() == null) {
-            return 2;
+            return Integer.compare(getMarinesCount(), chapter.getMarinesCount());
         }
-        return getWorld().compareTo(chapter.getWorld());
+        return nullsFirst.compare(getWorld(), chapter.getWorld());
+    }
+
+    // chapters received by the Java's serialization are replaced by shared chapters of the dictionary.
+    private Object readResolve() {
+        return ChapterDictionary.SHARED.chapter(this);
     }
 }
@@ -0,0 +1,154 @@
+package ru.itmo.s284719.network;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Canonicalizing dictionary of chapters and their strings.
+ * Equal chapters of parsed, received and entered space marines are replaced by one shared chapter,
+ * which can't be changed, and strings of chapters (names, legions, worlds) are replaced by one shared string.
+ * The dictionary counts the estimated count of bytes of duplicates which have been dropped.
+ * The count of entries is limited by the system's property "dictionary.size" (65536 by default),
+ * chapters and strings after the limit aren't shared. The dictionary is thread-safe.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class ChapterDictionary {
+    /**
+     * The dictionary shared by the whole program.
+     */
+    public static final ChapterDictionary SHARED = new ChapterDictionary(Integer.getInteger("dictionary.size", 65536));
+    /**
+     * The estimated size of the chapter's object in bytes (the header, three references and the number).
+     */
+    private static final int CHAPTER_BYTES = 32;
+
+    /**
+     * The maximal count of chapters and of strings.
+     */
+    private final int maxSize;
+    /**
+     * The map from chapters to shared chapters.
+     */
+    private final ConcurrentHashMap<Chapter, Chapter> chapters = new ConcurrentHashMap<>();
+    /**
+     * The map from strings to shared strings.
+     */
+    private final ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<>();
+    /**
+     * The count of chapters replaced by shared chapters.
+     */
+    private final LongAdder hits = new LongAdder();
+    /**
+     * The estimated count of bytes of dropped duplicates.
+     */
+    private final LongAdder savedBytes = new LongAdder();
+
+    /**
+     * Constructor with all parameters.
+     *
+     * @param maxSize the maximal count of chapters and of strings.
+     */
+    public ChapterDictionary(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Get the shared chapter equal to the chapter.
+     * If the chapter is new than its strings are replaced by shared strings and it becomes shared.
+     *
+     * @param chapter the chapter (null is returned as is).
+     * @return the shared chapter or the given chapter if the dictionary is full.
+     */
+    public Chapter chapter(Chapter chapter) {
+        if (chapter == null || chapter.isShared()) {
+            return chapter;
+        }
+        Chapter shared = chapters.get(chapter);
+        if (shared == null) {
+            if (chapters.size() >= maxSize) {
+                return chapter;
+            }
+            // share strings of the chapter before it's published.
+            chapter.share(this);
+            shared = chapters.putIfAbsent(chapter, chapter);
+            // if (the chapter has been added) than: it's the shared chapter.
+            if (shared == null) {
+                return chapter;
+            }
+        }
+        hits.increment();
+        savedBytes.add(CHAPTER_BYTES + duplicateBytes(chapter.getName(), shared.getName())
+                + duplicateBytes(chapter.getParentLegion(), shared.getParentLegion())
+                + duplicateBytes(chapter.getWorld(), shared.getWorld()));
+        return shared;
+    }
+
+    /**
+     * Get the shared string equal to the string.
+     *
+     * @param string the string (null is returned as is).
+     * @return the shared string or the given string if the dictionary is full.
+     */
+    public String string(String string) {
+        if (string == null) {
+            return null;
+        }
+        String shared = strings.get(string);
+        if (shared == null) {
+            if (strings.size() >= maxSize) {
+                return string;
+            }
+            shared = strings.putIfAbsent(string, string);
+            if (shared == null) {
+                return string;
+            }
+        }
+        if (shared != string) {
+            savedBytes.add(stringBytes(string));
+        }
+        return shared;
+    }
+
+    /**
+     * Get the estimated count of bytes of dropped duplicates.
+     *
+     * @return the count of bytes.
+     */
+    public long getSavedBytes() {
+        return savedBytes.sum();
+    }
+
+    /**
+     * Get the estimated size of the string if it isn't the shared string.
+     *
+     * @param string the string.
+     * @param shared the shared string.
+     * @return the count of bytes.
+     */
+    private static long duplicateBytes(String string, String shared) {
+        return string == shared ? 0 : stringBytes(string);
+    }
+
+    /**
+     * Get the estimated size of the string with its array (for strings of Latin-1 characters).
+     *
+     * @param string the string.
+     * @return the count of bytes.
+     */
+    private static long stringBytes(String string) {
+        return string == null ? 0 : 24 + ((16 + string.length() + 7) & ~7);
+    }
+
+    /**
+     * Get statistics of the dictionary.
+     *
+     * @return the string with the statistics.
+     */
+    @Override
+    public String toString() {
+        return "ChapterDictionary: {chapters: " + chapters.size() + ", strings: " + strings.size()
+                + ", shared chapters: " + hits.sum() + ", saved: ~" + getSavedBytes() + " bytes}";
+    }
+}
@@ -0,0 +1,39 @@
+package ru.itmo.s284719.network;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Part of the streamed answer with space marines.
+ * The server sends several chunks with the same ID of the request, the last chunk is marked.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class Chunk implements Serializable {
+    /**
+     * The index of the first space marine of the chunk in the whole answer.
+     */
+    public int offset;
+    /**
+     * The space marines of the chunk.
+     */
+    public List<SpaceMarine> spaceMarines;
+    /**
+     * The field with information about the end of the answer.
+     */
+    public boolean last;
+
+    /**
+     * Constructor with all parameters.
+     *
+     * @param offset the index of the first space marine of the chunk in the whole answer.
+     * @param spaceMarines the space marines of the chunk.
+     * @param last true if the chunk is the last chunk of the answer.
+     */
+    public Chunk(int offset, List<SpaceMarine> spaceMarines, boolean last) {
+        this.offset = offset;
+        this.spaceMarines = spaceMarines;
+        this.last = last;
+    }
+}
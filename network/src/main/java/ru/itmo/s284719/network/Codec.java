@@ -0,0 +1,76 @@
+package ru.itmo.s284719.network;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Interface for converting transmitted objects to bytes and back.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public interface Codec {
+    /**
+     * The name of the system's property for choosing the codec.
+     */
+    String PROPERTY = "codec";
+
+    /**
+     * Write the object to the stream.
+     *
+     * @param object the object for writing.
+     * @param out the stream for writing.
+     */
+    void encode(Object object, OutputStream out) throws IOException;
+
+    /**
+     * Read an object from the stream.
+     *
+     * @param in the stream with the object.
+     * @return the object.
+     */
+    Object decode(InputStream in) throws IOException, ClassNotFoundException;
+
+    /**
+     * Get a codec by its name ("java" or "binary").
+     *
+     * @param name the codec's name.
+     * @return the codec.
+     */
+    static Codec forName(String name) {
+        switch (name) {
+            case "java":
+                return JavaCodec.INSTANCE;
+            case "binary":
+                return BinaryCodec.INSTANCE;
+            default:
+                throw new IllegalArgumentException("Not found the codec: " + name);
+        }
+    }
+
+    /**
+     * Get a codec for the received bytes.
+     * Java's serialization always starts with the magic number 0xACED.
+     *
+     * @param payload the buffer with received bytes.
+     * @return the codec which wrote the bytes.
+     */
+    static Codec forPayload(ByteBuffer payload) {
+        return forFirstByte(payload.hasRemaining() ? payload.get(payload.position()) : -1);
+    }
+
+    /**
+     * Get a codec by the first byte of the received bytes.
+     *
+     * @param first the first byte.
+     * @return the codec which wrote the bytes.
+     */
+    static Codec forFirstByte(int first) {
+        if ((byte) first == BinaryCodec.MAGIC) {
+            return BinaryCodec.INSTANCE;
+        }
+        return JavaCodec.INSTANCE;
+    }
+}
@@ -41,9 +41,10 @@ public interface Commands {
             "о коллекции (тип, дата инициализации, количество элементов и т.д.)")
     public void info(String[] args) throws IOException, InterruptedException;
 
-    @Command(name = "show",
+    @Command(name = "show", args = "[offset limit | top k by field | next cursor]",
             desc = "вывести в стандартный поток вывода все " +
-            "элементы коллекции в строковом представлении")
+            "элементы коллекции в строковом представлении " +
+            "(или страницу элементов по росту, k элементов с наибольшим полем, следующую страницу)")
     public void show(String[] args) throws IOException, InterruptedException;
 
     @Command(name = "add", numbArgs = 1, args = "{element}",
@@ -104,6 +105,19 @@ public interface Commands {
                     "для всех элементов коллекции")
     public void averageOfHeight(String[] args) throws IOException, InterruptedException;
 
+    @Command(name = "category_stats",
+            desc = "вывести количество элементов коллекции " +
+                    "по каждому значению поля category")
+    public void categoryStats(String[] args) throws IOException, InterruptedException;
+
+    @Command(name = "query", numbArgs = 1, args = "query",
+            desc = "выполнить запрос к коллекции: count, sum|avg|min|max поле " +
+                    "или select поля с условиями where поле оператор значение [and ...] [group by поле]")
+    public void query(String[] args) throws IOException, InterruptedException;
+
+    @Command(name = "stats", desc = "вывести статистику работы сервера")
+    public void stats(String[] args) throws IOException;
+
     @Command(name = "count_greater_than_melee_weapon", numbArgs = 1,
     args = "meleeWeapon", desc = "вывести количество элементов, " +
             "значение поля meleeWeapon которых больше заданного")
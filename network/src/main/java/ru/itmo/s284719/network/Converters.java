@@ -1,8 +1,14 @@
 package ru.itmo.s284719.network;
 
+import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.time.ZoneId;
 
@@ -24,6 +30,39 @@ public class Converters {
 
         builder.registerTypeAdapter(ZONE_ID_TYPE, new ZoneIdConverter());
 
+        return builder;
+    }
+
+//    /**
+//     * Registers the adapter which replaces read chapters by shared chapters of {@link ChapterDictionary#SHARED}.
+//     * @param builder The GSON builder to register the adapter with.
+//     * @return A reference to {@code builder}.
+//     */
+    public static GsonBuilder registerChapter(GsonBuilder builder) {
+        if (builder == null) { throw new NullPointerException("builder cannot be null"); }
+
+        builder.registerTypeAdapterFactory(new TypeAdapterFactory() {
+            @Override
+            public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+                if (type.getRawType() != Chapter.class) {
+                    return null;
+                }
+                TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+                return new TypeAdapter<T>() {
+                    @Override
+                    public void write(JsonWriter out, T value) throws IOException {
+                        delegate.write(out, value);
+                    }
+
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public T read(JsonReader in) throws IOException {
+                        return (T) ChapterDictionary.SHARED.chapter((Chapter) delegate.read(in));
+                    }
+                };
+            }
+        });
+
         return builder;
     }
 }
@@ -0,0 +1,174 @@
+package ru.itmo.s284719.network;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+/**
+ * Connectionless transmitting of objects through the datagram's channel.
+ * Every object is sent in one datagram without the header (the datagram keeps its length).
+ * Objects bigger than {@link #MAX_DATAGRAM_SIZE} can't be sent.
+ * Datagrams can be sent by anyone, so every failure of decoding of the received datagram
+ * (including errors) is reported as the broken datagram ({@link StreamCorruptedException}).
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class DatagramObjectChannel implements Closeable {
+    /**
+     * The maximal size of the datagram (it isn't fragmented by the network).
+     */
+    public static final int MAX_DATAGRAM_SIZE = 1400;
+
+    /**
+     * The datagram's channel.
+     */
+    private final DatagramChannel channel;
+    /**
+     * The buffer for encoding sent objects.
+     */
+    private final ByteBufferOutputStream writer;
+    /**
+     * The buffer for received datagrams.
+     */
+    private final ByteBuffer buffer;
+    /**
+     * The reusable stream for decoding received datagrams.
+     */
+    private final ByteBufferInputStream datagramIn = new ByteBufferInputStream();
+    /**
+     * The pool of buffers.
+     */
+    private final BufferPool pool;
+    /**
+     * The selector for waiting of objects (opened at the first waiting).
+     */
+    private Selector selector;
+
+    /**
+     * Constructor with the shared pool of buffers.
+     * The channel is switched to the non-blocking mode.
+     *
+     * @param channel the datagram's channel.
+     */
+    public DatagramObjectChannel(DatagramChannel channel) throws IOException {
+        this(channel, BufferPool.SHARED);
+    }
+
+    /**
+     * Constructor with all parameters.
+     * The channel is switched to the non-blocking mode.
+     *
+     * @param channel the datagram's channel.
+     * @param pool the pool of buffers.
+     */
+    public DatagramObjectChannel(DatagramChannel channel, BufferPool pool) throws IOException {
+        this.channel = channel;
+        channel.configureBlocking(false);
+        this.pool = pool;
+        this.writer = new ByteBufferOutputStream(pool, MAX_DATAGRAM_SIZE);
+        this.buffer = pool.acquire(MAX_DATAGRAM_SIZE);
+    }
+
+    /**
+     * Get the datagram's channel.
+     *
+     * @return the datagram's channel.
+     */
+    public DatagramChannel channel() {
+        return channel;
+    }
+
+    /**
+     * Send an object to the address.
+     *
+     * @param object the object for sending.
+     * @param address the address of the receiver.
+     * @return true if the datagram has been sent (false if the channel's buffer is full).
+     * @throws DatagramTooBigException if the encoded object is bigger than {@link #MAX_DATAGRAM_SIZE}.
+     */
+    public synchronized boolean send(Object object, SocketAddress address) throws IOException {
+        writer.reset();
+        try {
+            ObjectSocketChannel.getCodec().encode(object, writer);
+            ByteBuffer datagram = writer.buffer();
+            if (datagram.position() > MAX_DATAGRAM_SIZE) {
+                throw new DatagramTooBigException(datagram.position());
+            }
+            datagram.flip();
+            return channel.send(datagram, address) != 0;
+        } finally {
+            writer.reset();
+        }
+    }
+
+    /**
+     * Receive an object without waiting.
+     *
+     * @return the pair of the sender's address and the object or null if there isn't a datagram.
+     * @throws StreamCorruptedException if the datagram can't be decoded.
+     */
+    public synchronized Pair<SocketAddress, Object> receive() throws IOException, ClassNotFoundException {
+        buffer.clear();
+        SocketAddress address = channel.receive(buffer);
+        if (address == null) {
+            return null;
+        }
+        buffer.flip();
+        try {
+            return new Pair<>(address, Codec.forPayload(buffer).decode(datagramIn.reset(buffer)));
+        } catch (Exception | Error e) {
+            // if (the datagram is broken) than: report that without breaking the receiving thread.
+            StreamCorruptedException broken = new StreamCorruptedException("The broken datagram from " + address + ": " + e);
+            broken.initCause(e);
+            throw broken;
+        }
+    }
+
+    /**
+     * Receive an object waiting not longer than the timeout.
+     *
+     * @param timeout the timeout in milliseconds.
+     * @return the pair of the sender's address and the object or null if the time is over.
+     */
+    public synchronized Pair<SocketAddress, Object> receive(long timeout) throws IOException, ClassNotFoundException {
+        long deadline = System.currentTimeMillis() + timeout;
+        Pair<SocketAddress, Object> received = receive();
+        while (received == null) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) {
+                return null;
+            }
+            // register the channel to the selector only once.
+            if (selector == null) {
+                selector = Selector.open();
+                channel.register(selector, SelectionKey.OP_READ);
+            }
+            selector.select(left);
+            selector.selectedKeys().clear();
+            received = receive();
+        }
+        return received;
+    }
+
+    /**
+     * Close the channel and return buffers to the pool.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (selector != null) {
+                selector.close();
+            }
+            channel.close();
+        } finally {
+            writer.close();
+            pool.release(buffer);
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package ru.itmo.s284719.network;
+
+import java.io.IOException;
+
+/**
+ * Exception of the object which doesn't fit into one datagram.
+ * The server sends it instead of the too big answer, so the client repeats the query through its connection.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class DatagramTooBigException extends IOException {
+    /**
+     * Constructor with all parameters.
+     *
+     * @param size the size of the encoded object in bytes.
+     */
+    public DatagramTooBigException(int size) {
+        super("The object is too big for the datagram: " + size + " bytes.");
+    }
+}
@@ -0,0 +1,46 @@
+package ru.itmo.s284719.network;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Value encoded by {@link BinaryCodec} in advance (e.g. the cached chunk of the command "show").
+ * The binary codec copies its bytes instead of encoding the value again,
+ * the receiver decodes the original value. Other codecs can't write encoded values.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public final class Encoded {
+    /**
+     * The bytes of the tagged value.
+     */
+    private final byte[] bytes;
+
+    /**
+     * Constructor with all parameters.
+     *
+     * @param bytes the bytes of the tagged value.
+     */
+    Encoded(byte[] bytes) {
+        this.bytes = bytes;
+    }
+
+    /**
+     * Get the count of bytes of the value.
+     *
+     * @return the count of bytes.
+     */
+    public int size() {
+        return bytes.length;
+    }
+
+    /**
+     * Write bytes of the value to the stream.
+     *
+     * @param out the stream for writing.
+     */
+    void writeTo(OutputStream out) throws IOException {
+        out.write(bytes);
+    }
+}
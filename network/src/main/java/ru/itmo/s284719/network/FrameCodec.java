@@ -0,0 +1,244 @@
+package ru.itmo.s284719.network;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Per-connection encoding of objects to frames and decoding of frames' payloads.
+ * The codec doesn't do input/output, so it's shared by blocking, selector's and asynchronous connections.
+ * If the compression is enabled than payloads bigger than
+ * {@link ObjectSocketChannel#COMPRESSION_THRESHOLD} are compressed by the deflater.
+ * The deflater and the inflater work with buffers from the pool directly, and received payloads
+ * are decompressed not more than to {@link FrameReader#MAX_FRAME_SIZE} bytes.
+ * The codec isn't thread-safe.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class FrameCodec {
+    /**
+     * The count of bytes of compressed payloads before the compression.
+     */
+    private static final AtomicLong bytesBeforeCompression = new AtomicLong();
+    /**
+     * The count of bytes of compressed payloads after the compression.
+     */
+    private static final AtomicLong bytesAfterCompression = new AtomicLong();
+
+    /**
+     * The pool of buffers.
+     */
+    private final BufferPool pool;
+    /**
+     * The buffer for encoding sent objects.
+     */
+    private final ByteBufferOutputStream writer;
+    /**
+     * The reusable stream for decoding received frames.
+     */
+    private final ByteBufferInputStream frameIn = new ByteBufferInputStream();
+    /**
+     * The field with information about the compression of sent payloads.
+     */
+    private boolean compression = false;
+    /**
+     * The buffer for compressed frames (created at the first compression).
+     */
+    private ByteBufferOutputStream compressedWriter;
+    /**
+     * The compressor of sent payloads (created at the first compression).
+     */
+    private Deflater deflater;
+    /**
+     * The decompressor of received payloads (created at the first compressed frame).
+     */
+    private Inflater inflater;
+    /**
+     * The buffer for decompressed payloads (created at the first compressed frame).
+     */
+    private ByteBufferOutputStream inflatedWriter;
+
+    /**
+     * Constructor with all parameters.
+     *
+     * @param pool the pool of buffers.
+     */
+    public FrameCodec(BufferPool pool) {
+        this.pool = pool;
+        this.writer = new ByteBufferOutputStream(pool, FrameReader.INITIAL_CAPACITY);
+    }
+
+    /**
+     * Get statistics of the compression of all connections.
+     *
+     * @return the string with the statistics.
+     */
+    public static String getCompressionStats() {
+        return "Compression: {before: " + bytesBeforeCompression.get() +
+                " bytes, after: " + bytesAfterCompression.get() + " bytes}";
+    }
+
+    /**
+     * Enable or disable the compression of big payloads.
+     *
+     * @param compression true for enabling of the compression.
+     */
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    /**
+     * Encode an object to the frame (header and payload) by {@link ObjectSocketChannel#getCodec()}.
+     * The returned buffer is valid until the next encoding or {@link #reset()}.
+     *
+     * @param object the object for encoding.
+     * @return the buffer with the frame ready for writing.
+     */
+    public ByteBuffer encode(Object object) throws IOException {
+        writer.reset();
+        // reserve place for the header.
+        writer.buffer().putInt(0);
+        ObjectSocketChannel.getCodec().encode(object, writer);
+
+        ByteBuffer frame = writer.buffer();
+        int length = frame.position() - FrameReader.HEADER_SIZE;
+        if (compression && length > ObjectSocketChannel.COMPRESSION_THRESHOLD) {
+            return compress(frame, length);
+        }
+        frame.putInt(0, length);
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * Forget the encoded frame. Grown buffers are returned to the pool.
+     */
+    public void reset() {
+        writer.reset();
+        if (compressedWriter != null) {
+            compressedWriter.reset();
+        }
+    }
+
+    /**
+     * Decode the payload of the received frame.
+     *
+     * @param payload the payload.
+     * @param compressed true if the payload is compressed.
+     * @return the object.
+     * @throws StreamCorruptedException if the compressed payload is corrupted
+     *                                  or it's decompressed to more than {@link FrameReader#MAX_FRAME_SIZE} bytes.
+     */
+    public Object decode(ByteBuffer payload, boolean compressed) throws IOException, ClassNotFoundException {
+        if (!compressed) {
+            return Codec.forPayload(payload).decode(frameIn.reset(payload));
+        }
+        // else: decompress the payload to the buffer and decode that.
+        try {
+            ByteBuffer inflated = inflate(payload);
+            return Codec.forPayload(inflated).decode(frameIn.reset(inflated));
+        } finally {
+            // the grown buffer isn't kept until the next compressed frame.
+            inflatedWriter.reset();
+        }
+    }
+
+    /**
+     * Return buffers to the pool and release the compressor. The codec can't be used after that.
+     */
+    public void close() {
+        writer.close();
+        if (compressedWriter != null) {
+            compressedWriter.close();
+            deflater.end();
+        }
+        if (inflater != null) {
+            inflatedWriter.close();
+            inflater.end();
+        }
+    }
+
+    /**
+     * Compress the payload of the encoded frame to the new frame.
+     *
+     * @param frame the buffer with the encoded frame.
+     * @param length the length of the payload.
+     * @return the buffer with the compressed frame ready for writing.
+     */
+    private ByteBuffer compress(ByteBuffer frame, int length) throws IOException {
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.BEST_SPEED);
+            compressedWriter = new ByteBufferOutputStream(pool, FrameReader.INITIAL_CAPACITY);
+        }
+        deflater.reset();
+        compressedWriter.reset();
+        compressedWriter.buffer().putInt(0);
+
+        frame.flip();
+        frame.position(FrameReader.HEADER_SIZE);
+        // the deflater reads the payload and writes to the buffer of the compressed frame without copies.
+        deflater.setInput(frame);
+        deflater.finish();
+        while (!deflater.finished()) {
+            compressedWriter.ensureRemaining(FrameReader.INITIAL_CAPACITY);
+            deflater.deflate(compressedWriter.buffer());
+        }
+
+        ByteBuffer compressedFrame = compressedWriter.buffer();
+        int compressedLength = compressedFrame.position() - FrameReader.HEADER_SIZE;
+        bytesBeforeCompression.addAndGet(length);
+        bytesAfterCompression.addAndGet(compressedLength);
+        compressedFrame.putInt(0, compressedLength | FrameReader.COMPRESSED);
+        compressedFrame.flip();
+        return compressedFrame;
+    }
+
+    /**
+     * Decompress the payload to the buffer of decompressed payloads.
+     *
+     * @param payload the compressed payload.
+     * @return the buffer with the decompressed payload ready for reading.
+     * @throws StreamCorruptedException if the payload is corrupted
+     *                                  or it's decompressed to more than {@link FrameReader#MAX_FRAME_SIZE} bytes.
+     */
+    private ByteBuffer inflate(ByteBuffer payload) throws StreamCorruptedException {
+        if (inflater == null) {
+            inflater = new Inflater();
+            inflatedWriter = new ByteBufferOutputStream(pool, FrameReader.INITIAL_CAPACITY);
+        }
+        inflater.reset();
+        inflatedWriter.reset();
+        inflater.setInput(payload);
+        try {
+            while (!inflater.finished()) {
+                int size = inflatedWriter.buffer().position();
+                // if (the payload is decompressed to the limit and it isn't finished) than: it's too big.
+                if (size >= FrameReader.MAX_FRAME_SIZE) {
+                    throw new StreamCorruptedException("The decompressed frame is bigger than "
+                            + FrameReader.MAX_FRAME_SIZE + " bytes.");
+                }
+                inflatedWriter.ensureRemaining(Math.min(FrameReader.INITIAL_CAPACITY, FrameReader.MAX_FRAME_SIZE - size));
+                ByteBuffer buffer = inflatedWriter.buffer();
+                // the decompressed payload isn't written behind the limit.
+                int limit = buffer.limit();
+                buffer.limit(Math.min(limit, FrameReader.MAX_FRAME_SIZE));
+                int count = inflater.inflate(buffer);
+                buffer.limit(limit);
+                // if (the inflater can't continue) than: the payload is truncated.
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new StreamCorruptedException("The compressed frame is truncated.");
+                }
+            }
+        } catch (DataFormatException e) {
+            throw new StreamCorruptedException("The compressed frame is corrupted: " + e.getMessage());
+        }
+        ByteBuffer inflated = inflatedWriter.buffer();
+        inflated.flip();
+        return inflated;
+    }
+}
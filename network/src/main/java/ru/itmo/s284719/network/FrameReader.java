@@ -0,0 +1,190 @@
+package ru.itmo.s284719.network;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Per-connection accumulation buffer for length-prefixed frames.
+ * Every frame is a 4-byte big-endian header followed by the payload.
+ * The header is the length of the payload and the flag of compression.
+ * Bytes are collected across several reads until a whole frame has arrived.
+ * The buffer is a direct buffer from the pool.
+ *
+ * @version 0.3
+ * @author Danhout.
+ */
+public class FrameReader {
+    /**
+     * The size of frame's header (the length of the payload).
+     */
+    public static final int HEADER_SIZE = 4;
+    /**
+     * The bit of the header marking the compressed payload.
+     */
+    public static final int COMPRESSED = 1 << 30;
+    /**
+     * The initial (and minimal) capacity of the buffer.
+     */
+    public static final int INITIAL_CAPACITY = 8192;
+    /**
+     * The maximal size of frame's payload.
+     */
+    public static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * The pool of buffers.
+     */
+    private final BufferPool pool;
+    /**
+     * The buffer with received, but not processed bytes (in write mode).
+     */
+    private ByteBuffer buffer;
+    /**
+     * The count of bytes of the last returned frame (they are dropped before the next operation).
+     */
+    private int consumed = 0;
+    /**
+     * The field with information about compression of the last returned frame.
+     */
+    private boolean compressed = false;
+
+    /**
+     * Constructor with the shared pool of buffers.
+     */
+    public FrameReader() {
+        this(BufferPool.SHARED);
+    }
+
+    /**
+     * Constructor with all parameters.
+     *
+     * @param pool the pool of buffers.
+     */
+    public FrameReader(BufferPool pool) {
+        this.pool = pool;
+        this.buffer = pool.acquire(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Read available bytes from the channel to the buffer.
+     *
+     * @param channel the channel for reading.
+     * @return count of read bytes or -1 if the channel is closed.
+     */
+    public int read(ReadableByteChannel channel) throws IOException {
+        return channel.read(readBuffer());
+    }
+
+    /**
+     * Get the buffer for the next reading (e.g. the asynchronous reading which completes later).
+     * Received bytes must be put to the buffer before the next call of the reader.
+     *
+     * @return the buffer in write mode with free space.
+     */
+    public ByteBuffer readBuffer() {
+        dropConsumed();
+        // if (the buffer is full) than: grow that before reading.
+        if (!buffer.hasRemaining()) {
+            ensureCapacity(buffer.capacity() * 2);
+        }
+        return buffer;
+    }
+
+    /**
+     * Get the payload of the next complete frame.
+     * The returned buffer is valid until the next call of the reader.
+     *
+     * @return the buffer with the payload or null if the frame hasn't fully arrived yet.
+     */
+    public ByteBuffer nextFrame() throws StreamCorruptedException {
+        dropConsumed();
+        // if (the header hasn't arrived) than: wait for next bytes.
+        if (buffer.position() < HEADER_SIZE) {
+            return null;
+        }
+        int header = buffer.getInt(0);
+        int length = header & ~COMPRESSED;
+        if (length < 0 || length > MAX_FRAME_SIZE) {
+            throw new StreamCorruptedException("Invalid frame's length: " + length + ".");
+        }
+        // if (the payload hasn't fully arrived) than: grow the buffer for that and wait.
+        if (buffer.position() < HEADER_SIZE + length) {
+            ensureCapacity(HEADER_SIZE + length);
+            return null;
+        }
+
+        // else: return the view of the payload.
+        consumed = HEADER_SIZE + length;
+        compressed = (header & COMPRESSED) != 0;
+        ByteBuffer payload = buffer.duplicate();
+        payload.limit(consumed).position(HEADER_SIZE);
+        return payload;
+    }
+
+    /**
+     * Check that the payload of the last returned frame is compressed.
+     *
+     * @return true if the payload is compressed.
+     */
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    /**
+     * Return the buffer to the pool. The reader can't be used after that.
+     */
+    public void release() {
+        pool.release(buffer);
+        buffer = null;
+    }
+
+    /**
+     * Drop the bytes of the last returned frame.
+     */
+    private void dropConsumed() {
+        if (consumed == 0) {
+            return;
+        }
+        buffer.flip();
+        buffer.position(consumed);
+        buffer.compact();
+        consumed = 0;
+        shrink();
+    }
+
+    /**
+     * Grow the buffer to the capacity.
+     *
+     * @param capacity the minimal capacity.
+     */
+    private void ensureCapacity(int capacity) {
+        if (buffer.capacity() >= capacity) {
+            return;
+        }
+        replaceBuffer(capacity);
+    }
+
+    /**
+     * Return the buffer to the initial capacity after a big frame.
+     */
+    private void shrink() {
+        if (buffer.capacity() > INITIAL_CAPACITY && buffer.position() <= INITIAL_CAPACITY) {
+            replaceBuffer(INITIAL_CAPACITY);
+        }
+    }
+
+    /**
+     * Move received bytes to a new buffer from the pool.
+     *
+     * @param capacity the minimal capacity of the new buffer.
+     */
+    private void replaceBuffer(int capacity) {
+        ByteBuffer newBuffer = pool.acquire(capacity);
+        buffer.flip();
+        newBuffer.put(buffer);
+        pool.release(buffer);
+        buffer = newBuffer;
+    }
+}
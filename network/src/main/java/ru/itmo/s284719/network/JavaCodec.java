@@ -0,0 +1,29 @@
+package ru.itmo.s284719.network;
+
+import java.io.*;
+
+/**
+ * Codec with the standard Java's serialization.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class JavaCodec implements Codec {
+    /**
+     * The single instance of the codec.
+     */
+    public static final JavaCodec INSTANCE = new JavaCodec();
+
+    @Override
+    public void encode(Object object, OutputStream out) throws IOException {
+        ObjectOutputStream objectOut = new ObjectOutputStream(out);
+        objectOut.writeObject(object);
+        objectOut.flush();
+    }
+
+    @Override
+    public Object decode(InputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream objectIn = new ObjectInputStream(in);
+        return objectIn.readObject();
+    }
+}
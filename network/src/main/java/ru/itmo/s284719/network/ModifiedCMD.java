@@ -2,13 +2,13 @@ package ru.itmo.s284719.network;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import ru.itmo.s284719.network.collection.SpaceMarineCollection;
+import ru.itmo.s284719.network.collection.SpaceMarineQuery;
 
 import java.io.*;
 import java.text.SimpleDateFormat;
-import java.util.Iterator;
-import java.util.Optional;
+import java.util.Map;
 import java.util.PriorityQueue;
-import java.util.Queue;
 
 /**
  * Realization really commands.
@@ -18,9 +18,9 @@ import java.util.Queue;
  */
 public class ModifiedCMD extends SimpleCMD {
     /**
-     * The queue for processing space marines and saving they.
+     * The thread-safe collection for processing space marines and saving they.
      */
-    protected final Queue<SpaceMarine> queue;
+    protected final SpaceMarineCollection collection;
     /**
      * The time of creation the collection in milliseconds.
      */
@@ -28,7 +28,16 @@ public class ModifiedCMD extends SimpleCMD {
     /**
      * The universal parser from GSON for format JSON.
      */
-    protected final Gson gson = Converters.registerZoneId(new GsonBuilder()).setPrettyPrinting().create();
+    protected final Gson gson = Converters.registerChapter(Converters.registerZoneId(new GsonBuilder()))
+            .setPrettyPrinting().create();
+    /**
+     * The cache of views of the collection for the command "show".
+     */
+    protected final ShowCache showCache;
+    /**
+     * The cursors of pages of the command "show".
+     */
+    protected final ShowCursors showCursors;
 
 
     /**
@@ -44,7 +53,11 @@ public class ModifiedCMD extends SimpleCMD {
      */
     public ModifiedCMD(PriorityQueue<SpaceMarine> queue) {
         super();
-        this.queue = queue;
+        // the storage of the collection is chosen by the system's property "storage" ("heap" by default).
+        this.collection = SpaceMarineCollection.forStorage(
+                System.getProperty(SpaceMarineCollection.STORAGE_PROPERTY, "heap"), queue);
+        this.showCache = new ShowCache(collection, gson);
+        this.showCursors = new ShowCursors(collection);
         creationTime = System.currentTimeMillis();
     }
 
@@ -63,9 +76,9 @@ public class ModifiedCMD extends SimpleCMD {
         }
 
         // else print to server's console an information about the collection.
-        StringBuilder strB = new StringBuilder("collectionType: PriorityQueue<SpaceMarine>, " +
+        StringBuilder strB = new StringBuilder("collectionType: " + collection + ", " +
                 "createTime: " + new SimpleDateFormat("hh:mm:ss dd-MM-yyyy").format(creationTime) +
-                ", length: " + queue.size() + ".");
+                ", length: " + collection.size() + ".");
         out.println(strB.toString());
     }
 
@@ -76,14 +89,24 @@ public class ModifiedCMD extends SimpleCMD {
      */
     @Override
     public void show(String[] args) throws IOException {
-        // if (the command has easy parameters) than: print exception and return.
-        if (args == null || args.length != 0) {
-            err.println("show: this command hasn't parameters.");
+        // if (the command hasn't parameters) than: print the whole collection
+        // (JSON is rendered again only if the collection has been changed).
+        if (args == null || args.length == 0) {
+            showCache.writeJson(out);
+            out.println();
             return;
         }
 
-        // else: print that.
-        out.println(gson.toJson(queue));
+        // else: print the page.
+        try {
+            Page page = showCursors.page(ShowCursors.parse(args));
+            out.println(gson.toJson(page.spaceMarines));
+            if (page.cursor != null) {
+                out.println("The next page: show next " + page.cursor);
+            }
+        } catch (IllegalArgumentException e) {
+            err.println("show: " + e.getMessage());
+        }
     }
 
     /**
@@ -99,7 +122,7 @@ public class ModifiedCMD extends SimpleCMD {
             return;
         }
         // else: read composite parameter (SpaceMarine) and add that to the collection.
-        queue.add(inputSpaceMarine());
+        collection.add(inputSpaceMarine());
     }
 
     /**
@@ -133,15 +156,7 @@ public class ModifiedCMD extends SimpleCMD {
         // read composite parameter (SpaceMarine).
         SpaceMarine spaceMarine = inputSpaceMarine();
         // update element from collection with the ID.
-        Iterator<SpaceMarine> iter = queue.iterator();
-        while (iter.hasNext()) {
-            SpaceMarine sM = iter.next();
-            if (sM.getId() == id) {
-                iter.remove();
-                queue.add(spaceMarine);
-                break;
-            }
-        }
+        collection.update(id, spaceMarine);
     }
 
     /**
@@ -164,14 +179,7 @@ public class ModifiedCMD extends SimpleCMD {
             if (id <= 0) {
                 throw new IllegalArgumentException();
             }
-            Iterator<SpaceMarine> iter = queue.iterator();
-            while (iter.hasNext()) {
-                SpaceMarine sM = iter.next();
-                if (sM.getId() == id) {
-                    iter.remove();
-                    break;
-                }
-            }
+            collection.removeById(id);
         } catch (IllegalArgumentException e) {
             // if (check is fail) than: print exception and return.
             err.println("remove_by_id: the command's parameter is a positive number.");
@@ -185,7 +193,7 @@ public class ModifiedCMD extends SimpleCMD {
      */
     @Override
     public void clear(String[] args) throws IOException {
-        queue.clear();
+        collection.clear();
     }
 
     /**
@@ -201,13 +209,14 @@ public class ModifiedCMD extends SimpleCMD {
             return;
         }
 
-        // else: save the collection in format JSON to file "base.json".
-        FileOutputStream fout = null;
+        // else: save the collection in format JSON to file "base.json"
+        // (it's the same JSON as of the command "show", so it's taken from the cache of views).
+        Writer writer = null;
         try {
-            fout = new FileOutputStream("base.json");
-            fout.write(gson.toJson(queue).getBytes());
-            fout.flush();
-            fout.close();
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream("base.json")));
+            showCache.writeJson(writer);
+            writer.flush();
+            writer.close();
 
             out.println("Saving queue to file \"base.json\"");
             out.flush();
@@ -324,7 +333,8 @@ public class ModifiedCMD extends SimpleCMD {
         }
 
         // else if (the queue isn't empty): print and remove element from head of the collection.
-        if (queue.size() > 0) { out.println(queue.poll()); }
+        SpaceMarine head = collection.poll();
+        if (head != null) { out.println(head); }
     }
 
     /**
@@ -343,10 +353,7 @@ public class ModifiedCMD extends SimpleCMD {
         // else: read composite parameter (SpaceMarine).
         SpaceMarine spaceMarine = inputSpaceMarine();
         // if (the element is minimal) than: add the element to the collection.
-        Optional<SpaceMarine> optional = queue.stream().min(SpaceMarine::compareTo);
-        if (optional.equals(Optional.empty()) || spaceMarine.compareTo(optional.get()) < 0) {
-            queue.add(spaceMarine);
-        }
+        collection.addIfMin(spaceMarine);
     }
 
     /**
@@ -365,15 +372,7 @@ public class ModifiedCMD extends SimpleCMD {
         // read composite parameter (SpaceMarine).
         SpaceMarine spaceMarine = inputSpaceMarine();
         // remove all elements from the collection greater than the element.
-        Iterator<SpaceMarine> iter = queue.iterator();
-        while (iter.hasNext()) {
-            SpaceMarine sM = iter.next();
-            if (sM.compareTo(spaceMarine) > 0) {
-                iter.remove();
-                return;
-            }
-        }
-        queue.add(spaceMarine);
+        collection.removeGreater(spaceMarine);
     }
 
     /**
@@ -392,14 +391,7 @@ public class ModifiedCMD extends SimpleCMD {
 
         // else if (the command hasn't parameters) than: the command has one easy parameter "zero".
         if (args.length == 0) {
-            Iterator<SpaceMarine> iter = queue.iterator();
-            while (iter.hasNext()) {
-                SpaceMarine sM = iter.next();
-                if (sM.getHeight().equals(0)) {
-                    iter.remove();
-                    return;
-                }
-            }
+            collection.removeAnyByHeight(0);
             return;
         }
 
@@ -407,14 +399,7 @@ public class ModifiedCMD extends SimpleCMD {
         // and remove any element from the collection whose has a height equal to the height.
         try {
             int height = Integer.parseInt(args[0]);
-            Iterator<SpaceMarine> iter = queue.iterator();
-            while (iter.hasNext()) {
-                SpaceMarine sM = iter.next();
-                if (sM.getHeight().equals(height)) {
-                    iter.remove();
-                    return;
-                }
-            }
+            collection.removeAnyByHeight(height);
         } catch (NumberFormatException e) {
             // if (check is fail) than: print the exception and return.
             err.println("remove_any_by_height: the command's parameter is a number.");
@@ -435,15 +420,85 @@ public class ModifiedCMD extends SimpleCMD {
         }
 
         // else if (queue is empty) than: print zero.
-        if (queue.isEmpty()) {
+        if (collection.isEmpty()) {
             out.println("The average value of the height: 0.");
         } else {
             // else: print the average value of the height.
-            int result = queue.stream()
-                    .mapToInt(sM -> sM.getHeight())
-                    .reduce(0, Integer::sum);
-            out.println("The average value of the height: " + ((double) result) / queue.size() + ".");
+            out.println("The average value of the height: " + collection.averageOfHeight() + ".");
+        }
+    }
+
+    /**
+     * Output counts of elements by values of the <code>AstartesCategory</code>.
+     *
+     * @param args arguments for the command.
+     */
+    @Override
+    public synchronized void categoryStats(String[] args) throws IOException {
+        // if (the command has parameters) than: print the exception and return.
+        if (args == null || args.length != 0) {
+            err.println("category_stats: this command hasn't parameters.");
+            return;
+        }
+
+        out.println(categoryStatsMessage());
+    }
+
+    /**
+     * Run the query over the collection and output its result.
+     *
+     * @param args words of the query.
+     */
+    @Override
+    public synchronized void query(String[] args) throws IOException {
+        // if (the command hasn't parameters) than: print the exception and return.
+        if (args == null || args.length == 0) {
+            err.println("query: this command has the parameter: query.");
+            return;
+        }
+
+        try {
+            out.println(queryMessage(String.join(" ", args)));
+        } catch (IllegalArgumentException e) {
+            // if (the query isn't correct) than: print the exception.
+            err.println("query: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Output statistics of the server's work: the command is available only on the server.
+     *
+     * @param args arguments for the command.
+     */
+    @Override
+    public synchronized void stats(String[] args) throws IOException {
+        err.println("stats: this command is available only on the server.");
+    }
+
+    /**
+     * Compile and run the query over the collection.
+     *
+     * @param text the text of the query.
+     * @return the message with the result of the query.
+     * @throws IllegalArgumentException if the query isn't correct.
+     */
+    protected String queryMessage(String text) throws IllegalArgumentException {
+        return collection.query(SpaceMarineQuery.compile(text)).toString();
+    }
+
+    /**
+     * Get the message with counts of elements by categories.
+     *
+     * @return the message.
+     */
+    protected String categoryStatsMessage() {
+        StringBuilder message = new StringBuilder("Counts of elements by categories:");
+        String separator = " ";
+        for (Map.Entry<AstartesCategory, Integer> entry : collection.countByCategory().entrySet()) {
+            message.append(separator).append(entry.getKey()).append(": ").append(entry.getValue());
+            separator = ", ";
         }
+        return message.append('.').toString();
     }
 
     /**
@@ -464,9 +519,7 @@ public class ModifiedCMD extends SimpleCMD {
         try {
             MeleeWeapon meleeWeapon = MeleeWeapon.valueOf(args[0]);
             // if (check is correct): print the count.
-            long count = queue.stream()
-                    .filter(sM -> sM.getMeleeWeapon().compareTo(meleeWeapon) > 0)
-                    .count();
+            long count = collection.countGreaterThanMeleeWeapon(meleeWeapon);
             out.println(count + " queue's elements have the value \"Melee Weapon\", greater than the given value.");
         } catch (IllegalArgumentException e) {
             // else: print correct answers.
@@ -743,7 +796,8 @@ public class ModifiedCMD extends SimpleCMD {
             chapter.setParentLegion(inputParentLegion());
             chapter.setMarinesCount(inputMarinesCount());
             chapter.setWorld(inputWorld());
-            return chapter;
+            // equal chapters of entered space marines are shared.
+            return ChapterDictionary.SHARED.chapter(chapter);
         }
     }
 
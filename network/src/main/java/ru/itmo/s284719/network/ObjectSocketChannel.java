@@ -1,55 +1,385 @@
 package ru.itmo.s284719.network;
 
 import java.io.*;
+import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Abstract class with functions for transmitting objects to channel.
+ * Connection for transmitting objects to socket's channel.
+ * Every object is sent as a frame: the length of the payload and the encoded object.
+ * The connection keeps its buffers from the pool and one selector for waiting of objects.
+ * If the compression is enabled for the connection than payloads bigger than
+ * the threshold are sent compressed by the deflater.
+ * Frames which the socket doesn't accept at once are kept in the outbound queue
+ * and written by {@link #flush()} when the socket becomes writable.
  */
-public abstract class ObjectSocketChannel {
+public class ObjectSocketChannel implements Closeable {
     /**
-     * The size of byte's buffer for getting objects.
+     * The codec for sending objects (received objects are decoded by the codec which wrote them).
+     * It's chosen by the system's property "codec": "binary" (default) or "java".
      */
-    private static int BUFF_SIZE = 8192;
+    private static volatile Codec codec = Codec.forName(System.getProperty(Codec.PROPERTY, "binary"));
+    /**
+     * The minimal size of the payload for compression.
+     * It's chosen by the system's property "compression.threshold" (1024 by default).
+     */
+    public static final int COMPRESSION_THRESHOLD = Integer.getInteger("compression.threshold", 1024);
+    /**
+     * The count of bytes in the outbound queue after which streamed objects aren't encoded
+     * and the connection stops reading of new objects.
+     */
+    public static final int OUTBOUND_LIMIT = 256 * 1024;
+
+    /**
+     * The socket's channel.
+     */
+    private final SocketChannel channel;
+    /**
+     * The buffer for received frames.
+     */
+    private final FrameReader reader;
+    /**
+     * The encoder of sent frames and the decoder of received frames.
+     */
+    private final FrameCodec frameCodec;
+    /**
+     * The received, but not decoded frame.
+     */
+    private ByteBuffer frame;
+    /**
+     * The selector for waiting of objects (opened at the first waiting).
+     */
+    private Selector selector;
+    /**
+     * The pool of buffers.
+     */
+    private final BufferPool pool;
+    /**
+     * The lock of sending (it doesn't pin virtual threads while they wait for writing unlike the monitor).
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * The queue of frames which haven't been fully written (buffers are from the pool).
+     */
+    private final ArrayDeque<ByteBuffer> outbound = new ArrayDeque<>();
+    /**
+     * The count of not written bytes in the outbound queue.
+     */
+    private int outboundBytes = 0;
+    /**
+     * The queue of streams of objects which are encoded when the outbound queue is short.
+     */
+    private final ArrayDeque<Iterator<?>> streams = new ArrayDeque<>();
+
+    /**
+     * Constructor with the shared pool of buffers.
+     *
+     * @param channel the socket's channel.
+     */
+    public ObjectSocketChannel(SocketChannel channel) {
+        this(channel, BufferPool.SHARED);
+    }
+
+    /**
+     * Constructor with all parameters.
+     *
+     * @param channel the socket's channel.
+     * @param pool the pool of buffers.
+     */
+    public ObjectSocketChannel(SocketChannel channel, BufferPool pool) {
+        this.channel = channel;
+        this.pool = pool;
+        this.reader = new FrameReader(pool);
+        // frames are written by whole buffers, so the Nagle's algorithm only delays answers.
+        try {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        } catch (IOException | UnsupportedOperationException e) {
+            // the option isn't important for the work of the connection.
+        }
+        this.frameCodec = new FrameCodec(pool);
+    }
+
+    /**
+     * Get the codec for sending objects.
+     *
+     * @return the codec.
+     */
+    public static Codec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Set the codec for sending objects.
+     *
+     * @param codec the codec.
+     */
+    public static void setCodec(Codec codec) {
+        ObjectSocketChannel.codec = codec;
+    }
+
+    /**
+     * Get statistics of the compression of all connections.
+     *
+     * @return the string with the statistics.
+     */
+    public static String getCompressionStats() {
+        return FrameCodec.getCompressionStats();
+    }
+
+    /**
+     * Enable or disable the compression of big payloads sent to the channel.
+     * The other side must be able to decompress them.
+     *
+     * @param compression true for enabling of the compression.
+     */
+    public void setCompression(boolean compression) {
+        lock.lock();
+        try {
+            frameCodec.setCompression(compression);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the socket's channel.
+     *
+     * @return the socket's channel.
+     */
+    public SocketChannel channel() {
+        return channel;
+    }
 
     /**
-     * Send an object to a channel.
+     * Send an object to the channel.
+     * The function waits while the frame with the object isn't fully written,
+     * received bytes are collected while it waits (if the received frame has been taken).
      *
      * @author Kirill Shahow.
-     * @param channel the channel for transmitting objects.
      * @param object the object for sending to the channel.
      */
-    public static void sendObject(SocketChannel channel, Object object) throws IOException {
-        ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
-        ObjectOutputStream objectOut = new ObjectOutputStream(byteOut);
-        synchronized (objectOut) {
-            objectOut.writeObject(object);
-            objectOut.flush();
+    public void sendObject(Object object) throws IOException {
+        lock.lock();
+        try {
+            queueObject(object);
+            while (!flush()) {
+                // if (the answer hasn't been taken) than: wait only for the writing (received bytes aren't read).
+                if (frame != null) {
+                    await(SelectionKey.OP_WRITE);
+                    continue;
+                }
+                await(SelectionKey.OP_WRITE | SelectionKey.OP_READ);
+                if (read() == -1) {
+                    throw new EOFException("The channel is closed.");
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Send an object to the channel without waiting.
+     * The part of the frame which isn't written at once is placed to the outbound queue.
+     *
+     * @param object the object for sending to the channel.
+     */
+    public void queueObject(Object object) throws IOException {
+        lock.lock();
+        try {
+            ByteBuffer frame = frameCodec.encode(object);
+            try {
+                if (outbound.isEmpty()) {
+                    channel.write(frame);
+                }
+                if (frame.hasRemaining()) {
+                    ByteBuffer copy = pool.acquire(frame.remaining());
+                    outboundBytes += frame.remaining();
+                    copy.put(frame).flip();
+                    outbound.add(copy);
+                }
+            } finally {
+                frameCodec.reset();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Send objects of the stream to the channel without waiting.
+     * Objects are encoded one by one when the outbound queue is shorter than {@link #OUTBOUND_LIMIT}.
+     *
+     * @param objects the stream of objects.
+     */
+    public void queueObjects(Iterator<?> objects) throws IOException {
+        lock.lock();
+        try {
+            streams.add(objects);
+            flush();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Write the outbound queue to the channel while the socket accepts bytes.
+     *
+     * @return true if all objects have been written.
+     */
+    public boolean flush() throws IOException {
+        lock.lock();
+        try {
+            do {
+                // encode objects of streams while the outbound queue is short.
+                while (outboundBytes < OUTBOUND_LIMIT && !streams.isEmpty()) {
+                    Iterator<?> stream = streams.peek();
+                    if (stream.hasNext()) {
+                        queueObject(stream.next());
+                    } else {
+                        streams.poll();
+                    }
+                }
+                // write frames while the socket accepts them.
+                while (!outbound.isEmpty()) {
+                    ByteBuffer head = outbound.peek();
+                    outboundBytes -= channel.write(head);
+                    if (head.hasRemaining()) {
+                        return false;
+                    }
+                    pool.release(outbound.poll());
+                }
+            } while (!streams.isEmpty());
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get operations of the selector which the connection waits for.
+     * The connection doesn't read new objects while its outbound queue is full.
+     *
+     * @return the set of operations.
+     */
+    public int interestOps() {
+        lock.lock();
+        try {
+            if (outbound.isEmpty() && streams.isEmpty()) {
+                return SelectionKey.OP_READ;
+            }
+            return outboundBytes < OUTBOUND_LIMIT
+                    ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+                    : SelectionKey.OP_WRITE;
+        } finally {
+            lock.unlock();
         }
-        channel.write(ByteBuffer.wrap(byteOut.toByteArray()));
     }
+
     /**
-     * Get an object from a channel.
+     * Get an object from the channel.
+     * The function waits while the frame with the object isn't fully received
+     * (in the selector for the non-blocking channel or in the reading for the blocking channel).
      *
      * @author Kirill Shahow & Danhout.
-     * @param channel the channel for transmitting objects.
      * @return an object for sending to the channel.
      */
-    public static Object getObject(SocketChannel channel) throws IOException, ClassNotFoundException {
-        ByteBuffer buffer = ByteBuffer.allocate(BUFF_SIZE);
-        Selector selector = Selector.open();
-        channel.configureBlocking(false);
-        channel.register(selector, SelectionKey.OP_READ);
-        while (selector.select() != 1) { continue; }
-        synchronized (channel) {
-            channel.read(buffer);
+    public Object getObject() throws IOException, ClassNotFoundException {
+        while (!hasObject()) {
+            // if (the channel is blocking) than: the reading waits by itself.
+            if (!channel.isBlocking()) {
+                await(SelectionKey.OP_READ);
+            }
+            if (read() == -1) {
+                throw new EOFException("The channel is closed.");
+            }
+        }
+        return nextObject();
+    }
+
+    /**
+     * Read available bytes from the channel without waiting.
+     *
+     * @return count of read bytes or -1 if the channel is closed.
+     */
+    public int read() throws IOException {
+        return reader.read(channel);
+    }
+
+    /**
+     * Check that an object has been fully received.
+     *
+     * @return true if {@link #nextObject()} returns an object without waiting.
+     */
+    public boolean hasObject() throws IOException {
+        if (frame == null) {
+            frame = reader.nextFrame();
+        }
+        return frame != null;
+    }
+
+    /**
+     * Get the received object.
+     *
+     * @return the object.
+     */
+    public Object nextObject() throws IOException, ClassNotFoundException {
+        if (!hasObject()) {
+            throw new NoSuchElementException("The object hasn't been received.");
+        }
+        ByteBuffer payload = frame;
+        frame = null;
+        return frameCodec.decode(payload, reader.isCompressed());
+    }
+
+    /**
+     * Wait until the channel is ready for one of the operations.
+     *
+     * @param ops the set of operations.
+     */
+    private void await(int ops) throws IOException {
+        // register the channel to the selector only once.
+        if (selector == null) {
+            selector = Selector.open();
+            channel.configureBlocking(false);
+            channel.register(selector, ops);
+        } else {
+            channel.keyFor(selector).interestOps(ops);
+        }
+        selector.select();
+        selector.selectedKeys().clear();
+    }
+
+    /**
+     * Close the channel and return buffers to the pool.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            try {
+                if (selector != null) {
+                    selector.close();
+                }
+                channel.close();
+            } finally {
+                reader.release();
+                frameCodec.close();
+                for (ByteBuffer buffer : outbound) {
+                    pool.release(buffer);
+                }
+                outbound.clear();
+                streams.clear();
+            }
+        } finally {
+            lock.unlock();
         }
-        ByteArrayInputStream byteIn = new ByteArrayInputStream(buffer.array());
-        ObjectInputStream objectIn = new ObjectInputStream(byteIn);
-        return objectIn.readObject();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,32 @@
+package ru.itmo.s284719.network;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Page of space marines of the command "show" with the cursor of the next page.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class Page implements Serializable {
+    /**
+     * The space marines of the page.
+     */
+    public List<SpaceMarine> spaceMarines;
+    /**
+     * The opaque token of the next page (null if the page is the last one).
+     */
+    public String cursor;
+
+    /**
+     * Constructor with all parameters.
+     *
+     * @param spaceMarines the space marines of the page.
+     * @param cursor the token of the next page or null.
+     */
+    public Page(List<SpaceMarine> spaceMarines, String cursor) {
+        this.spaceMarines = spaceMarines;
+        this.cursor = cursor;
+    }
+}
@@ -528,7 +528,7 @@ public class Parser {
         numberLine = pair.first;
         numberChar = pair.second;
 
-        spaceMarine.setChapter(chapter);
+        spaceMarine.setChapter(ChapterDictionary.SHARED.chapter(chapter));
 
         pair = readCharacter('}', reader, numberLine, numberChar);
         numberLine = pair.first;
@@ -0,0 +1,35 @@
+package ru.itmo.s284719.network;
+
+import ru.itmo.s284719.network.commands.Command;
+
+import java.io.Serializable;
+
+/**
+ * Envelope of the client's command with the request's ID.
+ * The server answers with {@link Response} with the same ID,
+ * so the client can send many requests without waiting for answers.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class Request implements Serializable {
+    /**
+     * The request's ID (unique for the connection).
+     */
+    public int id;
+    /**
+     * The client's command.
+     */
+    public Command command;
+
+    /**
+     * Constructor with all parameters.
+     *
+     * @param id the request's ID.
+     * @param command the client's command.
+     */
+    public Request(int id, Command command) {
+        this.id = id;
+        this.command = command;
+    }
+}
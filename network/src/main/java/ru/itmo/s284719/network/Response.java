@@ -0,0 +1,31 @@
+package ru.itmo.s284719.network;
+
+import java.io.Serializable;
+
+/**
+ * Envelope of the server's answer with the ID of the request.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class Response implements Serializable {
+    /**
+     * The ID of the request.
+     */
+    public int id;
+    /**
+     * The result of the command.
+     */
+    public Object result;
+
+    /**
+     * Constructor with all parameters.
+     *
+     * @param id the ID of the request.
+     * @param result the result of the command.
+     */
+    public Response(int id, Object result) {
+        this.id = id;
+        this.result = result;
+    }
+}
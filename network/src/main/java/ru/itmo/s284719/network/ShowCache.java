@@ -0,0 +1,279 @@
+package ru.itmo.s284719.network;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.reflect.TypeToken;
+import ru.itmo.s284719.network.collection.SpaceMarineCollection;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache of rendered views of the command "show" keyed by the version of the collection and the format.
+ * Views are built again only when the collection has been changed since the last building,
+ * so repeated commands "show" between changes copy the cached bytes instead of sorting and encoding.
+ * If the collection is kept off the heap ({@link SpaceMarineCollection#isOffHeap()}) than only its sorted snapshots
+ * are cached (they are kept off the heap too) and chunks and JSON are made from them by parts while they are written,
+ * so the heap doesn't keep the whole collection as objects.
+ * The cache is thread-safe: concurrent misses can build the same view, the last one is kept.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class ShowCache {
+    /**
+     * The maximal count of space marines in one chunk of the command "show".
+     */
+    public static final int CHUNK_SIZE = 256;
+
+    /**
+     * Formats of views.
+     */
+    public enum Format {
+        /**
+         * Chunks sorted by height and encoded by {@link BinaryCodec} (for clients with the binary codec).
+         */
+        BINARY_CHUNKS,
+        /**
+         * Chunks sorted by height (for clients with other codecs).
+         */
+        CHUNKS,
+        /**
+         * Pretty JSON of the collection (for the console).
+         */
+        JSON
+    }
+
+    /**
+     * The type of lists of space marines for the format JSON.
+     */
+    private static final Type LIST_TYPE = new TypeToken<List<SpaceMarine>>(){}.getType();
+
+    /**
+     * The cached view with the version of the collection.
+     */
+    private static class Entry {
+        /**
+         * The version of the collection.
+         */
+        final long version;
+        /**
+         * The view.
+         */
+        final Object view;
+
+        /**
+         * Constructor with all parameters.
+         *
+         * @param version the version of the collection.
+         * @param view the view.
+         */
+        Entry(long version, Object view) {
+            this.version = version;
+            this.view = view;
+        }
+    }
+
+    /**
+     * The collection.
+     */
+    private final SpaceMarineCollection collection;
+    /**
+     * The parser for the format JSON.
+     */
+    private final Gson gson;
+    /**
+     * The cached views by ordinals of formats.
+     */
+    private final AtomicReferenceArray<Entry> entries = new AtomicReferenceArray<>(Format.values().length);
+    /**
+     * The count of answers from the cache.
+     */
+    private final LongAdder hits = new LongAdder();
+    /**
+     * The count of building of views.
+     */
+    private final LongAdder misses = new LongAdder();
+    /**
+     * The total time of building of views in nanoseconds.
+     */
+    private final LongAdder buildTime = new LongAdder();
+    /**
+     * The time of the last building in nanoseconds.
+     */
+    private final AtomicLong lastBuildTime = new AtomicLong();
+
+    /**
+     * Constructor with all parameters.
+     *
+     * @param collection the collection.
+     * @param gson the parser for the format JSON.
+     */
+    public ShowCache(SpaceMarineCollection collection, Gson gson) {
+        this.collection = collection;
+        this.gson = gson;
+    }
+
+    /**
+     * Get results of chunks of the collection sorted by height for the codec of connections.
+     * Results are {@link Encoded} chunks for {@link BinaryCodec} and {@link Chunk} for other codecs.
+     *
+     * @return the unmodifiable list of results (at least one chunk).
+     */
+    public List<?> chunks() {
+        return (List<?>) get(ObjectSocketChannel.getCodec() instanceof BinaryCodec
+                ? Format.BINARY_CHUNKS : Format.CHUNKS);
+    }
+
+    /**
+     * Write the collection in pretty JSON (in the ascending order).
+     *
+     * @param out the output for JSON.
+     * @throws IOException if the writing fails.
+     */
+    public void writeJson(Appendable out) throws IOException {
+        Object view = get(Format.JSON);
+        // if (the view is the snapshot of the off-heap collection) than: space marines are copied while they are written.
+        if (view instanceof List) {
+            try {
+                gson.toJson(view, LIST_TYPE, out);
+            } catch (JsonIOException e) {
+                throw new IOException(e.getMessage(), e.getCause());
+            }
+        } else {
+            out.append((String) view);
+        }
+    }
+
+    /**
+     * Get the count of answers from the cache.
+     *
+     * @return the count of hits.
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * Get the count of building of views.
+     *
+     * @return the count of misses.
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Get the view of the current version of the collection from the cache or build that.
+     *
+     * @param format the format of the view.
+     * @return the view.
+     */
+    private Object get(Format format) {
+        long version = collection.version();
+        Entry entry = entries.get(format.ordinal());
+        if (entry != null && entry.version == version) {
+            hits.increment();
+            return entry.view;
+        }
+        misses.increment();
+        long start = System.nanoTime();
+        Object view = build(format);
+        long time = System.nanoTime() - start;
+        buildTime.add(time);
+        lastBuildTime.set(time);
+        // if (the collection wasn't changed while the view was built) than: the view is of the version.
+        if (collection.version() == version) {
+            entries.set(format.ordinal(), new Entry(version, view));
+        }
+        return view;
+    }
+
+    /**
+     * Build the view of the collection.
+     *
+     * @param format the format of the view.
+     * @return the view.
+     */
+    private Object build(Format format) {
+        if (format == Format.JSON) {
+            return collection.isOffHeap() ? collection.snapshot() : gson.toJson(collection.toArray());
+        }
+        List<Object> chunks = new ChunkList(collection.snapshotByHeight(), format == Format.BINARY_CHUNKS);
+        // if (the collection is kept off the heap) than: every chunk is made when it's written.
+        return collection.isOffHeap() ? chunks : Collections.unmodifiableList(new ArrayList<>(chunks));
+    }
+
+    /**
+     * Unmodifiable list of chunks of space marines (at least one chunk): every chunk is made
+     * from the range of {@link #CHUNK_SIZE} space marines when it's got.
+     */
+    private static class ChunkList extends AbstractList<Object> implements RandomAccess {
+        /**
+         * Space marines of chunks.
+         */
+        private final List<SpaceMarine> spaceMarines;
+        /**
+         * True if chunks are encoded by {@link BinaryCodec}.
+         */
+        private final boolean encoded;
+
+        /**
+         * Constructor with all parameters.
+         *
+         * @param spaceMarines space marines of chunks.
+         * @param encoded true if chunks are encoded by {@link BinaryCodec}.
+         */
+        ChunkList(List<SpaceMarine> spaceMarines, boolean encoded) {
+            this.spaceMarines = spaceMarines;
+            this.encoded = encoded;
+        }
+
+        @Override
+        public Object get(int index) {
+            int offset = Objects.checkIndex(index, size()) * CHUNK_SIZE;
+            int end = Math.min(offset + CHUNK_SIZE, spaceMarines.size());
+            // the list is copied, because views of lists aren't serializable (for the Java's codec).
+            Chunk chunk = new Chunk(offset, new ArrayList<>(spaceMarines.subList(offset, end)), end == spaceMarines.size());
+            if (!encoded) {
+                return chunk;
+            }
+            try {
+                return BinaryCodec.INSTANCE.encodeValue(chunk);
+            } catch (IOException e) {
+                // the stream in memory doesn't throw the exception.
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public int size() {
+            return Math.max(1, (spaceMarines.size() + CHUNK_SIZE - 1) / CHUNK_SIZE);
+        }
+    }
+
+    /**
+     * Get statistics of the cache.
+     *
+     * @return the string with the statistics.
+     */
+    @Override
+    public String toString() {
+        long hits = getHits();
+        long misses = getMisses();
+        return String.format("ShowCache: {hits: %d, misses: %d, hit rate: %.1f%%, "
+                        + "average rebuild: %.3f ms, last rebuild: %.3f ms}",
+                hits, misses, hits + misses == 0 ? 0.0 : hits * 100.0 / (hits + misses),
+                misses == 0 ? 0.0 : buildTime.sum() / 1e6 / misses, lastBuildTime.get() / 1e6);
+    }
+}
@@ -0,0 +1,270 @@
+package ru.itmo.s284719.network;
+
+import ru.itmo.s284719.network.collection.SpaceMarineCollection;
+import ru.itmo.s284719.network.collection.SpaceMarineOrder;
+import ru.itmo.s284719.network.collection.SpaceMarineQuery;
+import ru.itmo.s284719.network.commands.ShowPage;
+
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Server-side cursors of pages of the command "show": "show offset limit" (the order of "show", by height),
+ * "show top k by field" (the greatest values first) and "show next cursor".
+ * Every page with the full count of space marines gets the opaque random token of the cursor which keeps
+ * the order, the size of pages and the last space marine of the page, so the next page is chosen after that space marine
+ * by the collection (by its index or by the bounded heap) without skipping and sorting of previous pages.
+ * Tokens aren't changed by reading, so the page can be requested again by the same token.
+ * Cursors are removed after the time to live (the system's property "cursors.ttl" in seconds, 600 by default)
+ * and the least recently used cursors are removed above the limit (the system's property "cursors.max", 1024 by default).
+ * The registry is thread-safe.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class ShowCursors {
+    /**
+     * The maximal count of cursors.
+     */
+    public static final int MAX_CURSORS = Math.max(1, Integer.getInteger("cursors.max", 1024));
+    /**
+     * The time to live of cursors in milliseconds.
+     */
+    public static final long TTL = Long.getLong("cursors.ttl", 600) * 1000;
+    /**
+     * The count of random bytes of tokens.
+     */
+    private static final int TOKEN_BYTES = 12;
+
+    /**
+     * The state of the cursor.
+     */
+    private static class Cursor {
+        /**
+         * The order of pages.
+         */
+        final SpaceMarineOrder order;
+        /**
+         * The size of pages.
+         */
+        final int limit;
+        /**
+         * The last space marine of the previous page.
+         */
+        final SpaceMarine last;
+        /**
+         * The time of expiring in milliseconds.
+         */
+        final long expires;
+
+        /**
+         * Constructor with all parameters.
+         *
+         * @param order the order of pages.
+         * @param limit the size of pages.
+         * @param last the last space marine of the previous page.
+         * @param expires the time of expiring in milliseconds.
+         */
+        Cursor(SpaceMarineOrder order, int limit, SpaceMarine last, long expires) {
+            this.order = order;
+            this.limit = limit;
+            this.last = last;
+            this.expires = expires;
+        }
+    }
+
+    /**
+     * The collection.
+     */
+    private final SpaceMarineCollection collection;
+    /**
+     * Cursors by tokens in the order of using (the least recently used cursor is first).
+     */
+    private final LinkedHashMap<String, Cursor> cursors = new LinkedHashMap<String, Cursor>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Cursor> eldest) {
+            return size() > MAX_CURSORS;
+        }
+    };
+    /**
+     * The generator of tokens.
+     */
+    private final SecureRandom random = new SecureRandom();
+    /**
+     * The count of sent pages.
+     */
+    private final LongAdder pages = new LongAdder();
+
+    /**
+     * Constructor with all parameters.
+     *
+     * @param collection the collection.
+     */
+    public ShowCursors(SpaceMarineCollection collection) {
+        this.collection = collection;
+    }
+
+    /**
+     * Parse arguments of the command "show" with pages:
+     * "offset limit", "top k by field" or "next cursor".
+     *
+     * @param args arguments of the command.
+     * @return the command of the page.
+     * @throws IllegalArgumentException if arguments aren't correct.
+     */
+    public static ShowPage parse(String[] args) throws IllegalArgumentException {
+        if (args.length == 2 && args[0].equals("next")) {
+            return new ShowPage(0, 0, null, args[1]);
+        }
+        if (args.length == 4 && args[0].equals("top") && args[2].equals("by")) {
+            try {
+                SpaceMarineQuery.Field.valueOf(args[3].toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Not found the field: " + args[3] + ".");
+            }
+            return new ShowPage(0, positive(args[1], "k"), args[3].toLowerCase(), null);
+        }
+        if (args.length == 2) {
+            int offset;
+            try {
+                offset = Integer.parseInt(args[0]);
+            } catch (NumberFormatException e) {
+                offset = -1;
+            }
+            if (offset < 0) {
+                throw new IllegalArgumentException("The offset is a not negative number.");
+            }
+            return new ShowPage(offset, positive(args[1], "limit"), null, null);
+        }
+        throw new IllegalArgumentException("The parameters are \"offset limit\", \"top k by field\" or \"next cursor\".");
+    }
+
+    /**
+     * Get the page of the command.
+     *
+     * @param command the command of the page.
+     * @return the page with the cursor of the next page.
+     * @throws IllegalArgumentException if the field or the cursor isn't found.
+     */
+    public Page page(ShowPage command) throws IllegalArgumentException {
+        if (command.cursor != null) {
+            return next(command.cursor);
+        }
+        if (command.limit <= 0 || command.offset < 0) {
+            throw new IllegalArgumentException("The size of the page is positive and the offset isn't negative.");
+        }
+        if (command.top != null) {
+            SpaceMarineQuery.Field field;
+            try {
+                field = SpaceMarineQuery.Field.valueOf(command.top.toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Not found the field: " + command.top + ".");
+            }
+            return page(SpaceMarineOrder.top(field), null, 0, command.limit);
+        }
+        return page(SpaceMarineOrder.BY_HEIGHT, null, command.offset, command.limit);
+    }
+
+    /**
+     * Get the next page of the cursor.
+     *
+     * @param token the token of the cursor.
+     * @return the page with the cursor of the next page.
+     * @throws IllegalArgumentException if the cursor isn't found or it's expired.
+     */
+    public Page next(String token) throws IllegalArgumentException {
+        Cursor cursor;
+        synchronized (cursors) {
+            cursor = cursors.get(token);
+            if (cursor != null && cursor.expires < System.currentTimeMillis()) {
+                cursors.remove(token);
+                cursor = null;
+            }
+        }
+        if (cursor == null) {
+            throw new IllegalArgumentException("The cursor isn't found or it's expired: " + token + ".");
+        }
+        return page(cursor.order, cursor.last, 0, cursor.limit);
+    }
+
+    /**
+     * Get the count of open cursors and sent pages.
+     *
+     * @return the string with the statistics.
+     */
+    @Override
+    public String toString() {
+        int open;
+        synchronized (cursors) {
+            open = cursors.size();
+        }
+        return "ShowCursors: {cursors: " + open + ", pages: " + pages.sum() + "}";
+    }
+
+    /**
+     * Get the page from the collection and open the cursor of the next page if the page is full.
+     *
+     * @param order the order.
+     * @param after the last space marine of the previous page (null for the first page).
+     * @param offset the count of skipped space marines.
+     * @param limit the size of the page.
+     * @return the page.
+     */
+    private Page page(SpaceMarineOrder order, SpaceMarine after, int offset, int limit) {
+        SpaceMarine[] spaceMarines = collection.page(order, after, offset, limit);
+        pages.increment();
+        // if (the page isn't full) than: the collection hasn't more space marines.
+        String token = spaceMarines.length < limit ? null
+                : open(new Cursor(order, limit, spaceMarines[spaceMarines.length - 1], System.currentTimeMillis() + TTL));
+        return new Page(Arrays.asList(spaceMarines), token);
+    }
+
+    /**
+     * Register the cursor and remove expired cursors.
+     *
+     * @param cursor the cursor.
+     * @return the token of the cursor.
+     */
+    private String open(Cursor cursor) {
+        byte[] bytes = new byte[TOKEN_BYTES];
+        random.nextBytes(bytes);
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        long now = System.currentTimeMillis();
+        synchronized (cursors) {
+            // remove expired cursors from the least recently used one to the first live one
+            // (other expired cursors are removed when they are used or by the limit).
+            Iterator<Cursor> iterator = cursors.values().iterator();
+            while (iterator.hasNext() && iterator.next().expires < now) {
+                iterator.remove();
+            }
+            cursors.put(token, cursor);
+        }
+        return token;
+    }
+
+    /**
+     * Parse the positive number.
+     *
+     * @param string the string.
+     * @param name the name of the number for the message.
+     * @return the number.
+     * @throws IllegalArgumentException if the string isn't the positive number.
+     */
+    private static int positive(String string, String name) throws IllegalArgumentException {
+        int number;
+        try {
+            number = Integer.parseInt(string);
+        } catch (NumberFormatException e) {
+            number = 0;
+        }
+        if (number <= 0) {
+            throw new IllegalArgumentException("The " + name + " is a positive number.");
+        }
+        return number;
+    }
+}
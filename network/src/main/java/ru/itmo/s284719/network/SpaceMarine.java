@@ -5,7 +5,7 @@ import java.time.ZonedDateTime;
 
 /** Main Class for labs
  */
-public class SpaceMarine implements Comparable<SpaceMarine>, Serializable {
+public class SpaceMarine implements SpaceMarineView, Comparable<SpaceMarine>, Serializable {
     private int id; //Значение поля должно быть больше 0, Значение этого поля должно быть уникальным, Значение этого поля должно генерироваться автоматически
     private String name; //Поле не может быть null, Строка не может быть пустой
     private Coordinates coordinates; //Поле не может быть null
@@ -193,23 +193,8 @@ public class SpaceMarine implements Comparable<SpaceMarine>, Serializable {
 
     @Override
     public int compareTo(SpaceMarine spaceMarine) {
-        return this.getId() != spaceMarine.getId()
-                ? getId() - spaceMarine.getId()
-                : (!getName().equals(spaceMarine.getName())
-                ? getName().compareTo(spaceMarine.getName())
-                : (!getCoordinates().equals(spaceMarine.getCoordinates())
-                ? getCoordinates().compareTo(spaceMarine.getCoordinates())
-                : (!getCreationDate().equals(spaceMarine.getCreationDate())
-                ? getCreationDate().compareTo(spaceMarine.getCreationDate())
-                : (!getHealth().equals(spaceMarine.getHealth())
-                ? getHealth().compareTo(spaceMarine.getHealth())
-                : (!getHeight().equals(spaceMarine.getHeight())
-                ? getHeight().compareTo(spaceMarine.getHeight())
-                : (!getCategory().equals(spaceMarine.getCategory())
-                ? getCategory().compareTo(spaceMarine.getCategory())
-                : (!getMeleeWeapon().equals(spaceMarine.getMeleeWeapon())
-                ? getMeleeWeapon().compareTo(spaceMarine.getMeleeWeapon())
-                : getChapter().compareTo(spaceMarine.getChapter()))))))));
+        // the same order is used for space marines which aren't kept in objects.
+        return SpaceMarineView.compare(this, spaceMarine);
     }
 
 }
@@ -0,0 +1,69 @@
+package ru.itmo.s284719.network;
+
+import java.time.ZonedDateTime;
+import java.util.Comparator;
+
+/**
+ * Read-only access to fields of a space marine.
+ * It's implemented by {@link SpaceMarine} and by flyweights of records which aren't kept in objects,
+ * so space marines of both kinds can be compared and scanned by the same code.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public interface SpaceMarineView {
+    int getId();
+
+    String getName();
+
+    Coordinates getCoordinates();
+
+    ZonedDateTime getCreationDate();
+
+    Long getHealth();
+
+    Integer getHeight();
+
+    AstartesCategory getCategory();
+
+    MeleeWeapon getMeleeWeapon();
+
+    Chapter getChapter();
+
+    /**
+     * Compare space marines by fields one by one while they are equal
+     * (the order is total, so it can be used by ordered collections).
+     * Composite fields are got only if IDs and names are equal.
+     *
+     * @param first the first space marine.
+     * @param second the second space marine.
+     * @return the negative number, zero or the positive number
+     * if the first space marine is less than, equal to or greater than the second one.
+     */
+    static int compare(SpaceMarineView first, SpaceMarineView second) {
+        int result = Integer.compare(first.getId(), second.getId());
+        if (result == 0) {
+            result = first.getName().compareTo(second.getName());
+        }
+        if (result == 0) {
+            result = first.getCoordinates().compareTo(second.getCoordinates());
+        }
+        if (result == 0) {
+            result = first.getCreationDate().compareTo(second.getCreationDate());
+        }
+        if (result == 0) {
+            result = first.getHealth().compareTo(second.getHealth());
+        }
+        if (result == 0) {
+            result = Comparator.nullsFirst(Comparator.<Integer>naturalOrder())
+                    .compare(first.getHeight(), second.getHeight());
+        }
+        if (result == 0) {
+            result = first.getCategory().compareTo(second.getCategory());
+        }
+        if (result == 0) {
+            result = first.getMeleeWeapon().compareTo(second.getMeleeWeapon());
+        }
+        return result != 0 ? result : first.getChapter().compareTo(second.getChapter());
+    }
+}
@@ -0,0 +1,217 @@
+package ru.itmo.s284719.network.collection;
+
+import java.util.Arrays;
+
+/**
+ * Hash index from positive int keys to objects (e.g. from IDs to elements of a collection).
+ * The index keeps keys and values in two arrays with open addressing and linear probing,
+ * so there isn't boxing of keys and an object per entry.
+ * Removed entries are replaced by shifting of the next entries of their chain (without tombstones).
+ * The index isn't thread-safe.
+ *
+ * @param <V> the type of values.
+ * @version 0.2
+ * @author Danhout.
+ */
+public class IntIndex<V> {
+    /**
+     * The key of free cells (keys are positive).
+     */
+    private static final int FREE = 0;
+    /**
+     * The minimal capacity of arrays (a power of two).
+     */
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * The keys of cells.
+     */
+    private int[] keys;
+    /**
+     * The values of cells.
+     */
+    private Object[] values;
+    /**
+     * The mask of a cell's number (the capacity minus one).
+     */
+    private int mask;
+    /**
+     * The count of entries.
+     */
+    private int size = 0;
+
+    /**
+     * Constructor with the minimal capacity.
+     */
+    public IntIndex() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /**
+     * Constructor with the expected count of entries.
+     *
+     * @param expectedSize the expected count of entries.
+     */
+    public IntIndex(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * Get the count of entries.
+     *
+     * @return the count of entries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the value of the key.
+     *
+     * @param key the positive key.
+     * @return the value or null if the key isn't found.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        for (int cell = cellOf(key); ; cell = (cell + 1) & mask) {
+            int k = keys[cell];
+            if (k == key) {
+                return (V) values[cell];
+            }
+            if (k == FREE) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Put the value of the key.
+     *
+     * @param key the positive key.
+     * @param value the value (not null).
+     * @return the previous value or null if the key hasn't been found.
+     */
+    @SuppressWarnings("unchecked")
+    public V put(int key, V value) {
+        if (key <= 0) {
+            throw new IllegalArgumentException("The key must be positive: " + key + ".");
+        }
+        int cell = cellOf(key);
+        for (; keys[cell] != FREE; cell = (cell + 1) & mask) {
+            if (keys[cell] == key) {
+                V previous = (V) values[cell];
+                values[cell] = value;
+                return previous;
+            }
+        }
+        keys[cell] = key;
+        values[cell] = value;
+        // keep the load not greater than a half for short chains.
+        if (++size > keys.length / 2) {
+            rehash(keys.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * Remove the key.
+     *
+     * @param key the positive key.
+     * @return the removed value or null if the key hasn't been found.
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(int key) {
+        int cell = cellOf(key);
+        for (; keys[cell] != key; cell = (cell + 1) & mask) {
+            if (keys[cell] == FREE) {
+                return null;
+            }
+        }
+        V removed = (V) values[cell];
+        --size;
+        // shift next entries of the chain to the free cell while they can be found from their home cells.
+        int free = cell;
+        for (int next = (free + 1) & mask; keys[next] != FREE; next = (next + 1) & mask) {
+            int home = cellOf(keys[next]);
+            // if (the home cell isn't cyclically in (free, next]) than: the entry can be moved to the free cell.
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                keys[free] = keys[next];
+                values[free] = values[next];
+                free = next;
+            }
+        }
+        keys[free] = FREE;
+        values[free] = null;
+        return removed;
+    }
+
+    /**
+     * Remove all entries. The capacity is returned to the minimal one.
+     */
+    public void clear() {
+        if (keys.length > MIN_CAPACITY) {
+            allocate(MIN_CAPACITY);
+        } else {
+            Arrays.fill(keys, FREE);
+            Arrays.fill(values, null);
+        }
+        size = 0;
+    }
+
+    /**
+     * Get the home cell of the key (the Fibonacci hashing mixes close keys).
+     *
+     * @param key the key.
+     * @return the number of the cell.
+     */
+    private int cellOf(int key) {
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * Move all entries to arrays with the new capacity.
+     *
+     * @param capacity the new capacity (a power of two).
+     */
+    private void rehash(int capacity) {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; ++i) {
+            if (oldKeys[i] != FREE) {
+                int cell = cellOf(oldKeys[i]);
+                while (keys[cell] != FREE) {
+                    cell = (cell + 1) & mask;
+                }
+                keys[cell] = oldKeys[i];
+                values[cell] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Create empty arrays with the capacity.
+     *
+     * @param capacity the capacity (a power of two).
+     */
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Get the capacity for the count of entries with the load not greater than a half.
+     *
+     * @param expectedSize the expected count of entries.
+     * @return the capacity (a power of two).
+     */
+    private static int capacityFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity / 2 < expectedSize) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+}
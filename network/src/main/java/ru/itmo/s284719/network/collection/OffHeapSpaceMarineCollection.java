@@ -0,0 +1,582 @@
+package ru.itmo.s284719.network.collection;
+
+import ru.itmo.s284719.network.*;
+
+import java.nio.LongBuffer;
+import java.util.*;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Collection of space marines kept off the heap: space marines are records of {@link SpaceMarineRecords}
+ * and the heap keeps only counters and buffers' objects, so its size and pauses of the garbage collector
+ * don't grow with the collection. Space marines are copied to objects only when they are returned.
+ * Snapshots of the whole collection ({@link #snapshot()}, {@link #snapshotByHeight()}) are sorted off the heap
+ * ({@link RecordSort}) and copied to new off-heap tables, so the command "show" and the saving read them by parts.
+ * Records are found by IDs by the hash index of record numbers ({@link RecordIndex}) and the least record
+ * is the head of the indexed heap of record numbers ({@link RecordHeap}), both are kept in direct buffers too;
+ * the finding by height is the scan of records by flyweights,
+ * the average height and counts by melee weapons and categories are kept in counters.
+ * Queries are answered by counters when they cover the query and by the scan of records by flyweights otherwise
+ * (big collections are scanned by parallel fork-join tasks with own flyweights).
+ * Pages in all orders are chosen by the bounded heap over flyweights.
+ * Columns ({@link #scan(Function)}, {@link #parallelScan(SpaceMarineColumns.RangeQuery, BinaryOperator)})
+ * are read from records, space marines of rows are copied from records.
+ * Locking, versions and {@link #atomically(java.util.function.Supplier)} are the same as in the heap collection.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class OffHeapSpaceMarineCollection extends SpaceMarineCollection {
+    /**
+     * The off-heap records of space marines.
+     */
+    private final SpaceMarineRecords records = new SpaceMarineRecords();
+    /**
+     * The index from IDs to records.
+     */
+    private final RecordIndex ids = new RecordIndex(records);
+    /**
+     * The heap of records by the order of space marines.
+     */
+    private final RecordHeap order = new RecordHeap(records);
+    /**
+     * The columnar view of records for scans.
+     */
+    private final SpaceMarineColumns columns = new RecordColumns();
+    /**
+     * The count of space marines with not null height.
+     */
+    private int heightCount = 0;
+    /**
+     * The sum of heights of space marines.
+     */
+    private long heightSum = 0;
+    /**
+     * The counts of space marines by ordinals of melee weapons.
+     */
+    private final int[] meleeWeapons = new int[MeleeWeapon.values().length];
+    /**
+     * The counts of space marines by ordinals of categories.
+     */
+    private final int[] categories = new int[AstartesCategory.values().length];
+
+    /**
+     * Constructor without parameters (with the empty collection).
+     */
+    public OffHeapSpaceMarineCollection() {
+        this(Collections.<SpaceMarine>emptyList());
+    }
+
+    /**
+     * Constructor with initial space marines (they are copied to records).
+     *
+     * @param spaceMarines the initial space marines.
+     */
+    public OffHeapSpaceMarineCollection(Collection<SpaceMarine> spaceMarines) {
+        super();
+        replaceAll(spaceMarines);
+    }
+
+    @Override
+    public void add(SpaceMarine spaceMarine) {
+        long stamp = writeLock();
+        try {
+            offer(spaceMarine);
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean addIfMin(SpaceMarine spaceMarine) {
+        long stamp = writeLock();
+        try {
+            int min = order.peek();
+            // if (the space marine isn't less than the head) than: don't add that.
+            if (min != -1 && SpaceMarineView.compare(spaceMarine, records.record(min)) >= 0) {
+                return false;
+            }
+            offer(spaceMarine);
+            return true;
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean update(int id, SpaceMarine spaceMarine) {
+        long stamp = writeLock();
+        try {
+            int record = ids.find(id);
+            if (record == -1) {
+                return false;
+            }
+            remove(record);
+            offer(spaceMarine);
+            return true;
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean removeById(int id) {
+        long stamp = writeLock();
+        try {
+            int record = ids.find(id);
+            if (record == -1) {
+                return false;
+            }
+            remove(record);
+            return true;
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean removeAnyByHeight(int height) {
+        long stamp = writeLock();
+        try {
+            for (int record = 0; record < records.size(); ++record) {
+                if (!records.isHeightNull(record) && records.rawHeight(record) == height) {
+                    remove(record);
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int removeGreater(SpaceMarine spaceMarine) {
+        long stamp = writeLock();
+        try {
+            int removed = 0;
+            SpaceMarineRecord flyweight = records.record(0);
+            // scan from the end: the last record moved to the removed one has been checked already.
+            for (int record = records.size() - 1; record >= 0; --record) {
+                if (SpaceMarineView.compare(flyweight.moveTo(record), spaceMarine) > 0) {
+                    remove(record);
+                    ++removed;
+                }
+            }
+            return removed;
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public SpaceMarine poll() {
+        long stamp = writeLock();
+        try {
+            int min = order.peek();
+            if (min == -1) {
+                return null;
+            }
+            SpaceMarine head = records.get(min);
+            remove(min);
+            return head;
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void clear() {
+        replaceAll(Collections.<SpaceMarine>emptyList());
+    }
+
+    @Override
+    public void replaceAll(Collection<SpaceMarine> spaceMarines) {
+        long stamp = writeLock();
+        try {
+            records.clear();
+            ids.clear();
+            order.clear();
+            count = 0;
+            ++version;
+            heightCount = 0;
+            heightSum = 0;
+            Arrays.fill(meleeWeapons, 0);
+            Arrays.fill(categories, 0);
+            for (SpaceMarine spaceMarine : spaceMarines) {
+                offer(spaceMarine);
+            }
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public double averageOfHeight() {
+        long stamp = readLock();
+        try {
+            return heightCount == 0 ? 0 : ((double) heightSum) / heightCount;
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public long countGreaterThanMeleeWeapon(MeleeWeapon meleeWeapon) {
+        long stamp = readLock();
+        try {
+            long greater = 0;
+            for (int i = meleeWeapon.ordinal() + 1; i < meleeWeapons.length; ++i) {
+                greater += meleeWeapons[i];
+            }
+            return greater;
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public EnumMap<AstartesCategory, Integer> countByCategory() {
+        long stamp = readLock();
+        try {
+            EnumMap<AstartesCategory, Integer> counts = new EnumMap<>(AstartesCategory.class);
+            for (AstartesCategory category : AstartesCategory.values()) {
+                counts.put(category, categories[category.ordinal()]);
+            }
+            return counts;
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Get the copy of space marines (in the ascending order).
+     * All space marines are copied to objects, so big collections should be read by {@link #snapshot()}.
+     *
+     * @return the array with new space marines.
+     */
+    @Override
+    public SpaceMarine[] toArray() {
+        return snapshot().toArray(new SpaceMarine[0]);
+    }
+
+    /**
+     * Get the copy of space marines sorted by height (space marines with null height are last).
+     * All space marines are copied to objects, so big collections should be read by {@link #snapshotByHeight()}.
+     *
+     * @return the sorted array with new space marines.
+     */
+    @Override
+    public SpaceMarine[] sortedByHeight() {
+        return snapshotByHeight().toArray(new SpaceMarine[0]);
+    }
+
+    /**
+     * Get the snapshot of space marines (in the ascending order): records are sorted by IDs
+     * (records with equal IDs are sorted by the order of space marines) and copied to the new off-heap table,
+     * space marines are copied from the table only when they are got from the list.
+     *
+     * @return the unmodifiable list with space marines.
+     */
+    @Override
+    public List<SpaceMarine> snapshot() {
+        return snapshot(record -> Integer.toUnsignedLong(records.id(record) ^ Integer.MIN_VALUE), true);
+    }
+
+    /**
+     * Get the snapshot of space marines sorted by height (space marines with null height are last,
+     * space marines with the same height are in the order of records): records are sorted and copied
+     * to the new off-heap table, space marines are copied from the table only when they are got from the list.
+     *
+     * @return the unmodifiable list with space marines.
+     */
+    @Override
+    public List<SpaceMarine> snapshotByHeight() {
+        return snapshot(record -> records.isHeightNull(record) ? 1L << Integer.SIZE
+                : Integer.toUnsignedLong(records.rawHeight(record) ^ Integer.MIN_VALUE), false);
+    }
+
+    /**
+     * Check that space marines are kept off the heap.
+     *
+     * @return true.
+     */
+    @Override
+    public boolean isOffHeap() {
+        return true;
+    }
+
+    /**
+     * Run the compiled query with the read lock: counters answer counting by one category or melee weapon
+     * and the sum and the average of heights without conditions, other queries scan records by flyweights
+     * (in parallel if {@link ParallelScan#isParallel(int)}).
+     *
+     * @param query the compiled query.
+     * @return the result of the query.
+     */
+    @Override
+    public SpaceMarineQuery.Result query(SpaceMarineQuery query) {
+        long stamp = readLock();
+        try {
+            SpaceMarineQuery.Result result;
+            if (query.isCountedByCounters()) {
+                result = query.newResult("counters");
+                result.add(query.countByCounters(count, categories, meleeWeapons), 0, 0, Long.MAX_VALUE, Long.MIN_VALUE);
+                return result;
+            }
+            if (!query.hasConditions() && !query.isGrouped() && query.getAggregated() == SpaceMarineQuery.Field.HEIGHT
+                    && (query.getOperation() == SpaceMarineQuery.Operation.SUM
+                    || query.getOperation() == SpaceMarineQuery.Operation.AVG)) {
+                result = query.newResult("counters");
+                result.add(count, heightCount, heightSum, Long.MAX_VALUE, Long.MIN_VALUE);
+                return result;
+            }
+            String plan = ParallelScan.isParallel(records.size()) ? "parallel scan of records" : "scan of records";
+            return ParallelScan.run(records.size(), (from, to) -> {
+                SpaceMarineQuery.Result part = query.newResult(plan);
+                SpaceMarineRecord flyweight = records.record(from);
+                for (int record = from; record < to; ++record) {
+                    part.accept(flyweight.moveTo(record));
+                }
+                return part;
+            }, SpaceMarineQuery.Result::merge);
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Get the page of space marines in the order after the key with the read lock.
+     * Records are checked by the flyweight with the bounded heap of the first (offset + limit) space marines,
+     * only records added to the heap are copied to space marines.
+     *
+     * @param order the order.
+     * @param after the last space marine of the previous page (null for the first page).
+     * @param offset the count of skipped space marines after the key.
+     * @param limit the maximal count of space marines of the page.
+     * @return the page (the array is shorter than the limit if the collection hasn't more space marines).
+     */
+    @Override
+    public SpaceMarine[] page(SpaceMarineOrder order, SpaceMarine after, int offset, int limit) {
+        long stamp = readLock();
+        try {
+            SpaceMarineOrder.Selection selection = order.select(after, (int) Math.min(Integer.MAX_VALUE, (long) offset + limit));
+            SpaceMarineRecord flyweight = records.record(0);
+            for (int record = 0; record < records.size(); ++record) {
+                if (selection.accepts(flyweight.moveTo(record))) {
+                    selection.add(flyweight.toSpaceMarine());
+                }
+            }
+            SpaceMarine[] first = selection.toArray();
+            return offset >= first.length ? new SpaceMarine[0] : Arrays.copyOfRange(first, offset, first.length);
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Run the query over the columnar view of records with the read lock.
+     * The query must not keep the view after returning.
+     *
+     * @param query the query.
+     * @param <T> the type of the query's result.
+     * @return the result of the query.
+     */
+    @Override
+    public <T> T scan(Function<SpaceMarineColumns, T> query) {
+        long stamp = readLock();
+        try {
+            return query.apply(columns);
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Run the query over ranges of records of the columnar view with the read lock
+     * (in parallel if {@link ParallelScan#isParallel(int)}).
+     * The query must not keep the view after returning.
+     *
+     * @param query the scan of the range of rows.
+     * @param merge the merging of results of two consecutive ranges.
+     * @param <T> the type of the query's result.
+     * @return the result of the query.
+     */
+    @Override
+    public <T> T parallelScan(SpaceMarineColumns.RangeQuery<T> query, BinaryOperator<T> merge) {
+        long stamp = readLock();
+        try {
+            return ParallelScan.run(records.size(), (from, to) -> query.scan(columns, from, to), merge);
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Get information about the storage of the collection.
+     *
+     * @return the string with the information.
+     */
+    @Override
+    public String toString() {
+        long stamp = readLock();
+        try {
+            return "Storage: {type: offheap, space marines: " + count
+                    + ", off-heap bytes: " + records.offHeapBytes()
+                    + ", string bytes: " + records.stringBytes() + "}";
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Sort records by keys with the read lock and copy them to the new off-heap table in the sorted order.
+     *
+     * @param key the key of the record (not negative and less than 2^33).
+     * @param byOrder true if records with equal keys are sorted by the order of space marines.
+     * @return the unmodifiable list with space marines of the table.
+     */
+    private List<SpaceMarine> snapshot(IntToLongFunction key, boolean byOrder) {
+        long stamp = readLock();
+        try {
+            LongBuffer sorted = RecordSort.sort(records, key, byOrder);
+            SpaceMarineRecords copy = new SpaceMarineRecords();
+            for (int i = 0; i < records.size(); ++i) {
+                copy.add(records, RecordSort.record(sorted.get(i)));
+            }
+            return new RecordList(copy);
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Add the record of the space marine and count that (the function is called with the write lock).
+     *
+     * @param spaceMarine the space marine.
+     */
+    private void offer(SpaceMarine spaceMarine) {
+        if (spaceMarine == null) {
+            throw new NullPointerException();
+        }
+        int record = records.add(spaceMarine);
+        ids.add(record);
+        order.add(record);
+        ++count;
+        ++version;
+        if (spaceMarine.getHeight() != null) {
+            ++heightCount;
+            heightSum += spaceMarine.getHeight();
+        }
+        ++meleeWeapons[spaceMarine.getMeleeWeapon().ordinal()];
+        ++categories[spaceMarine.getCategory().ordinal()];
+    }
+
+    /**
+     * Remove the record and uncount that (the function is called with the write lock).
+     *
+     * @param record the number of the record.
+     */
+    private void remove(int record) {
+        Integer height = records.height(record);
+        if (height != null) {
+            --heightCount;
+            heightSum -= height;
+        }
+        --meleeWeapons[records.meleeWeapon(record).ordinal()];
+        --categories[records.category(record).ordinal()];
+        // indexes read fields of records, so they are changed before the table.
+        ids.remove(record);
+        order.remove(record);
+        records.remove(record);
+        --count;
+        ++version;
+    }
+
+    /**
+     * Unmodifiable list of records of the table which isn't changed: every getting copies the record
+     * to the new space marine, so the heap keeps only space marines which are used.
+     */
+    private static class RecordList extends AbstractList<SpaceMarine> implements RandomAccess {
+        /**
+         * The table of records.
+         */
+        private final SpaceMarineRecords records;
+
+        /**
+         * Constructor with all parameters.
+         *
+         * @param records the table of records.
+         */
+        RecordList(SpaceMarineRecords records) {
+            this.records = records;
+        }
+
+        @Override
+        public SpaceMarine get(int index) {
+            return records.get(Objects.checkIndex(index, records.size()));
+        }
+
+        @Override
+        public int size() {
+            return records.size();
+        }
+    }
+
+    /**
+     * Columnar view of records: fields of rows are read from records without boxing.
+     */
+    private class RecordColumns implements SpaceMarineColumns {
+        @Override
+        public int size() {
+            return records.size();
+        }
+
+        @Override
+        public SpaceMarine spaceMarine(int row) {
+            return records.get(row);
+        }
+
+        @Override
+        public int id(int row) {
+            return records.id(row);
+        }
+
+        @Override
+        public long health(int row) {
+            return records.health(row);
+        }
+
+        @Override
+        public boolean isHeightNull(int row) {
+            return records.isHeightNull(row);
+        }
+
+        @Override
+        public int height(int row) {
+            return records.rawHeight(row);
+        }
+
+        @Override
+        public long x(int row) {
+            return records.x(row);
+        }
+
+        @Override
+        public long y(int row) {
+            return records.y(row);
+        }
+
+        @Override
+        public int category(int row) {
+            return records.category(row).ordinal();
+        }
+
+        @Override
+        public int meleeWeapon(int row) {
+            return records.meleeWeapon(row).ordinal();
+        }
+    }
+}
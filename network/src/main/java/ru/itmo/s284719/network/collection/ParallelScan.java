@@ -0,0 +1,121 @@
+package ru.itmo.s284719.network.collection;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+
+/**
+ * Fork-join task of the scan of the range of rows: the range is split in halves
+ * until parts are not greater than the threshold, parts are scanned in parallel by the common pool
+ * and their results are merged. Ranges not greater than the threshold are scanned sequentially
+ * by the calling thread (as all ranges if the common pool has only one thread).
+ * The threshold is chosen by the system's property "parallel.threshold" (65536 rows by default).
+ * Rows must not be changed while the scan works (collections run scans with the read lock).
+ *
+ * @param <T> the type of the result.
+ * @version 0.1
+ * @author Danhout.
+ */
+public class ParallelScan<T> extends RecursiveTask<T> {
+    /**
+     * The name of the system's property with the threshold.
+     */
+    public static final String THRESHOLD_PROPERTY = "parallel.threshold";
+    /**
+     * The count of rows which are scanned by one task.
+     */
+    public static final int THRESHOLD = Math.max(1, Integer.getInteger(THRESHOLD_PROPERTY, 1 << 16));
+
+    /**
+     * Scan of the range of rows.
+     *
+     * @param <T> the type of the result.
+     */
+    @FunctionalInterface
+    public interface Range<T> {
+        /**
+         * Scan rows.
+         *
+         * @param from the first row.
+         * @param to the row after the last one.
+         * @return the result of the range.
+         */
+        T scan(int from, int to);
+    }
+
+    /**
+     * The first row.
+     */
+    private final int from;
+    /**
+     * The row after the last one.
+     */
+    private final int to;
+    /**
+     * The scan of ranges.
+     */
+    private final Range<T> range;
+    /**
+     * The merging of results of two consecutive ranges.
+     */
+    private final BinaryOperator<T> merge;
+
+    /**
+     * Constructor with all parameters.
+     *
+     * @param from the first row.
+     * @param to the row after the last one.
+     * @param range the scan of ranges.
+     * @param merge the merging of results of two consecutive ranges.
+     */
+    private ParallelScan(int from, int to, Range<T> range, BinaryOperator<T> merge) {
+        this.from = from;
+        this.to = to;
+        this.range = range;
+        this.merge = merge;
+    }
+
+    /**
+     * Check that rows are scanned by parallel tasks.
+     *
+     * @param size the count of rows.
+     * @return true if the size is greater than the threshold and the common pool has several threads.
+     */
+    public static boolean isParallel(int size) {
+        return size > THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1;
+    }
+
+    /**
+     * Scan rows from 0 to the size: in parallel if {@link #isParallel(int)}, sequentially otherwise.
+     *
+     * @param size the count of rows.
+     * @param range the scan of ranges.
+     * @param merge the merging of results of two consecutive ranges (the first one is before the second one).
+     * @param <T> the type of the result.
+     * @return the result of all rows.
+     */
+    public static <T> T run(int size, Range<T> range, BinaryOperator<T> merge) {
+        if (!isParallel(size)) {
+            return range.scan(0, size);
+        }
+        return ForkJoinPool.commonPool().invoke(new ParallelScan<>(0, size, range, merge));
+    }
+
+    /**
+     * Scan the range or split that.
+     *
+     * @return the result of the range.
+     */
+    @Override
+    protected T compute() {
+        if (to - from <= THRESHOLD) {
+            return range.scan(from, to);
+        }
+        int middle = (from + to) >>> 1;
+        ParallelScan<T> left = new ParallelScan<>(from, middle, range, merge);
+        left.fork();
+        // scan the right half by this thread and join the left one (it may be scanned by this thread too).
+        T right = new ParallelScan<>(middle, to, range, merge).compute();
+        return merge.apply(left.join(), right);
+    }
+}
@@ -0,0 +1,196 @@
+package ru.itmo.s284719.network.collection;
+
+import ru.itmo.s284719.network.SpaceMarineView;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Indexed binary min-heap of records of {@link SpaceMarineRecords} by {@link SpaceMarineView#compare(SpaceMarineView, SpaceMarineView)}:
+ * the head is the least record and positions of records in the heap are kept too,
+ * so the head is read in constant time and any record is added or removed in logarithmic time.
+ * Records are compared by two flyweights, the heap and positions are kept in direct buffers,
+ * so the heap of the JVM doesn't grow with the count of records.
+ * The heap has all records of the table and is changed before the table like that:
+ * the removed record is filled by the last record.
+ * The heap isn't thread-safe.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+class RecordHeap {
+    /**
+     * The minimal capacity of buffers.
+     */
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * Flyweights for comparing of records.
+     */
+    private final SpaceMarineRecord first;
+    private final SpaceMarineRecord second;
+    /**
+     * Numbers of records by their positions in the heap.
+     */
+    private IntBuffer heap;
+    /**
+     * Positions in the heap by numbers of records.
+     */
+    private IntBuffer positions;
+    /**
+     * The count of records in the heap.
+     */
+    private int size = 0;
+
+    /**
+     * Constructor with all parameters.
+     *
+     * @param records the table of records.
+     */
+    RecordHeap(SpaceMarineRecords records) {
+        this.first = records.record(0);
+        this.second = records.record(0);
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Get the least record.
+     *
+     * @return the number of the record or -1 if the heap is empty.
+     */
+    int peek() {
+        return size == 0 ? -1 : heap.get(0);
+    }
+
+    /**
+     * Put the added record to the heap.
+     *
+     * @param record the number of the record (the count of records before the adding).
+     */
+    void add(int record) {
+        if (size == heap.capacity()) {
+            resize(size * 2);
+        }
+        set(size, record);
+        siftUp(size++);
+    }
+
+    /**
+     * Remove the record from the heap (the last one of the heap is moved to its position)
+     * and give its number to the last record of the table.
+     *
+     * @param record the number of the record.
+     */
+    void remove(int record) {
+        int lastRecord = size - 1;
+        int position = positions.get(record);
+        int last = heap.get(--size);
+        if (position != size) {
+            set(position, last);
+            siftDown(position);
+            siftUp(positions.get(last));
+        }
+        // if (the record isn't last) than: the table moves the last record to its number.
+        if (record != lastRecord) {
+            set(positions.get(lastRecord), record);
+        }
+        // if (the heap is almost empty) than: return the memory.
+        if (size < heap.capacity() / 4 && heap.capacity() > MIN_CAPACITY) {
+            resize(heap.capacity() / 2);
+        }
+    }
+
+    /**
+     * Remove all records. The capacity is returned to the minimal one.
+     */
+    void clear() {
+        allocate(MIN_CAPACITY);
+        size = 0;
+    }
+
+    /**
+     * Move the record up while it's less than its parent.
+     *
+     * @param position the position of the record.
+     */
+    private void siftUp(int position) {
+        int record = heap.get(position);
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            int parentRecord = heap.get(parent);
+            if (!less(record, parentRecord)) {
+                break;
+            }
+            set(position, parentRecord);
+            position = parent;
+        }
+        set(position, record);
+    }
+
+    /**
+     * Move the record down while its least child is less than it.
+     *
+     * @param position the position of the record.
+     */
+    private void siftDown(int position) {
+        int record = heap.get(position);
+        for (int child = 2 * position + 1; child < size; child = 2 * position + 1) {
+            int childRecord = heap.get(child);
+            if (child + 1 < size && less(heap.get(child + 1), childRecord)) {
+                childRecord = heap.get(++child);
+            }
+            if (!less(childRecord, record)) {
+                break;
+            }
+            set(position, childRecord);
+            position = child;
+        }
+        set(position, record);
+    }
+
+    /**
+     * Compare records by flyweights.
+     *
+     * @param a the number of the first record.
+     * @param b the number of the second record.
+     * @return true if the first record is less than the second one.
+     */
+    private boolean less(int a, int b) {
+        return SpaceMarineView.compare(first.moveTo(a), second.moveTo(b)) < 0;
+    }
+
+    /**
+     * Put the record to the position.
+     *
+     * @param position the position in the heap.
+     * @param record the number of the record.
+     */
+    private void set(int position, int record) {
+        heap.put(position, record);
+        positions.put(record, position);
+    }
+
+    /**
+     * Copy buffers to buffers with the new capacity.
+     *
+     * @param capacity the new capacity.
+     */
+    private void resize(int capacity) {
+        IntBuffer oldHeap = heap;
+        IntBuffer oldPositions = positions;
+        allocate(capacity);
+        heap.put(oldHeap.limit(size).rewind()).clear();
+        positions.put(oldPositions.limit(size).rewind()).clear();
+    }
+
+    /**
+     * Create empty buffers with the capacity.
+     *
+     * @param capacity the capacity.
+     */
+    private void allocate(int capacity) {
+        heap = ByteBuffer.allocateDirect(capacity * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+        positions = ByteBuffer.allocateDirect(capacity * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+    }
+}
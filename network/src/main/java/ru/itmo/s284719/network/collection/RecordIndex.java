@@ -0,0 +1,189 @@
+package ru.itmo.s284719.network.collection;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * Hash index of records of {@link SpaceMarineRecords} by IDs: cells keep numbers of records (or {@link #FREE})
+ * with open addressing and linear probing, IDs are read from records, so the index doesn't keep keys
+ * and equal IDs are allowed. Cells are kept in the direct buffer, so the heap doesn't grow with the index.
+ * The index has all records of the table and is changed before the table like that:
+ * the removed record is filled by the last record.
+ * The index isn't thread-safe.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+class RecordIndex {
+    /**
+     * The record of free cells.
+     */
+    private static final int FREE = -1;
+    /**
+     * The minimal capacity of cells (a power of two).
+     */
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * The table of records.
+     */
+    private final SpaceMarineRecords records;
+    /**
+     * Cells with numbers of records.
+     */
+    private IntBuffer cells;
+    /**
+     * The mask of a cell's number (the capacity minus one).
+     */
+    private int mask;
+    /**
+     * The count of indexed records.
+     */
+    private int size = 0;
+
+    /**
+     * Constructor with all parameters.
+     *
+     * @param records the table of records.
+     */
+    RecordIndex(SpaceMarineRecords records) {
+        this.records = records;
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Find the record with the ID (any of them if IDs are repeated).
+     *
+     * @param id the ID.
+     * @return the number of the record or -1 if it isn't found.
+     */
+    int find(int id) {
+        for (int cell = homeOf(id); ; cell = (cell + 1) & mask) {
+            int record = cells.get(cell);
+            if (record == FREE || records.id(record) == id) {
+                return record;
+            }
+        }
+    }
+
+    /**
+     * Put the added record to the index.
+     *
+     * @param record the number of the record.
+     */
+    void add(int record) {
+        // keep the load not greater than a half for short chains.
+        if (++size > (mask + 1) / 2) {
+            rehash((mask + 1) * 2);
+        }
+        put(record);
+    }
+
+    /**
+     * Remove the record from the index and give its number to the last record of the table.
+     * Next cells of the removed cell's chain are shifted to the free cell
+     * while they can be found from their home cells (without tombstones).
+     *
+     * @param record the number of the record.
+     */
+    void remove(int record) {
+        // if (the index is almost empty) than: return the memory (while all records have their IDs).
+        if (--size < (mask + 1) / 8 && mask + 1 > MIN_CAPACITY) {
+            rehash((mask + 1) / 2);
+        }
+        int lastRecord = size;
+        int free = cellOf(record);
+        for (int next = (free + 1) & mask; cells.get(next) != FREE; next = (next + 1) & mask) {
+            int home = homeOf(records.id(cells.get(next)));
+            // if (the home cell isn't cyclically in (free, next]) than: the cell can be moved to the free cell.
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                cells.put(free, cells.get(next));
+                free = next;
+            }
+        }
+        cells.put(free, FREE);
+        // if (the record isn't last) than: the table moves the last record to its number.
+        if (record != lastRecord) {
+            cells.put(cellOf(lastRecord), record);
+        }
+    }
+
+    /**
+     * Remove all records. The capacity is returned to the minimal one.
+     */
+    void clear() {
+        allocate(MIN_CAPACITY);
+        size = 0;
+    }
+
+    /**
+     * Get the cell with the record.
+     *
+     * @param record the number of the record.
+     * @return the number of the cell.
+     */
+    private int cellOf(int record) {
+        for (int cell = homeOf(records.id(record)); ; cell = (cell + 1) & mask) {
+            int current = cells.get(cell);
+            if (current == record) {
+                return cell;
+            }
+            if (current == FREE) {
+                throw new IllegalArgumentException("The record isn't in the index: " + record + ".");
+            }
+        }
+    }
+
+    /**
+     * Put the record to the first free cell of its chain.
+     *
+     * @param record the number of the record.
+     */
+    private void put(int record) {
+        int cell = homeOf(records.id(record));
+        while (cells.get(cell) != FREE) {
+            cell = (cell + 1) & mask;
+        }
+        cells.put(cell, record);
+    }
+
+    /**
+     * Get the home cell of the ID (the Fibonacci hashing mixes close IDs).
+     *
+     * @param id the ID.
+     * @return the number of the cell.
+     */
+    private int homeOf(int id) {
+        int hash = id * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    /**
+     * Move all records to cells with the new capacity.
+     *
+     * @param capacity the new capacity (a power of two).
+     */
+    private void rehash(int capacity) {
+        IntBuffer old = cells;
+        allocate(capacity);
+        for (int cell = 0; cell < old.capacity(); ++cell) {
+            if (old.get(cell) != FREE) {
+                put(old.get(cell));
+            }
+        }
+    }
+
+    /**
+     * Create free cells with the capacity.
+     *
+     * @param capacity the capacity (a power of two).
+     */
+    private void allocate(int capacity) {
+        cells = ByteBuffer.allocateDirect(capacity * Integer.BYTES).order(ByteOrder.nativeOrder()).asIntBuffer();
+        for (int cell = 0; cell < capacity; ++cell) {
+            cells.put(cell, FREE);
+        }
+        mask = capacity - 1;
+    }
+}
@@ -0,0 +1,186 @@
+package ru.itmo.s284719.network.collection;
+
+import ru.itmo.s284719.network.SpaceMarineView;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Sorting of records of {@link SpaceMarineRecords} off the heap: every record is the word of its key
+ * and its number in the direct buffer, words are sorted by keys with the stable LSD radix sort,
+ * so records with equal keys are in the order of their numbers or they are sorted
+ * by {@link SpaceMarineView#compare(SpaceMarineView, SpaceMarineView)} with the heap sort by flyweights.
+ * The heap of the JVM keeps only the table of counts of digits.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+final class RecordSort {
+    /**
+     * The count of bits of the number of the record in the word.
+     */
+    private static final int RECORD_BITS = 31;
+    /**
+     * The count of bits of the digit of the radix sort.
+     */
+    private static final int DIGIT_BITS = 11;
+
+    /**
+     * Constructor is private: the class has only static functions.
+     */
+    private RecordSort() {
+    }
+
+    /**
+     * Sort records by keys.
+     *
+     * @param records the table of records.
+     * @param key the key of the record (not negative and less than 2^33).
+     * @param byOrder true if records with equal keys are sorted by the order of space marines
+     *                (false if they are in the order of their numbers).
+     * @return the buffer with sorted words (numbers of records are got by {@link #record(long)}).
+     */
+    static LongBuffer sort(SpaceMarineRecords records, IntToLongFunction key, boolean byOrder) {
+        int size = records.size();
+        LongBuffer words = allocate(size);
+        // words are in the order of numbers of records, so only digits of keys are sorted.
+        for (int record = 0; record < size; ++record) {
+            words.put(record, key.applyAsLong(record) << RECORD_BITS | record);
+        }
+        LongBuffer sorted = allocate(size);
+        int[] counts = new int[1 << DIGIT_BITS];
+        for (int shift = RECORD_BITS; shift < Long.SIZE && size > 0; shift += DIGIT_BITS) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < size; ++i) {
+                ++counts[digit(words.get(i), shift)];
+            }
+            // if (all words have the same digit) than: the pass doesn't change the order.
+            if (counts[digit(words.get(0), shift)] == size) {
+                continue;
+            }
+            for (int digit = 0, start = 0; digit < counts.length; ++digit) {
+                int count = counts[digit];
+                counts[digit] = start;
+                start += count;
+            }
+            for (int i = 0; i < size; ++i) {
+                long word = words.get(i);
+                sorted.put(counts[digit(word, shift)]++, word);
+            }
+            LongBuffer swap = words;
+            words = sorted;
+            sorted = swap;
+        }
+        if (byOrder) {
+            sortEqualKeys(records, words, size);
+        }
+        return words;
+    }
+
+    /**
+     * Get the number of the record of the word.
+     *
+     * @param word the word of the sorted buffer.
+     * @return the number of the record.
+     */
+    static int record(long word) {
+        return (int) (word & ((1L << RECORD_BITS) - 1));
+    }
+
+    /**
+     * Sort every range of words with equal keys by the order of space marines.
+     *
+     * @param records the table of records.
+     * @param words the words sorted by keys.
+     * @param size the count of words.
+     */
+    private static void sortEqualKeys(SpaceMarineRecords records, LongBuffer words, int size) {
+        SpaceMarineRecord first = records.record(0);
+        SpaceMarineRecord second = records.record(0);
+        int from = 0;
+        while (from < size) {
+            long key = words.get(from) >>> RECORD_BITS;
+            int to = from + 1;
+            while (to < size && words.get(to) >>> RECORD_BITS == key) {
+                ++to;
+            }
+            if (to - from > 1) {
+                int count = to - from;
+                for (int i = count / 2 - 1; i >= 0; --i) {
+                    siftDown(words, from, i, count, first, second);
+                }
+                for (int end = count - 1; end > 0; --end) {
+                    long greatest = words.get(from);
+                    words.put(from, words.get(from + end));
+                    words.put(from + end, greatest);
+                    siftDown(words, from, 0, end, first, second);
+                }
+            }
+            from = to;
+        }
+    }
+
+    /**
+     * Move the word of the max-heap down while its greatest child is greater than it.
+     *
+     * @param words the words.
+     * @param base the first word of the heap.
+     * @param position the position of the word in the heap.
+     * @param count the count of words in the heap.
+     * @param first the flyweight for comparing.
+     * @param second the other flyweight for comparing.
+     */
+    private static void siftDown(LongBuffer words, int base, int position, int count,
+                                 SpaceMarineRecord first, SpaceMarineRecord second) {
+        long word = words.get(base + position);
+        for (int child = 2 * position + 1; child < count; child = 2 * position + 1) {
+            long childWord = words.get(base + child);
+            if (child + 1 < count && compare(words.get(base + child + 1), childWord, first, second) > 0) {
+                childWord = words.get(base + ++child);
+            }
+            if (compare(childWord, word, first, second) <= 0) {
+                break;
+            }
+            words.put(base + position, childWord);
+            position = child;
+        }
+        words.put(base + position, word);
+    }
+
+    /**
+     * Compare records of words by flyweights.
+     *
+     * @param a the first word.
+     * @param b the second word.
+     * @param first the flyweight for the first record.
+     * @param second the flyweight for the second record.
+     * @return the result of {@link SpaceMarineView#compare(SpaceMarineView, SpaceMarineView)}.
+     */
+    private static int compare(long a, long b, SpaceMarineRecord first, SpaceMarineRecord second) {
+        return SpaceMarineView.compare(first.moveTo(record(a)), second.moveTo(record(b)));
+    }
+
+    /**
+     * Get the digit of the key of the word.
+     *
+     * @param word the word.
+     * @param shift the shift of the digit in the word.
+     * @return the digit.
+     */
+    private static int digit(long word, int shift) {
+        return (int) (word >>> shift) & ((1 << DIGIT_BITS) - 1);
+    }
+
+    /**
+     * Create the direct buffer of words.
+     *
+     * @param size the count of words.
+     * @return the buffer.
+     */
+    private static LongBuffer allocate(int size) {
+        return ByteBuffer.allocateDirect(size * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+}
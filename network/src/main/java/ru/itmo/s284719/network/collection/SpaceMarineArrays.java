@@ -0,0 +1,359 @@
+package ru.itmo.s284719.network.collection;
+
+import ru.itmo.s284719.network.SpaceMarine;
+
+import java.util.Arrays;
+
+/**
+ * Columns of the heap collection: every scanned field is kept in its own primitive array
+ * (struct of arrays), so scans read consecutive memory without following references and boxing.
+ * Row i of all arrays describes one space marine; removed rows are filled by the last row,
+ * so rows don't have holes, but their order isn't kept.
+ * Null heights are marked in the bitmap and kept as 0 in the array of heights.
+ * Scans take the range of rows, so the collection can be scanned by parts.
+ * Rows of space marines are found by the primitive hash index of row numbers (equal IDs are allowed),
+ * so the view doesn't keep an object per row besides the space marine.
+ * The view isn't thread-safe (the collection changes that with the write lock).
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class SpaceMarineArrays implements SpaceMarineColumns {
+    /**
+     * The minimal capacity of arrays.
+     */
+    private static final int MIN_CAPACITY = 16;
+    /**
+     * The row of free cells of the index.
+     */
+    private static final int FREE = -1;
+
+    /**
+     * The count of rows.
+     */
+    private int size = 0;
+    /**
+     * Space marines of rows.
+     */
+    private SpaceMarine[] rows;
+    /**
+     * IDs of space marines.
+     */
+    private int[] ids;
+    /**
+     * Healths of space marines.
+     */
+    private long[] healths;
+    /**
+     * Heights of space marines (0 for null heights).
+     */
+    private int[] heights;
+    /**
+     * The bitmap of null heights (bit i of word i / 64 is set if the height of row i is null).
+     */
+    private long[] nullHeights;
+    /**
+     * The count of null heights.
+     */
+    private int nullHeightCount = 0;
+    /**
+     * Coordinates x of space marines.
+     */
+    private long[] xs;
+    /**
+     * Coordinates y of space marines.
+     */
+    private long[] ys;
+    /**
+     * Ordinals of categories of space marines.
+     */
+    private byte[] categories;
+    /**
+     * Ordinals of melee weapons of space marines.
+     */
+    private byte[] meleeWeapons;
+    /**
+     * The hash index of rows: cells keep rows (or {@link #FREE}) with open addressing and linear probing
+     * by IDs of rows, the row of the space marine is found by the identity of the space marine.
+     * The index has two cells per row of the capacity, so its load isn't greater than a half.
+     */
+    private int[] cells;
+
+    /**
+     * Constructor without parameters (with the minimal capacity).
+     */
+    public SpaceMarineArrays() {
+        allocate(MIN_CAPACITY);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public SpaceMarine spaceMarine(int row) {
+        return rows[row];
+    }
+
+    @Override
+    public int id(int row) {
+        return ids[row];
+    }
+
+    @Override
+    public long health(int row) {
+        return healths[row];
+    }
+
+    @Override
+    public boolean isHeightNull(int row) {
+        return (nullHeights[row >>> 6] & (1L << row)) != 0;
+    }
+
+    @Override
+    public int height(int row) {
+        return heights[row];
+    }
+
+    @Override
+    public long x(int row) {
+        return xs[row];
+    }
+
+    @Override
+    public long y(int row) {
+        return ys[row];
+    }
+
+    @Override
+    public int category(int row) {
+        return categories[row];
+    }
+
+    @Override
+    public int meleeWeapon(int row) {
+        return meleeWeapons[row];
+    }
+
+    @Override
+    public long sumOfHeights(int from, int to) {
+        long sum = 0;
+        for (int i = from; i < to; ++i) {
+            sum += heights[i];
+        }
+        return sum;
+    }
+
+    @Override
+    public int countOfHeights(int from, int to) {
+        if (from == 0 && to == size) {
+            return size - nullHeightCount;
+        }
+        int nulls = 0;
+        for (int i = from; i < to; ++i) {
+            nulls += (int) (nullHeights[i >>> 6] >>> i) & 1;
+        }
+        return to - from - nulls;
+    }
+
+    @Override
+    public int countGreaterThanMeleeWeapon(int meleeWeapon, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; ++i) {
+            count += meleeWeapons[i] > meleeWeapon ? 1 : 0;
+        }
+        return count;
+    }
+
+    /**
+     * Add the row of the space marine.
+     *
+     * @param spaceMarine the space marine.
+     */
+    void add(SpaceMarine spaceMarine) {
+        if (size == rows.length) {
+            grow(size * 2);
+        }
+        set(size, spaceMarine);
+        index(size++);
+    }
+
+    /**
+     * Remove the row of the space marine (the last row is moved to its place).
+     *
+     * @param spaceMarine the space marine of the view.
+     */
+    void remove(SpaceMarine spaceMarine) {
+        int cell = cellOf(spaceMarine);
+        int row = cells[cell];
+        unindex(cell);
+        if (isHeightNull(row)) {
+            --nullHeightCount;
+        }
+        int last = --size;
+        // if (the row isn't last) than: move the last row to its place.
+        if (row != last) {
+            SpaceMarine moved = rows[last];
+            cells[cellOf(moved)] = row;
+            ids[row] = ids[last];
+            healths[row] = healths[last];
+            heights[row] = heights[last];
+            xs[row] = xs[last];
+            ys[row] = ys[last];
+            categories[row] = categories[last];
+            meleeWeapons[row] = meleeWeapons[last];
+            rows[row] = moved;
+            setHeightNull(row, isHeightNull(last));
+        }
+        rows[last] = null;
+        setHeightNull(last, false);
+    }
+
+    /**
+     * Remove all rows. The capacity is returned to the minimal one.
+     */
+    void clear() {
+        allocate(MIN_CAPACITY);
+        size = 0;
+        nullHeightCount = 0;
+    }
+
+    /**
+     * Fill the row by fields of the space marine.
+     *
+     * @param row the row.
+     * @param spaceMarine the space marine.
+     */
+    private void set(int row, SpaceMarine spaceMarine) {
+        rows[row] = spaceMarine;
+        ids[row] = spaceMarine.getId();
+        healths[row] = spaceMarine.getHealth() == null ? 0 : spaceMarine.getHealth();
+        heights[row] = spaceMarine.getHeight() == null ? 0 : spaceMarine.getHeight();
+        setHeightNull(row, spaceMarine.getHeight() == null);
+        if (spaceMarine.getHeight() == null) {
+            ++nullHeightCount;
+        }
+        xs[row] = spaceMarine.getCoordinates().getX();
+        ys[row] = spaceMarine.getCoordinates().getY() == null ? 0 : spaceMarine.getCoordinates().getY();
+        categories[row] = (byte) spaceMarine.getCategory().ordinal();
+        meleeWeapons[row] = (byte) spaceMarine.getMeleeWeapon().ordinal();
+    }
+
+    /**
+     * Get the cell of the index with the row of the space marine.
+     *
+     * @param spaceMarine the space marine of the view.
+     * @return the number of the cell.
+     */
+    private int cellOf(SpaceMarine spaceMarine) {
+        for (int cell = homeOf(spaceMarine.getId()); ; cell = (cell + 1) & (cells.length - 1)) {
+            int row = cells[cell];
+            if (row == FREE) {
+                throw new IllegalArgumentException("The space marine isn't in the columns: " + spaceMarine.getId() + ".");
+            }
+            if (rows[row] == spaceMarine) {
+                return cell;
+            }
+        }
+    }
+
+    /**
+     * Put the row to the index.
+     *
+     * @param row the filled row.
+     */
+    private void index(int row) {
+        int cell = homeOf(ids[row]);
+        while (cells[cell] != FREE) {
+            cell = (cell + 1) & (cells.length - 1);
+        }
+        cells[cell] = row;
+    }
+
+    /**
+     * Remove the cell from the index: next cells of its chain are shifted to the free cell
+     * while they can be found from their home cells (without tombstones).
+     *
+     * @param cell the number of the cell.
+     */
+    private void unindex(int cell) {
+        int mask = cells.length - 1;
+        int free = cell;
+        for (int next = (free + 1) & mask; cells[next] != FREE; next = (next + 1) & mask) {
+            int home = homeOf(ids[cells[next]]);
+            // if (the home cell isn't cyclically in (free, next]) than: the cell can be moved to the free cell.
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                cells[free] = cells[next];
+                free = next;
+            }
+        }
+        cells[free] = FREE;
+    }
+
+    /**
+     * Get the home cell of the ID (the Fibonacci hashing mixes close IDs).
+     *
+     * @param id the ID.
+     * @return the number of the cell.
+     */
+    private int homeOf(int id) {
+        int hash = id * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (cells.length - 1);
+    }
+
+    /**
+     * Set or clear the bit of the null height.
+     *
+     * @param row the row.
+     * @param isNull true if the height is null.
+     */
+    private void setHeightNull(int row, boolean isNull) {
+        if (isNull) {
+            nullHeights[row >>> 6] |= 1L << row;
+        } else {
+            nullHeights[row >>> 6] &= ~(1L << row);
+        }
+    }
+
+    /**
+     * Copy arrays to arrays with the new capacity.
+     *
+     * @param capacity the new capacity.
+     */
+    private void grow(int capacity) {
+        rows = Arrays.copyOf(rows, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+        healths = Arrays.copyOf(healths, capacity);
+        heights = Arrays.copyOf(heights, capacity);
+        nullHeights = Arrays.copyOf(nullHeights, (capacity + 63) >>> 6);
+        xs = Arrays.copyOf(xs, capacity);
+        ys = Arrays.copyOf(ys, capacity);
+        categories = Arrays.copyOf(categories, capacity);
+        meleeWeapons = Arrays.copyOf(meleeWeapons, capacity);
+        cells = new int[capacity * 2];
+        Arrays.fill(cells, FREE);
+        for (int row = 0; row < size; ++row) {
+            index(row);
+        }
+    }
+
+    /**
+     * Create empty arrays with the capacity.
+     *
+     * @param capacity the capacity.
+     */
+    private void allocate(int capacity) {
+        rows = new SpaceMarine[capacity];
+        ids = new int[capacity];
+        healths = new long[capacity];
+        heights = new int[capacity];
+        nullHeights = new long[(capacity + 63) >>> 6];
+        xs = new long[capacity];
+        ys = new long[capacity];
+        categories = new byte[capacity];
+        meleeWeapons = new byte[capacity];
+        cells = new int[capacity * 2];
+        Arrays.fill(cells, FREE);
+    }
+}
@@ -0,0 +1,966 @@
+package ru.itmo.s284719.network.collection;
+
+import ru.itmo.s284719.network.AstartesCategory;
+import ru.itmo.s284719.network.MeleeWeapon;
+import ru.itmo.s284719.network.SpaceMarine;
+
+import java.util.*;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Thread-safe collection of space marines shared by the console's and network's threads.
+ * Space marines are kept in the ordered map by {@link SpaceMarine#compareTo(SpaceMarine)},
+ * so the head is the first key and all space marines greater than the given one are its tail.
+ * The index from IDs to space marines finds and removes space marines by IDs without scanning.
+ * The index of heights keeps space marines sorted by height with the running sum of heights,
+ * so the average height, the removing by height and the sorting by height don't scan the collection.
+ * Counters of space marines by melee weapons and categories answer counting queries in constant time.
+ * The version of the collection is increased by every change, so views of the collection can be cached.
+ * Fields of space marines are also kept in primitive columns, so queries scan arrays instead of objects.
+ * Compiled queries ({@link SpaceMarineQuery}) are answered by counters and indexes when they cover conditions
+ * and by the scan of columns otherwise. Scans of big collections are split into parallel fork-join tasks
+ * ({@link ParallelScan}) which read the columns while the read lock keeps them stable.
+ * Pages of space marines in orders by IDs and heights are read from the ordered map and the index of heights,
+ * pages in other orders are chosen by the bounded heap ({@link SpaceMarineOrder.Selection}).
+ * Readers work in parallel with the read lock (the size is read optimistically without locking),
+ * writers take the exclusive write lock.
+ * The thread which runs {@link #atomically(Supplier)} can call all functions of the collection
+ * without locking again (the lock isn't reentrant by itself).
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class SpaceMarineCollection {
+    /**
+     * The name of the system's property for choosing the storage of space marines.
+     */
+    public static final String STORAGE_PROPERTY = "storage";
+
+    /**
+     * The ordered map from space marines to other space marines equal to them by {@link SpaceMarine#compareTo(SpaceMarine)}
+     * (the value is null if the key hasn't equal space marines).
+     */
+    private final TreeMap<SpaceMarine, List<SpaceMarine>> ordered = new TreeMap<>();
+    /**
+     * The count of space marines.
+     */
+    int count = 0;
+    /**
+     * The version of the collection which is increased by every change of space marines.
+     */
+    long version = 0;
+    /**
+     * The index from IDs to space marines.
+     * If several space marines have the same ID than only one of them is in the index.
+     */
+    private final IntIndex<SpaceMarine> ids = new IntIndex<>();
+    /**
+     * The count of space marines which aren't in the index because of their repeated IDs.
+     */
+    private int duplicates = 0;
+    /**
+     * The index from heights to space marines (in the order of adding) without space marines with null height.
+     */
+    private final TreeMap<Integer, Set<SpaceMarine>> heights = new TreeMap<>();
+    /**
+     * Space marines with null height (in the order of adding).
+     */
+    private final Set<SpaceMarine> withoutHeight = new LinkedHashSet<>();
+    /**
+     * The sum of heights of space marines.
+     */
+    private long heightSum = 0;
+    /**
+     * The counts of space marines by ordinals of melee weapons.
+     */
+    private final int[] meleeWeapons = new int[MeleeWeapon.values().length];
+    /**
+     * The counts of space marines by ordinals of categories.
+     */
+    private final int[] categories = new int[AstartesCategory.values().length];
+    /**
+     * The columnar view of space marines for scans.
+     */
+    private final SpaceMarineArrays columns = new SpaceMarineArrays();
+    /**
+     * The lock of the queue.
+     */
+    private final StampedLock lock = new StampedLock();
+    /**
+     * The thread which holds the write lock (null if the lock is free).
+     */
+    private volatile Thread writer;
+
+    /**
+     * Constructor without parameters (with the empty collection).
+     */
+    public SpaceMarineCollection() {
+        this(Collections.<SpaceMarine>emptyList());
+    }
+
+    /**
+     * Constructor with initial space marines.
+     *
+     * @param spaceMarines the initial space marines.
+     */
+    public SpaceMarineCollection(Collection<SpaceMarine> spaceMarines) {
+        fill(spaceMarines);
+    }
+
+    /**
+     * Create the collection with the storage by its name:
+     * "heap" (objects of space marines) or "offheap" (records in direct buffers, see {@link OffHeapSpaceMarineCollection}).
+     *
+     * @param storage the storage's name.
+     * @param spaceMarines the initial space marines.
+     * @return the collection.
+     */
+    public static SpaceMarineCollection forStorage(String storage, Collection<SpaceMarine> spaceMarines) {
+        switch (storage) {
+            case "heap":
+                return new SpaceMarineCollection(spaceMarines);
+            case "offheap":
+                return new OffHeapSpaceMarineCollection(spaceMarines);
+            default:
+                throw new IllegalArgumentException("Not found the storage: " + storage);
+        }
+    }
+
+    /**
+     * Get the count of space marines.
+     *
+     * @return the count of space marines.
+     */
+    public int size() {
+        if (writer == Thread.currentThread()) {
+            return count;
+        }
+        // read the size without locking and check that the collection wasn't changed.
+        long stamp = lock.tryOptimisticRead();
+        int size = count;
+        if (lock.validate(stamp)) {
+            return size;
+        }
+        stamp = lock.readLock();
+        try {
+            return count;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Get the version of the collection.
+     * Versions of different states of the collection are different,
+     * so the view built between two equal versions is valid for that version.
+     *
+     * @return the version of the collection.
+     */
+    public long version() {
+        if (writer == Thread.currentThread()) {
+            return version;
+        }
+        // read the version without locking and check that the collection wasn't changed.
+        long stamp = lock.tryOptimisticRead();
+        long current = version;
+        if (lock.validate(stamp)) {
+            return current;
+        }
+        stamp = lock.readLock();
+        try {
+            return version;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Check that the collection is empty.
+     *
+     * @return true if the collection hasn't space marines.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Add the space marine.
+     *
+     * @param spaceMarine the space marine.
+     */
+    public void add(SpaceMarine spaceMarine) {
+        long stamp = writeLock();
+        try {
+            offer(spaceMarine);
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Add the space marine if it's less than all space marines of the collection.
+     *
+     * @param spaceMarine the space marine.
+     * @return true if the space marine has been added.
+     */
+    public boolean addIfMin(SpaceMarine spaceMarine) {
+        long stamp = writeLock();
+        try {
+            // the first key is the minimal space marine.
+            if (count != 0 && spaceMarine.compareTo(ordered.firstKey()) >= 0) {
+                return false;
+            }
+            offer(spaceMarine);
+            return true;
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replace the space marine with the ID by the new space marine.
+     *
+     * @param id the ID of the replaced space marine.
+     * @param spaceMarine the new space marine.
+     * @return true if the space marine with the ID has been found and replaced.
+     */
+    public boolean update(int id, SpaceMarine spaceMarine) {
+        long stamp = writeLock();
+        try {
+            SpaceMarine replaced = ids.get(id);
+            if (replaced == null) {
+                return false;
+            }
+            remove(replaced);
+            offer(spaceMarine);
+            return true;
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove the space marine with the ID.
+     *
+     * @param id the ID.
+     * @return true if the space marine has been removed.
+     */
+    public boolean removeById(int id) {
+        long stamp = writeLock();
+        try {
+            SpaceMarine removed = ids.get(id);
+            if (removed == null) {
+                return false;
+            }
+            remove(removed);
+            return true;
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove any space marine with the height.
+     *
+     * @param height the height.
+     * @return true if a space marine has been removed.
+     */
+    public boolean removeAnyByHeight(int height) {
+        long stamp = writeLock();
+        try {
+            Set<SpaceMarine> spaceMarines = heights.get(height);
+            if (spaceMarines == null) {
+                return false;
+            }
+            remove(spaceMarines.iterator().next());
+            return true;
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove all space marines greater than the space marine.
+     * Only the removed tail of the ordered map is visited.
+     *
+     * @param spaceMarine the space marine.
+     * @return the count of removed space marines.
+     */
+    public int removeGreater(SpaceMarine spaceMarine) {
+        long stamp = writeLock();
+        try {
+            NavigableMap<SpaceMarine, List<SpaceMarine>> greater = ordered.tailMap(spaceMarine, false);
+            List<SpaceMarine> removed = new ArrayList<>();
+            for (Map.Entry<SpaceMarine, List<SpaceMarine>> entry : greater.entrySet()) {
+                removed.add(entry.getKey());
+                if (entry.getValue() != null) {
+                    removed.addAll(entry.getValue());
+                }
+            }
+            // clear the tail before indexes, so removed space marines aren't indexed again instead of each other.
+            greater.clear();
+            removed.forEach(this::unindex);
+            return removed.size();
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove the minimal space marine (the head of the collection).
+     *
+     * @return the removed space marine or null if the collection is empty.
+     */
+    public SpaceMarine poll() {
+        long stamp = writeLock();
+        try {
+            if (count == 0) {
+                return null;
+            }
+            SpaceMarine head = ordered.firstKey();
+            remove(head);
+            return head;
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove all space marines.
+     */
+    public void clear() {
+        long stamp = writeLock();
+        try {
+            fill(Collections.<SpaceMarine>emptyList());
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Replace all space marines of the collection (e.g. by the snapshot for rolling back).
+     *
+     * @param spaceMarines the new space marines.
+     */
+    public void replaceAll(Collection<SpaceMarine> spaceMarines) {
+        long stamp = writeLock();
+        try {
+            fill(spaceMarines);
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Get the average value of heights of space marines (space marines with null height aren't counted).
+     *
+     * @return the average value or 0 if the collection hasn't heights.
+     */
+    public double averageOfHeight() {
+        long stamp = readLock();
+        try {
+            int counted = count - withoutHeight.size();
+            return counted == 0 ? 0 : ((double) heightSum) / counted;
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Get the count of space marines with the melee weapon greater than the melee weapon.
+     *
+     * @param meleeWeapon the melee weapon.
+     * @return the count of space marines.
+     */
+    public long countGreaterThanMeleeWeapon(MeleeWeapon meleeWeapon) {
+        long stamp = readLock();
+        try {
+            // sum counters of melee weapons after the melee weapon.
+            long greater = 0;
+            for (int i = meleeWeapon.ordinal() + 1; i < meleeWeapons.length; ++i) {
+                greater += meleeWeapons[i];
+            }
+            return greater;
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Get counts of space marines by categories.
+     *
+     * @return the map from categories to counts of space marines (with all categories).
+     */
+    public EnumMap<AstartesCategory, Integer> countByCategory() {
+        long stamp = readLock();
+        try {
+            EnumMap<AstartesCategory, Integer> counts = new EnumMap<>(AstartesCategory.class);
+            for (AstartesCategory category : AstartesCategory.values()) {
+                counts.put(category, categories[category.ordinal()]);
+            }
+            return counts;
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Get the snapshot of space marines (in the ascending order).
+     *
+     * @return the array with space marines.
+     */
+    public SpaceMarine[] toArray() {
+        long stamp = readLock();
+        try {
+            SpaceMarine[] spaceMarines = new SpaceMarine[count];
+            int i = 0;
+            for (Map.Entry<SpaceMarine, List<SpaceMarine>> entry : ordered.entrySet()) {
+                spaceMarines[i++] = entry.getKey();
+                if (entry.getValue() != null) {
+                    for (SpaceMarine sM : entry.getValue()) {
+                        spaceMarines[i++] = sM;
+                    }
+                }
+            }
+            return spaceMarines;
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Get the snapshot of space marines sorted by height by the index of heights.
+     * Space marines with the same height are in the order of adding, space marines with null height are last.
+     *
+     * @return the sorted array with space marines.
+     */
+    public SpaceMarine[] sortedByHeight() {
+        long stamp = readLock();
+        try {
+            SpaceMarine[] spaceMarines = new SpaceMarine[count];
+            int i = 0;
+            for (Set<SpaceMarine> sameHeight : heights.values()) {
+                for (SpaceMarine sM : sameHeight) {
+                    spaceMarines[i++] = sM;
+                }
+            }
+            for (SpaceMarine sM : withoutHeight) {
+                spaceMarines[i++] = sM;
+            }
+            return spaceMarines;
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Get the snapshot of space marines (in the ascending order) as the unmodifiable list.
+     * The heap collection wraps {@link #toArray()}.
+     *
+     * @return the list with space marines.
+     */
+    public List<SpaceMarine> snapshot() {
+        return Collections.unmodifiableList(Arrays.asList(toArray()));
+    }
+
+    /**
+     * Get the snapshot of space marines sorted by height as the unmodifiable list.
+     * The heap collection wraps {@link #sortedByHeight()}.
+     *
+     * @return the list with space marines.
+     */
+    public List<SpaceMarine> snapshotByHeight() {
+        return Collections.unmodifiableList(Arrays.asList(sortedByHeight()));
+    }
+
+    /**
+     * Check that space marines are kept off the heap, so views of the whole collection
+     * shouldn't be kept in the heap as objects.
+     *
+     * @return false for the heap collection.
+     */
+    public boolean isOffHeap() {
+        return false;
+    }
+
+    /**
+     * Get the snapshot of space marines sorted by the comparator.
+     * Only the copying is done under the lock, the sorting is done without that.
+     *
+     * @param comparator the comparator.
+     * @return the sorted array with space marines.
+     */
+    public SpaceMarine[] sorted(Comparator<SpaceMarine> comparator) {
+        SpaceMarine[] spaceMarines = toArray();
+        Arrays.sort(spaceMarines, comparator);
+        return spaceMarines;
+    }
+
+    /**
+     * Run the query over the columnar view of space marines with the read lock.
+     * The query must not keep the view after returning.
+     *
+     * @param query the query.
+     * @param <T> the type of the query's result.
+     * @return the result of the query.
+     */
+    public <T> T scan(Function<SpaceMarineColumns, T> query) {
+        long stamp = readLock();
+        try {
+            return query.apply(columns);
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Get the page of space marines in the order after the key with the read lock.
+     * Only the first (offset + limit) space marines after the key are chosen: the ordered map
+     * is walked for the order by IDs, the index of heights is walked for the order by heights
+     * (space marines with the same height are chosen by the bounded heap), the bounded heap is used for other orders.
+     *
+     * @param order the order.
+     * @param after the last space marine of the previous page (null for the first page).
+     * @param offset the count of skipped space marines after the key.
+     * @param limit the maximal count of space marines of the page.
+     * @return the page (the array is shorter than the limit if the collection hasn't more space marines).
+     */
+    public SpaceMarine[] page(SpaceMarineOrder order, SpaceMarine after, int offset, int limit) {
+        long stamp = readLock();
+        try {
+            int needed = (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+            List<SpaceMarine> first = new ArrayList<>(Math.min(needed, count));
+            if (order.getField() == SpaceMarineQuery.Field.ID) {
+                firstById(order, after, needed, first);
+            } else if (order.getField() == SpaceMarineQuery.Field.HEIGHT) {
+                firstByHeight(order, after, needed, first);
+            } else {
+                SpaceMarineOrder.Selection selection = order.select(after, needed);
+                for (int row = 0; row < columns.size(); ++row) {
+                    selection.offer(columns.spaceMarine(row));
+                }
+                first.addAll(Arrays.asList(selection.toArray()));
+            }
+            return offset >= first.size() ? new SpaceMarine[0]
+                    : first.subList(offset, first.size()).toArray(new SpaceMarine[0]);
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Run the query over ranges of rows of the columnar view with the read lock.
+     * If {@link ParallelScan#isParallel(int)} for the size of the collection than ranges are scanned by parallel
+     * fork-join tasks and their results are merged, otherwise all rows are scanned by the calling thread.
+     * The query must not keep the view after returning.
+     *
+     * @param query the scan of the range of rows.
+     * @param merge the merging of results of two consecutive ranges.
+     * @param <T> the type of the query's result.
+     * @return the result of the query.
+     */
+    public <T> T parallelScan(SpaceMarineColumns.RangeQuery<T> query, BinaryOperator<T> merge) {
+        long stamp = readLock();
+        try {
+            return ParallelScan.run(columns.size(), (from, to) -> query.scan(columns, from, to), merge);
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Run the compiled query with the read lock by the cheapest plan:
+     * counters for counting by one category or melee weapon, the index of heights for aggregations of heights
+     * without conditions, the index of IDs for the condition "id = value" (if IDs aren't repeated),
+     * the index of heights for ranges of heights and the scan of columns for other queries
+     * (the scan is parallel if {@link ParallelScan#isParallel(int)}).
+     * Space marines found by indexes are checked by all conditions of the query.
+     *
+     * @param query the compiled query.
+     * @return the result of the query.
+     */
+    public SpaceMarineQuery.Result query(SpaceMarineQuery query) {
+        long stamp = readLock();
+        try {
+            SpaceMarineQuery.Result result;
+            if (query.isCountedByCounters()) {
+                result = query.newResult("counters");
+                result.add(query.countByCounters(count, categories, meleeWeapons), 0, 0, Long.MAX_VALUE, Long.MIN_VALUE);
+                return result;
+            }
+            if (!query.hasConditions() && !query.isGrouped() && query.getAggregated() == SpaceMarineQuery.Field.HEIGHT) {
+                result = query.newResult("index of heights");
+                int counted = count - withoutHeight.size();
+                result.add(count, counted, heightSum, counted == 0 ? Long.MAX_VALUE : heights.firstKey(),
+                        counted == 0 ? Long.MIN_VALUE : heights.lastKey());
+                return result;
+            }
+            Integer id = query.idEquals();
+            // if (IDs are repeated) than: the index has only one of space marines with the ID.
+            if (id != null && duplicates == 0) {
+                result = query.newResult("index of IDs");
+                SpaceMarine spaceMarine = ids.get(id);
+                if (spaceMarine != null) {
+                    result.accept(spaceMarine);
+                }
+                return result;
+            }
+            SpaceMarineQuery.HeightRange range = query.heightRange();
+            if (range != null) {
+                result = query.newResult("index of heights");
+                if (range.onlyNull) {
+                    withoutHeight.forEach(result::accept);
+                } else if (!range.isEmpty()) {
+                    for (Set<SpaceMarine> sameHeight : heights.subMap(range.from, true, range.to, true).values()) {
+                        sameHeight.forEach(result::accept);
+                    }
+                }
+                return result;
+            }
+            String plan = ParallelScan.isParallel(columns.size()) ? "parallel scan of columns" : "scan of columns";
+            return ParallelScan.run(columns.size(), (from, to) -> {
+                SpaceMarineQuery.Result part = query.newResult(plan);
+                for (int row = from; row < to; ++row) {
+                    part.accept(columns, row);
+                }
+                return part;
+            }, SpaceMarineQuery.Result::merge);
+        } finally {
+            unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Run the action with the write lock, other threads don't see intermediate states of the collection.
+     * The action can call all functions of the collection.
+     *
+     * @param action the action.
+     * @param <T> the type of the action's result.
+     * @return the action's result.
+     */
+    public <T> T atomically(Supplier<T> action) {
+        long stamp = writeLock();
+        try {
+            return action.get();
+        } finally {
+            unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Get information about the storage of the collection.
+     *
+     * @return the string with the information.
+     */
+    @Override
+    public String toString() {
+        return "Storage: {type: heap, space marines: " + size() + "}";
+    }
+
+    /**
+     * Add the first space marines after the key in the order by IDs from the ordered map
+     * (the order by IDs is the order of the map).
+     *
+     * @param order the order by IDs.
+     * @param after the key (null for the first page).
+     * @param count the count of space marines.
+     * @param first the list for adding.
+     */
+    private void firstById(SpaceMarineOrder order, SpaceMarine after, int count, List<SpaceMarine> first) {
+        NavigableMap<SpaceMarine, List<SpaceMarine>> view = ordered;
+        if (after != null) {
+            view = order.isDescending() ? ordered.headMap(after, false) : ordered.tailMap(after, false);
+        }
+        if (order.isDescending()) {
+            view = view.descendingMap();
+        }
+        for (Map.Entry<SpaceMarine, List<SpaceMarine>> entry : view.entrySet()) {
+            if (first.size() >= count) {
+                return;
+            }
+            first.add(entry.getKey());
+            if (entry.getValue() != null) {
+                for (SpaceMarine sM : entry.getValue()) {
+                    if (first.size() < count) {
+                        first.add(sM);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Add the first space marines after the key in the order by heights from the index of heights
+     * (space marines with null height are last).
+     *
+     * @param order the order by heights.
+     * @param after the key (null for the first page).
+     * @param count the count of space marines.
+     * @param first the list for adding.
+     */
+    private void firstByHeight(SpaceMarineOrder order, SpaceMarine after, int count, List<SpaceMarine> first) {
+        Integer afterHeight = after == null ? null : after.getHeight();
+        // if (the key has null height) than: only space marines with null height can be after that.
+        if (after == null || afterHeight != null) {
+            NavigableMap<Integer, Set<SpaceMarine>> view = heights;
+            if (after != null) {
+                view = order.isDescending() ? heights.headMap(afterHeight, true) : heights.tailMap(afterHeight, true);
+            }
+            if (order.isDescending()) {
+                view = view.descendingMap();
+            }
+            for (Set<SpaceMarine> sameHeight : view.values()) {
+                if (first.size() >= count) {
+                    return;
+                }
+                addFirst(order, after, count, sameHeight, first);
+            }
+        }
+        if (first.size() < count) {
+            addFirst(order, after, count, withoutHeight, first);
+        }
+    }
+
+    /**
+     * Add the first space marines of the group after the key by the bounded heap.
+     *
+     * @param order the order.
+     * @param after the key (null for the first page).
+     * @param count the count of space marines in the list after adding.
+     * @param group space marines of the group.
+     * @param first the list for adding.
+     */
+    private static void addFirst(SpaceMarineOrder order, SpaceMarine after, int count,
+                                 Collection<SpaceMarine> group, List<SpaceMarine> first) {
+        SpaceMarineOrder.Selection selection = order.select(after, count - first.size());
+        for (SpaceMarine sM : group) {
+            selection.offer(sM);
+        }
+        first.addAll(Arrays.asList(selection.toArray()));
+    }
+
+    /**
+     * Replace all space marines and build indexes again (the function is called with the write lock).
+     *
+     * @param spaceMarines the new space marines.
+     */
+    private void fill(Collection<SpaceMarine> spaceMarines) {
+        ordered.clear();
+        count = 0;
+        ++version;
+        columns.clear();
+        ids.clear();
+        duplicates = 0;
+        heights.clear();
+        withoutHeight.clear();
+        heightSum = 0;
+        Arrays.fill(meleeWeapons, 0);
+        Arrays.fill(categories, 0);
+        for (SpaceMarine spaceMarine : spaceMarines) {
+            offer(spaceMarine);
+        }
+    }
+
+    /**
+     * Add the space marine to the ordered map and indexes (the function is called with the write lock).
+     *
+     * @param spaceMarine the space marine.
+     */
+    private void offer(SpaceMarine spaceMarine) {
+        if (spaceMarine == null) {
+            throw new NullPointerException();
+        }
+        // if (an equal space marine is in the map) than: keep the space marine in its list.
+        if (ordered.containsKey(spaceMarine)) {
+            ordered.computeIfAbsent(spaceMarine, sM -> new ArrayList<>(1)).add(spaceMarine);
+        } else {
+            ordered.put(spaceMarine, null);
+        }
+        ++count;
+        ++version;
+        columns.add(spaceMarine);
+        if (ids.get(spaceMarine.getId()) == null) {
+            ids.put(spaceMarine.getId(), spaceMarine);
+        } else {
+            ++duplicates;
+        }
+        indexHeight(spaceMarine);
+        countEnums(spaceMarine, 1);
+    }
+
+    /**
+     * Remove the space marine of the collection from the ordered map and indexes
+     * (the function is called with the write lock).
+     *
+     * @param spaceMarine the space marine of the collection.
+     */
+    private void remove(SpaceMarine spaceMarine) {
+        // the entry's key is the space marine or the space marine equal to that.
+        Map.Entry<SpaceMarine, List<SpaceMarine>> entry = ordered.ceilingEntry(spaceMarine);
+        SpaceMarine key = entry.getKey();
+        List<SpaceMarine> equal = entry.getValue();
+        if (equal == null) {
+            ordered.remove(key);
+        } else if (key == spaceMarine) {
+            // replace the key by the first equal space marine.
+            ordered.remove(key);
+            ordered.put(equal.remove(0), equal.isEmpty() ? null : equal);
+        } else {
+            equal.removeIf(sM -> sM == spaceMarine);
+            if (equal.isEmpty()) {
+                ordered.put(key, null);
+            }
+        }
+        unindex(spaceMarine);
+    }
+
+    /**
+     * Remove the space marine from indexes and counters (the function is called with the write lock).
+     *
+     * @param spaceMarine the removed space marine.
+     */
+    private void unindex(SpaceMarine spaceMarine) {
+        --count;
+        ++version;
+        columns.remove(spaceMarine);
+        unindexHeight(spaceMarine);
+        countEnums(spaceMarine, -1);
+        int id = spaceMarine.getId();
+        // if (the space marine isn't in the index) than: it's one of duplicates.
+        if (ids.get(id) != spaceMarine) {
+            --duplicates;
+            return;
+        }
+        ids.remove(id);
+        // if (other space marines may have the same ID) than: index one of them.
+        if (duplicates != 0) {
+            for (Map.Entry<SpaceMarine, List<SpaceMarine>> entry : ordered.entrySet()) {
+                if (index(entry.getKey(), spaceMarine, id)) {
+                    return;
+                }
+                if (entry.getValue() != null) {
+                    for (SpaceMarine sM : entry.getValue()) {
+                        if (index(sM, spaceMarine, id)) {
+                            return;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Put the space marine to the index of IDs instead of the removed space marine with the same ID.
+     *
+     * @param spaceMarine the space marine of the collection.
+     * @param removed the removed space marine.
+     * @param id the ID of the removed space marine.
+     * @return true if the space marine has been put to the index.
+     */
+    private boolean index(SpaceMarine spaceMarine, SpaceMarine removed, int id) {
+        if (spaceMarine == removed || spaceMarine.getId() != id) {
+            return false;
+        }
+        ids.put(id, spaceMarine);
+        --duplicates;
+        return true;
+    }
+
+    /**
+     * Add the space marine to the index of heights.
+     *
+     * @param spaceMarine the space marine.
+     */
+    private void indexHeight(SpaceMarine spaceMarine) {
+        Integer height = spaceMarine.getHeight();
+        if (height == null) {
+            withoutHeight.add(spaceMarine);
+            return;
+        }
+        heights.computeIfAbsent(height, h -> new LinkedHashSet<>()).add(spaceMarine);
+        heightSum += height;
+    }
+
+    /**
+     * Remove the space marine from the index of heights.
+     *
+     * @param spaceMarine the space marine.
+     */
+    private void unindexHeight(SpaceMarine spaceMarine) {
+        Integer height = spaceMarine.getHeight();
+        if (height == null) {
+            withoutHeight.remove(spaceMarine);
+            return;
+        }
+        Set<SpaceMarine> sameHeight = heights.get(height);
+        sameHeight.remove(spaceMarine);
+        if (sameHeight.isEmpty()) {
+            heights.remove(height);
+        }
+        heightSum -= height;
+    }
+
+    /**
+     * Change counters of the melee weapon and the category of the space marine (null values aren't counted).
+     *
+     * @param spaceMarine the space marine.
+     * @param delta 1 for the added space marine or -1 for the removed space marine.
+     */
+    private void countEnums(SpaceMarine spaceMarine, int delta) {
+        if (spaceMarine.getMeleeWeapon() != null) {
+            meleeWeapons[spaceMarine.getMeleeWeapon().ordinal()] += delta;
+        }
+        if (spaceMarine.getCategory() != null) {
+            categories[spaceMarine.getCategory().ordinal()] += delta;
+        }
+    }
+
+    /**
+     * Take the read lock if the current thread doesn't hold the write lock.
+     *
+     * @return the stamp of the lock or 0 if the lock isn't taken.
+     */
+    long readLock() {
+        return writer == Thread.currentThread() ? 0 : lock.readLock();
+    }
+
+    /**
+     * Release the read lock.
+     *
+     * @param stamp the stamp of the lock.
+     */
+    void unlockRead(long stamp) {
+        if (stamp != 0) {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Take the write lock if the current thread doesn't hold that.
+     *
+     * @return the stamp of the lock or 0 if the lock isn't taken.
+     */
+    long writeLock() {
+        if (writer == Thread.currentThread()) {
+            return 0;
+        }
+        long stamp = lock.writeLock();
+        writer = Thread.currentThread();
+        return stamp;
+    }
+
+    /**
+     * Release the write lock.
+     *
+     * @param stamp the stamp of the lock.
+     */
+    void unlockWrite(long stamp) {
+        if (stamp != 0) {
+            writer = null;
+            lock.unlockWrite(stamp);
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package ru.itmo.s284719.network.collection;
+
+import ru.itmo.s284719.network.SpaceMarine;
+
+/**
+ * Columnar view of space marines: row i describes one space marine and scanned fields are read
+ * by primitive getters of rows without boxing, so scans don't depend on the storage of the collection.
+ * The heap collection keeps fields in primitive arrays ({@link SpaceMarineArrays}),
+ * the off-heap collection reads them from records.
+ * Null heights are marked by {@link #isHeightNull(int)} and read as 0 by {@link #height(int)}.
+ * Scans take the range of rows, so the collection can be scanned by parts.
+ * The view is valid only while the collection's read lock is held.
+ *
+ * @version 0.2
+ * @author Danhout.
+ */
+public interface SpaceMarineColumns {
+    /**
+     * Query over the range of rows.
+     *
+     * @param <T> the type of the result.
+     */
+    @FunctionalInterface
+    interface RangeQuery<T> {
+        /**
+         * Scan rows of the columns.
+         *
+         * @param columns the columns.
+         * @param from the first row.
+         * @param to the row after the last one.
+         * @return the result of the range.
+         */
+        T scan(SpaceMarineColumns columns, int from, int to);
+    }
+
+    /**
+     * Get the count of rows.
+     *
+     * @return the count of rows.
+     */
+    int size();
+
+    /**
+     * Get the space marine of the row (the off-heap collection copies the record to the new space marine).
+     *
+     * @param row the row.
+     * @return the space marine.
+     */
+    SpaceMarine spaceMarine(int row);
+
+    /**
+     * Get the ID of the row.
+     *
+     * @param row the row.
+     * @return the ID.
+     */
+    int id(int row);
+
+    /**
+     * Get the health of the row.
+     *
+     * @param row the row.
+     * @return the health.
+     */
+    long health(int row);
+
+    /**
+     * Check that the height of the row is null.
+     *
+     * @param row the row.
+     * @return true if the height is null.
+     */
+    boolean isHeightNull(int row);
+
+    /**
+     * Get the height of the row.
+     *
+     * @param row the row.
+     * @return the height (0 for null height).
+     */
+    int height(int row);
+
+    /**
+     * Get the coordinate x of the row.
+     *
+     * @param row the row.
+     * @return the coordinate x.
+     */
+    long x(int row);
+
+    /**
+     * Get the coordinate y of the row.
+     *
+     * @param row the row.
+     * @return the coordinate y.
+     */
+    long y(int row);
+
+    /**
+     * Get the ordinal of the category of the row.
+     *
+     * @param row the row.
+     * @return the ordinal of the category.
+     */
+    int category(int row);
+
+    /**
+     * Get the ordinal of the melee weapon of the row.
+     *
+     * @param row the row.
+     * @return the ordinal of the melee weapon.
+     */
+    int meleeWeapon(int row);
+
+    /**
+     * Get the sum of heights of rows (null heights are 0, so they don't change the sum).
+     *
+     * @param from the first row.
+     * @param to the row after the last one.
+     * @return the sum of heights.
+     */
+    default long sumOfHeights(int from, int to) {
+        long sum = 0;
+        for (int i = from; i < to; ++i) {
+            sum += height(i);
+        }
+        return sum;
+    }
+
+    /**
+     * Get the count of rows with not null heights.
+     *
+     * @param from the first row.
+     * @param to the row after the last one.
+     * @return the count of rows.
+     */
+    default int countOfHeights(int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; ++i) {
+            count += isHeightNull(i) ? 0 : 1;
+        }
+        return count;
+    }
+
+    /**
+     * Get the count of rows with the melee weapon greater than the given one.
+     *
+     * @param meleeWeapon the ordinal of the melee weapon.
+     * @param from the first row.
+     * @param to the row after the last one.
+     * @return the count of rows.
+     */
+    default int countGreaterThanMeleeWeapon(int meleeWeapon, int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; ++i) {
+            count += meleeWeapon(i) > meleeWeapon ? 1 : 0;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,202 @@
+package ru.itmo.s284719.network.collection;
+
+import ru.itmo.s284719.network.SpaceMarine;
+import ru.itmo.s284719.network.SpaceMarineView;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+
+/**
+ * Total order of space marines for pages: by the value of the field (ascending or descending,
+ * space marines with null values are last) and then by {@link SpaceMarineView#compare(SpaceMarineView, SpaceMarineView)}.
+ * The order is total, so the next page is found by the last space marine of the previous page (the key of the cursor)
+ * without counting of skipped space marines.
+ * The first space marines of the order are chosen by the bounded heap ({@link Selection}) if the collection
+ * hasn't the index of the field. The order is immutable and thread-safe.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class SpaceMarineOrder implements Comparator<SpaceMarineView> {
+    /**
+     * The order of the command "show": by height in the ascending order.
+     */
+    public static final SpaceMarineOrder BY_HEIGHT = new SpaceMarineOrder(SpaceMarineQuery.Field.HEIGHT, false);
+
+    /**
+     * The field of the order.
+     */
+    private final SpaceMarineQuery.Field field;
+    /**
+     * True if greater values are first.
+     */
+    private final boolean descending;
+
+    /**
+     * Constructor with all parameters.
+     *
+     * @param field the field of the order.
+     * @param descending true if greater values are first.
+     */
+    public SpaceMarineOrder(SpaceMarineQuery.Field field, boolean descending) {
+        this.field = field;
+        this.descending = descending;
+    }
+
+    /**
+     * Get the order of the greatest values of the field first.
+     *
+     * @param field the field.
+     * @return the order.
+     */
+    public static SpaceMarineOrder top(SpaceMarineQuery.Field field) {
+        return new SpaceMarineOrder(field, true);
+    }
+
+    /**
+     * Get the field of the order.
+     *
+     * @return the field.
+     */
+    public SpaceMarineQuery.Field getField() {
+        return field;
+    }
+
+    /**
+     * Check that greater values are first.
+     *
+     * @return true for the descending order.
+     */
+    public boolean isDescending() {
+        return descending;
+    }
+
+    /**
+     * Compare space marines by the order.
+     *
+     * @param first the first space marine.
+     * @param second the second space marine.
+     * @return negative if the first space marine is before the second one, positive if it's after that, 0 if they are equal.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public int compare(SpaceMarineView first, SpaceMarineView second) {
+        Object firstValue = field.value(first);
+        Object secondValue = field.value(second);
+        int result;
+        // null values are last in both orders.
+        if (firstValue == null || secondValue == null) {
+            result = firstValue == null ? (secondValue == null ? 0 : 1) : -1;
+        } else {
+            result = ((Comparable<Object>) firstValue).compareTo(secondValue);
+            result = descending ? -result : result;
+        }
+        if (result == 0) {
+            result = SpaceMarineView.compare(first, second);
+            result = descending ? -result : result;
+        }
+        return result;
+    }
+
+    /**
+     * Create the bounded heap of the first space marines after the key.
+     *
+     * @param after the last space marine of the previous page (null for the first page).
+     * @param count the count of chosen space marines.
+     * @return the bounded heap.
+     */
+    public Selection select(SpaceMarineView after, int count) {
+        return new Selection(after, count);
+    }
+
+    /**
+     * Get the description of the order.
+     *
+     * @return the description.
+     */
+    @Override
+    public String toString() {
+        return field + (descending ? " descending" : " ascending");
+    }
+
+    /**
+     * Bounded heap of the first space marines of the order after the key: the heap keeps at most
+     * the given count of space marines with the last of them on the top, so every space marine is checked
+     * by one comparison and the whole collection isn't sorted. Flyweights are checked by {@link #accepts(SpaceMarineView)}
+     * and copied only if they are added. The heap isn't thread-safe.
+     */
+    public class Selection {
+        /**
+         * The last space marine of the previous page (null for the first page).
+         */
+        private final SpaceMarineView after;
+        /**
+         * The count of chosen space marines.
+         */
+        private final int count;
+        /**
+         * The heap with the last chosen space marine on the top.
+         */
+        private final PriorityQueue<SpaceMarine> heap;
+
+        /**
+         * Constructor with all parameters.
+         *
+         * @param after the last space marine of the previous page (null for the first page).
+         * @param count the count of chosen space marines.
+         */
+        private Selection(SpaceMarineView after, int count) {
+            this.after = after;
+            this.count = count;
+            this.heap = new PriorityQueue<>(Math.max(1, Math.min(count, 1 << 16)) + 1, SpaceMarineOrder.this.reversed());
+        }
+
+        /**
+         * Check that the space marine is after the key and it's before the last chosen space marine.
+         *
+         * @param spaceMarine the space marine or the flyweight.
+         * @return true if the space marine must be added.
+         */
+        public boolean accepts(SpaceMarineView spaceMarine) {
+            if (count == 0 || (after != null && compare(spaceMarine, after) <= 0)) {
+                return false;
+            }
+            return heap.size() < count || compare(spaceMarine, heap.peek()) < 0;
+        }
+
+        /**
+         * Add the space marine which is accepted by {@link #accepts(SpaceMarineView)}.
+         *
+         * @param spaceMarine the space marine.
+         */
+        public void add(SpaceMarine spaceMarine) {
+            heap.add(spaceMarine);
+            if (heap.size() > count) {
+                heap.poll();
+            }
+        }
+
+        /**
+         * Check and add the space marine.
+         *
+         * @param spaceMarine the space marine.
+         */
+        public void offer(SpaceMarine spaceMarine) {
+            if (accepts(spaceMarine)) {
+                add(spaceMarine);
+            }
+        }
+
+        /**
+         * Get chosen space marines in the order.
+         *
+         * @return the sorted array of chosen space marines.
+         */
+        public SpaceMarine[] toArray() {
+            SpaceMarine[] spaceMarines = heap.toArray(new SpaceMarine[0]);
+            Arrays.sort(spaceMarines, SpaceMarineOrder.this);
+            return spaceMarines;
+        }
+    }
+}
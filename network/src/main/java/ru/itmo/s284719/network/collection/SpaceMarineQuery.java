@@ -0,0 +1,1195 @@
+package ru.itmo.s284719.network.collection;
+
+import ru.itmo.s284719.network.AstartesCategory;
+import ru.itmo.s284719.network.Chapter;
+import ru.itmo.s284719.network.MeleeWeapon;
+import ru.itmo.s284719.network.SpaceMarineView;
+
+import java.util.*;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Compiled query over fields of space marines. The language of queries:
+ * <pre>
+ *     count [where conditions] [group by field]
+ *     sum|avg|min|max numeric_field [where conditions] [group by field]
+ *     select field, field... | * [where conditions] [limit n]
+ *     conditions: field operator value [and field operator value]...
+ *     operators: =, !=, &lt;, &lt;=, &gt;, &gt;=
+ * </pre>
+ * Fields: id, name, x, y, health, height, category, melee_weapon, chapter, legion, world, marines_count.
+ * Categories and melee weapons are compared by their order, strings with spaces are written in double quotes,
+ * null is compared only by = and != (null heights don't satisfy other comparisons).
+ * Every condition is compiled once into the evaluator with the parsed constant:
+ * the row evaluator reads primitive columns ({@link SpaceMarineColumns}),
+ * the view evaluator reads space marines and flyweights of records ({@link SpaceMarineView}).
+ * Collections choose the plan of the query by {@link #idEquals()}, {@link #heightRange()}
+ * and {@link #isCountedByCounters()} and collect matched space marines into the {@link Result}.
+ * Results of parts of the collection can be merged, so the collection can be scanned by parallel tasks.
+ * The compiled query is immutable and thread-safe.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class SpaceMarineQuery {
+    /**
+     * The count of selected space marines without the limit.
+     */
+    public static final int DEFAULT_LIMIT = 100;
+
+    /**
+     * Fields of space marines in queries.
+     */
+    public enum Field {
+        ID, NAME, X, Y, HEALTH, HEIGHT, CATEGORY, MELEE_WEAPON, CHAPTER, LEGION, WORLD, MARINES_COUNT;
+
+        /**
+         * Check that values of the field are numbers which can be aggregated.
+         *
+         * @return true if the field is numeric.
+         */
+        public boolean isNumeric() {
+            return this == ID || this == X || this == Y || this == HEALTH || this == HEIGHT || this == MARINES_COUNT;
+        }
+
+        /**
+         * Check that values of the field are enumerations.
+         *
+         * @return true if the field is the category or the melee weapon.
+         */
+        public boolean isEnum() {
+            return this == CATEGORY || this == MELEE_WEAPON;
+        }
+
+        /**
+         * Get the value of the field of the space marine.
+         *
+         * @param spaceMarine the space marine.
+         * @return the value (Long for numeric fields, the enumeration or the string) or null.
+         */
+        public Object value(SpaceMarineView spaceMarine) {
+            switch (this) {
+                case ID:
+                    return (long) spaceMarine.getId();
+                case NAME:
+                    return spaceMarine.getName();
+                case X:
+                    return spaceMarine.getCoordinates().getX();
+                case Y:
+                    return spaceMarine.getCoordinates().getY();
+                case HEALTH:
+                    return spaceMarine.getHealth();
+                case HEIGHT:
+                    return spaceMarine.getHeight() == null ? null : (long) spaceMarine.getHeight();
+                case CATEGORY:
+                    return spaceMarine.getCategory();
+                case MELEE_WEAPON:
+                    return spaceMarine.getMeleeWeapon();
+                default:
+                    Chapter chapter = spaceMarine.getChapter();
+                    if (chapter == null) {
+                        return null;
+                    }
+                    switch (this) {
+                        case CHAPTER:
+                            return chapter.getName();
+                        case LEGION:
+                            return chapter.getParentLegion();
+                        case WORLD:
+                            return chapter.getWorld();
+                        default:
+                            return (long) chapter.getMarinesCount();
+                    }
+            }
+        }
+
+        /**
+         * Get the name of the field in queries.
+         *
+         * @return the name.
+         */
+        @Override
+        public String toString() {
+            return name().toLowerCase();
+        }
+    }
+
+    /**
+     * Operations of queries.
+     */
+    public enum Operation {
+        COUNT, SUM, AVG, MIN, MAX, SELECT
+    }
+
+    /**
+     * Comparison operators of conditions.
+     */
+    public enum Comparison {
+        EQ("="), NE("!="), LT("<"), LE("<="), GT(">"), GE(">=");
+
+        /**
+         * The symbol of the operator.
+         */
+        private final String symbol;
+
+        /**
+         * Constructor with all parameters.
+         *
+         * @param symbol the symbol of the operator.
+         */
+        Comparison(String symbol) {
+            this.symbol = symbol;
+        }
+
+        /**
+         * Check the result of comparing of the value with the constant.
+         *
+         * @param compared the result of comparing (negative, zero or positive).
+         * @return true if the condition is satisfied.
+         */
+        public boolean test(int compared) {
+            switch (this) {
+                case EQ:
+                    return compared == 0;
+                case NE:
+                    return compared != 0;
+                case LT:
+                    return compared < 0;
+                case LE:
+                    return compared <= 0;
+                case GT:
+                    return compared > 0;
+                default:
+                    return compared >= 0;
+            }
+        }
+
+        /**
+         * Compile the comparison with the constant into the predicate of numbers.
+         *
+         * @param constant the constant.
+         * @return the predicate.
+         */
+        LongPredicate with(long constant) {
+            switch (this) {
+                case EQ:
+                    return value -> value == constant;
+                case NE:
+                    return value -> value != constant;
+                case LT:
+                    return value -> value < constant;
+                case LE:
+                    return value -> value <= constant;
+                case GT:
+                    return value -> value > constant;
+                default:
+                    return value -> value >= constant;
+            }
+        }
+
+        /**
+         * Get the symbol of the operator.
+         *
+         * @return the symbol.
+         */
+        @Override
+        public String toString() {
+            return symbol;
+        }
+    }
+
+    /**
+     * Condition over the row of columns.
+     */
+    @FunctionalInterface
+    public interface RowPredicate {
+        /**
+         * Check the row.
+         *
+         * @param columns the columns.
+         * @param row the row.
+         * @return true if the row satisfies the condition.
+         */
+        boolean test(SpaceMarineColumns columns, int row);
+    }
+
+    /**
+     * Numeric getter of the row of columns.
+     */
+    @FunctionalInterface
+    private interface RowGetter {
+        /**
+         * Get the value of the row.
+         *
+         * @param columns the columns.
+         * @param row the row.
+         * @return the value.
+         */
+        long get(SpaceMarineColumns columns, int row);
+    }
+
+    /**
+     * Condition "field operator value".
+     */
+    private static class Condition {
+        /**
+         * The field.
+         */
+        private final Field field;
+        /**
+         * The operator.
+         */
+        private final Comparison comparison;
+        /**
+         * The constant (Long, the enumeration, the string or null).
+         */
+        private final Object value;
+
+        /**
+         * Constructor with all parameters.
+         *
+         * @param field the field.
+         * @param comparison the operator.
+         * @param value the constant.
+         */
+        private Condition(Field field, Comparison comparison, Object value) {
+            this.field = field;
+            this.comparison = comparison;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Inclusive range of heights.
+     */
+    public static class HeightRange {
+        /**
+         * The least height of the range.
+         */
+        public final int from;
+        /**
+         * The greatest height of the range.
+         */
+        public final int to;
+        /**
+         * True if the range has only null heights.
+         */
+        public final boolean onlyNull;
+
+        /**
+         * Constructor with all parameters.
+         *
+         * @param from the least height.
+         * @param to the greatest height.
+         * @param onlyNull true if the range has only null heights.
+         */
+        private HeightRange(int from, int to, boolean onlyNull) {
+            this.from = from;
+            this.to = to;
+            this.onlyNull = onlyNull;
+        }
+
+        /**
+         * Check that the range doesn't have heights.
+         *
+         * @return true if the range is empty.
+         */
+        public boolean isEmpty() {
+            return !onlyNull && from > to;
+        }
+    }
+
+    /**
+     * The text of the query.
+     */
+    private final String text;
+    /**
+     * The operation.
+     */
+    private final Operation operation;
+    /**
+     * The aggregated field (null for "count" and "select").
+     */
+    private final Field aggregated;
+    /**
+     * The field of groups of aggregations (null if space marines aren't grouped).
+     */
+    private final Field groupBy;
+    /**
+     * Selected fields (empty for aggregations).
+     */
+    private final List<Field> projection;
+    /**
+     * Conditions of the query.
+     */
+    private final List<Condition> conditions;
+    /**
+     * The maximal count of selected space marines.
+     */
+    private final int limit;
+    /**
+     * The compiled condition over rows of columns.
+     */
+    private final RowPredicate rowPredicate;
+    /**
+     * The compiled condition over space marines.
+     */
+    private final Predicate<SpaceMarineView> viewPredicate;
+    /**
+     * The compiled getter of the aggregated field from columns (null if the field isn't in columns).
+     */
+    private final RowGetter rowAggregated;
+
+    /**
+     * Constructor with parsed parts of the query (conditions are compiled here).
+     *
+     * @param text the text of the query.
+     * @param operation the operation.
+     * @param aggregated the aggregated field.
+     * @param groupBy the field of groups.
+     * @param projection selected fields.
+     * @param conditions conditions.
+     * @param limit the maximal count of selected space marines.
+     */
+    private SpaceMarineQuery(String text, Operation operation, Field aggregated, Field groupBy,
+                             List<Field> projection, List<Condition> conditions, int limit) {
+        this.text = text;
+        this.operation = operation;
+        this.aggregated = aggregated;
+        this.groupBy = groupBy;
+        this.projection = Collections.unmodifiableList(projection);
+        this.conditions = Collections.unmodifiableList(conditions);
+        this.limit = limit;
+        RowPredicate rows = null;
+        Predicate<SpaceMarineView> views = null;
+        for (Condition condition : conditions) {
+            rows = rows == null ? compileRow(condition) : and(rows, compileRow(condition));
+            views = views == null ? compileView(condition) : views.and(compileView(condition));
+        }
+        this.rowPredicate = rows;
+        this.viewPredicate = views;
+        this.rowAggregated = aggregated == null ? null : rowGetter(aggregated);
+    }
+
+    /**
+     * Parse and compile the query.
+     *
+     * @param text the text of the query.
+     * @return the compiled query.
+     * @throws IllegalArgumentException if the query isn't correct.
+     */
+    public static SpaceMarineQuery compile(String text) throws IllegalArgumentException {
+        List<String> tokens = tokenize(text);
+        if (tokens.isEmpty()) {
+            throw new IllegalArgumentException("The query is empty.");
+        }
+        int i = 0;
+        Operation operation;
+        try {
+            operation = Operation.valueOf(tokens.get(i++).toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("The query starts with count, sum, avg, min, max or select.");
+        }
+        Field aggregated = null;
+        List<Field> projection = new ArrayList<>();
+        if (operation == Operation.SELECT) {
+            if (i < tokens.size() && tokens.get(i).equals("*")) {
+                projection.addAll(Arrays.asList(Field.values()));
+                ++i;
+            } else {
+                projection.add(field(tokens, i++));
+                while (i < tokens.size() && tokens.get(i).equals(",")) {
+                    projection.add(field(tokens, i + 1));
+                    i += 2;
+                }
+            }
+        } else if (operation != Operation.COUNT) {
+            aggregated = field(tokens, i++);
+            if (!aggregated.isNumeric()) {
+                throw new IllegalArgumentException("The field isn't numeric: " + aggregated + ".");
+            }
+        }
+        List<Condition> conditions = new ArrayList<>();
+        if (i < tokens.size() && tokens.get(i).equalsIgnoreCase("where")) {
+            do {
+                ++i;
+                Field field = field(tokens, i++);
+                Comparison comparison = comparison(tokens, i++);
+                if (i >= tokens.size()) {
+                    throw new IllegalArgumentException("The value of the condition isn't found.");
+                }
+                conditions.add(new Condition(field, comparison, value(field, comparison, tokens.get(i++))));
+            } while (i < tokens.size() && tokens.get(i).equalsIgnoreCase("and"));
+        }
+        Field groupBy = null;
+        if (operation != Operation.SELECT && i < tokens.size() && tokens.get(i).equalsIgnoreCase("group")) {
+            if (i + 1 >= tokens.size() || !tokens.get(i + 1).equalsIgnoreCase("by")) {
+                throw new IllegalArgumentException("The grouping is written as \"group by field\".");
+            }
+            groupBy = field(tokens, i + 2);
+            i += 3;
+        }
+        int limit = DEFAULT_LIMIT;
+        if (operation == Operation.SELECT && i < tokens.size() && tokens.get(i).equalsIgnoreCase("limit")) {
+            try {
+                limit = Integer.parseInt(tokens.get(i + 1));
+            } catch (IndexOutOfBoundsException | NumberFormatException e) {
+                throw new IllegalArgumentException("The limit is a number.");
+            }
+            if (limit < 0) {
+                throw new IllegalArgumentException("The limit can't be negative.");
+            }
+            i += 2;
+        }
+        if (i < tokens.size()) {
+            throw new IllegalArgumentException("Unexpected word of the query: " + tokens.get(i) + ".");
+        }
+        return new SpaceMarineQuery(text, operation, aggregated, groupBy, projection, conditions, limit);
+    }
+
+    /**
+     * Get the operation of the query.
+     *
+     * @return the operation.
+     */
+    public Operation getOperation() {
+        return operation;
+    }
+
+    /**
+     * Get the aggregated field.
+     *
+     * @return the field or null for "count" and "select".
+     */
+    public Field getAggregated() {
+        return aggregated;
+    }
+
+    /**
+     * Check that the query hasn't conditions.
+     *
+     * @return true if all space marines are matched.
+     */
+    public boolean hasConditions() {
+        return !conditions.isEmpty();
+    }
+
+    /**
+     * Check that aggregations are computed by groups.
+     *
+     * @return true if the query has "group by".
+     */
+    public boolean isGrouped() {
+        return groupBy != null;
+    }
+
+    /**
+     * Get the ID of the condition "id = value" (it can be answered by the index of IDs).
+     *
+     * @return the ID or null if the query hasn't the condition.
+     */
+    public Integer idEquals() {
+        for (Condition condition : conditions) {
+            if (condition.field == Field.ID && condition.comparison == Comparison.EQ) {
+                long id = (Long) condition.value;
+                // if (the ID is out of range) than: it isn't equal to any ID.
+                return id == (int) id ? (Integer) (int) id : null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the range of heights which covers all space marines matched by conditions of heights
+     * (it can be answered by the index of heights). The condition "!=" isn't used for the range.
+     *
+     * @return the range or null if conditions don't bound heights.
+     */
+    public HeightRange heightRange() {
+        long from = Integer.MIN_VALUE;
+        long to = Integer.MAX_VALUE;
+        boolean bounded = false;
+        boolean onlyNull = false;
+        for (Condition condition : conditions) {
+            if (condition.field != Field.HEIGHT || condition.comparison == Comparison.NE) {
+                continue;
+            }
+            bounded = true;
+            if (condition.value == null) {
+                onlyNull = true;
+                continue;
+            }
+            long value = (Long) condition.value;
+            switch (condition.comparison) {
+                case EQ:
+                    from = Math.max(from, value);
+                    to = Math.min(to, value);
+                    break;
+                case LT:
+                    to = Math.min(to, value - 1);
+                    break;
+                case LE:
+                    to = Math.min(to, value);
+                    break;
+                case GT:
+                    from = Math.max(from, value + 1);
+                    break;
+                default:
+                    from = Math.max(from, value);
+            }
+        }
+        if (!bounded) {
+            return null;
+        }
+        // if (null heights are required with a number) than: the range is empty.
+        if (onlyNull && (from != Integer.MIN_VALUE || to != Integer.MAX_VALUE)) {
+            return new HeightRange(1, 0, false);
+        }
+        return from > to ? new HeightRange(1, 0, false) : new HeightRange((int) from, (int) to, onlyNull);
+    }
+
+    /**
+     * Check that the query is "count" with at most one condition of the category or the melee weapon,
+     * so it's answered by counters of the collection.
+     *
+     * @return true if the query is answered by counters.
+     */
+    public boolean isCountedByCounters() {
+        if (operation != Operation.COUNT || groupBy != null || conditions.size() > 1) {
+            return false;
+        }
+        return conditions.isEmpty() || (conditions.get(0).field.isEnum() && conditions.get(0).value != null);
+    }
+
+    /**
+     * Count space marines by counters of the collection (see {@link #isCountedByCounters()}).
+     *
+     * @param count the count of space marines.
+     * @param categories counts of space marines by ordinals of categories.
+     * @param meleeWeapons counts of space marines by ordinals of melee weapons.
+     * @return the count of matched space marines.
+     */
+    public long countByCounters(int count, int[] categories, int[] meleeWeapons) {
+        if (conditions.isEmpty()) {
+            return count;
+        }
+        Condition condition = conditions.get(0);
+        int[] counters = condition.field == Field.CATEGORY ? categories : meleeWeapons;
+        int ordinal = ((Enum<?>) condition.value).ordinal();
+        long counted = 0;
+        for (int i = 0; i < counters.length; ++i) {
+            if (condition.comparison.test(Integer.compare(i, ordinal))) {
+                counted += counters[i];
+            }
+        }
+        return counted;
+    }
+
+    /**
+     * Check the row of columns by the compiled conditions.
+     *
+     * @param columns the columns.
+     * @param row the row.
+     * @return true if the row is matched.
+     */
+    public boolean test(SpaceMarineColumns columns, int row) {
+        return rowPredicate == null || rowPredicate.test(columns, row);
+    }
+
+    /**
+     * Check the space marine by the compiled conditions.
+     *
+     * @param spaceMarine the space marine or the flyweight.
+     * @return true if the space marine is matched.
+     */
+    public boolean test(SpaceMarineView spaceMarine) {
+        return viewPredicate == null || viewPredicate.test(spaceMarine);
+    }
+
+    /**
+     * Create the empty result of the query.
+     *
+     * @param plan the description of the plan of the query.
+     * @return the result.
+     */
+    public Result newResult(String plan) {
+        return new Result(plan);
+    }
+
+    /**
+     * Get the text of the query.
+     *
+     * @return the text.
+     */
+    @Override
+    public String toString() {
+        return text;
+    }
+
+    /**
+     * Aggregation of matched space marines (of all of them or of one group).
+     */
+    private static class Aggregate {
+        /**
+         * The count of matched space marines.
+         */
+        private long matched = 0;
+        /**
+         * The count of aggregated values (without nulls).
+         */
+        private long counted = 0;
+        /**
+         * The sum of aggregated values.
+         */
+        private long sum = 0;
+        /**
+         * The least aggregated value.
+         */
+        private long min = Long.MAX_VALUE;
+        /**
+         * The greatest aggregated value.
+         */
+        private long max = Long.MIN_VALUE;
+
+        /**
+         * Add the value.
+         *
+         * @param value the value.
+         */
+        private void add(long value) {
+            ++counted;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        /**
+         * Add the other aggregation.
+         *
+         * @param other the other aggregation.
+         */
+        private void merge(Aggregate other) {
+            matched += other.matched;
+            counted += other.counted;
+            sum += other.sum;
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+    }
+
+    /**
+     * Result of the query: matched space marines are added by {@link #accept(SpaceMarineView)}
+     * or {@link #accept(SpaceMarineColumns, int)}, results of parts of the collection are joined
+     * by {@link #merge(Result)}, the result is printed by {@link #toString()}.
+     * The result isn't thread-safe (every task of the parallel scan has its own result).
+     */
+    public class Result {
+        /**
+         * The description of the plan of the query.
+         */
+        private final String plan;
+        /**
+         * The count of checked space marines.
+         */
+        private long checked = 0;
+        /**
+         * The aggregation of all matched space marines.
+         */
+        private final Aggregate total = new Aggregate();
+        /**
+         * Aggregations by values of the field of groups (null if the query hasn't groups).
+         */
+        private final TreeMap<Object, Aggregate> groups;
+        /**
+         * Lines of selected space marines.
+         */
+        private final List<String> lines = new ArrayList<>();
+
+        /**
+         * Constructor with all parameters.
+         *
+         * @param plan the description of the plan of the query.
+         */
+        @SuppressWarnings("unchecked")
+        private Result(String plan) {
+            this.plan = plan;
+            // values of one field are comparable with each other (null values are first).
+            this.groups = groupBy == null ? null
+                    : new TreeMap<>(Comparator.nullsFirst((first, second) -> ((Comparable<Object>) first).compareTo(second)));
+        }
+
+        /**
+         * Check and add the space marine.
+         *
+         * @param spaceMarine the space marine or the flyweight (it isn't kept).
+         */
+        public void accept(SpaceMarineView spaceMarine) {
+            ++checked;
+            if (!test(spaceMarine)) {
+                return;
+            }
+            if (operation == Operation.SELECT) {
+                ++total.matched;
+                select(spaceMarine);
+                return;
+            }
+            Aggregate group = group(spaceMarine);
+            ++total.matched;
+            if (group != null) {
+                ++group.matched;
+            }
+            if (aggregated != null) {
+                Object value = aggregated.value(spaceMarine);
+                if (value != null) {
+                    aggregate(group, (Long) value);
+                }
+            }
+        }
+
+        /**
+         * Check and add the row of columns.
+         *
+         * @param columns the columns.
+         * @param row the row.
+         */
+        public void accept(SpaceMarineColumns columns, int row) {
+            ++checked;
+            if (!SpaceMarineQuery.this.test(columns, row)) {
+                return;
+            }
+            if (operation == Operation.SELECT) {
+                ++total.matched;
+                select(columns.spaceMarine(row));
+                return;
+            }
+            Aggregate group = groupBy == null ? null : group(columns.spaceMarine(row));
+            ++total.matched;
+            if (group != null) {
+                ++group.matched;
+            }
+            if (aggregated == null) {
+                return;
+            }
+            if (rowAggregated == null) {
+                Object value = aggregated.value(columns.spaceMarine(row));
+                if (value != null) {
+                    aggregate(group, (Long) value);
+                }
+            } else if (aggregated != Field.HEIGHT || !columns.isHeightNull(row)) {
+                aggregate(group, rowAggregated.get(columns, row));
+            }
+        }
+
+        /**
+         * Add counted values which weren't checked one by one (e.g. by counters of the collection).
+         * The function is used only for queries without groups.
+         *
+         * @param matched the count of matched space marines.
+         * @param counted the count of aggregated values.
+         * @param sum the sum of aggregated values.
+         * @param min the least aggregated value.
+         * @param max the greatest aggregated value.
+         */
+        public void add(long matched, long counted, long sum, long min, long max) {
+            total.matched += matched;
+            total.counted += counted;
+            total.sum += sum;
+            total.min = Math.min(total.min, min);
+            total.max = Math.max(total.max, max);
+        }
+
+        /**
+         * Add the result of the next part of the collection.
+         *
+         * @param other the result of the same query.
+         * @return this result.
+         */
+        public Result merge(Result other) {
+            checked += other.checked;
+            total.merge(other.total);
+            if (groups != null) {
+                other.groups.forEach((key, group) -> groups.computeIfAbsent(key, k -> new Aggregate()).merge(group));
+            }
+            for (String line : other.lines) {
+                if (lines.size() >= limit) {
+                    break;
+                }
+                lines.add(line);
+            }
+            return this;
+        }
+
+        /**
+         * Get the count of matched space marines.
+         *
+         * @return the count.
+         */
+        public long getMatched() {
+            return total.matched;
+        }
+
+        /**
+         * Print the result with the plan.
+         *
+         * @return the message.
+         */
+        @Override
+        public String toString() {
+            StringBuilder message = new StringBuilder("Result of the query (" + plan
+                    + ", checked: " + checked + "): ");
+            if (operation == Operation.SELECT) {
+                message.append(lines.size()).append(" of ").append(total.matched).append(" space marines");
+                for (String line : lines) {
+                    message.append(System.lineSeparator()).append(line);
+                }
+                return message.toString();
+            }
+            message.append(operation.name().toLowerCase());
+            if (aggregated != null) {
+                message.append("(").append(aggregated).append(")");
+            }
+            if (groups == null) {
+                return message.append(" = ").append(value(total)).toString();
+            }
+            message.append(" by ").append(groupBy).append(": {");
+            String separator = "";
+            for (Map.Entry<Object, Aggregate> entry : groups.entrySet()) {
+                Object key = entry.getKey();
+                message.append(separator).append(key instanceof String ? "\"" + key + "\"" : key)
+                        .append(": ").append(value(entry.getValue()));
+                separator = ", ";
+            }
+            return message.append("}").toString();
+        }
+
+        /**
+         * Get the value of the operation for the aggregation.
+         *
+         * @param aggregate the aggregation.
+         * @return the value.
+         */
+        private Object value(Aggregate aggregate) {
+            switch (operation) {
+                case COUNT:
+                    return aggregate.matched;
+                case SUM:
+                    return aggregate.sum;
+                case AVG:
+                    return aggregate.counted == 0 ? 0 : ((double) aggregate.sum) / aggregate.counted;
+                case MIN:
+                    return aggregate.counted == 0 ? "null" : aggregate.min;
+                default:
+                    return aggregate.counted == 0 ? "null" : aggregate.max;
+            }
+        }
+
+        /**
+         * Get the aggregation of the group of the space marine.
+         *
+         * @param spaceMarine the space marine.
+         * @return the aggregation or null if the query hasn't groups.
+         */
+        private Aggregate group(SpaceMarineView spaceMarine) {
+            if (groupBy == null) {
+                return null;
+            }
+            return groups.computeIfAbsent(groupBy.value(spaceMarine), key -> new Aggregate());
+        }
+
+        /**
+         * Add the value to the aggregation of all space marines and of the group.
+         *
+         * @param group the aggregation of the group or null.
+         * @param value the value.
+         */
+        private void aggregate(Aggregate group, long value) {
+            total.add(value);
+            if (group != null) {
+                group.add(value);
+            }
+        }
+
+        /**
+         * Print selected fields of the space marine if the limit isn't reached.
+         *
+         * @param spaceMarine the space marine.
+         */
+        private void select(SpaceMarineView spaceMarine) {
+            if (lines.size() >= limit) {
+                return;
+            }
+            StringBuilder line = new StringBuilder("{");
+            String separator = "";
+            for (Field field : projection) {
+                Object value = field.value(spaceMarine);
+                line.append(separator).append(field).append(": ");
+                line.append(value instanceof String ? "\"" + value + "\"" : value);
+                separator = ", ";
+            }
+            lines.add(line.append("}").toString());
+        }
+    }
+
+    /**
+     * Compile the condition into the evaluator over rows of columns.
+     * Fields which aren't in columns are read from space marines of rows.
+     *
+     * @param condition the condition.
+     * @return the evaluator.
+     */
+    private static RowPredicate compileRow(Condition condition) {
+        RowGetter getter = rowGetter(condition.field);
+        // if (the field isn't in columns or it's compared with null) than: read the space marine of the row.
+        if (getter == null || (condition.value == null && condition.field != Field.HEIGHT)) {
+            Predicate<SpaceMarineView> view = compileView(condition);
+            return (columns, row) -> view.test(columns.spaceMarine(row));
+        }
+        if (condition.field == Field.HEIGHT) {
+            if (condition.value == null) {
+                return condition.comparison == Comparison.EQ
+                        ? (columns, row) -> columns.isHeightNull(row)
+                        : (columns, row) -> !columns.isHeightNull(row);
+            }
+            LongPredicate test = condition.comparison.with((Long) condition.value);
+            return (columns, row) -> !columns.isHeightNull(row) && test.test(columns.height(row));
+        }
+        LongPredicate test = condition.comparison.with(constant(condition));
+        switch (condition.field) {
+            // the most used fields are read directly without the getter.
+            case ID:
+                return (columns, row) -> test.test(columns.id(row));
+            case CATEGORY:
+                return (columns, row) -> test.test(columns.category(row));
+            case MELEE_WEAPON:
+                return (columns, row) -> test.test(columns.meleeWeapon(row));
+            default:
+                return (columns, row) -> test.test(getter.get(columns, row));
+        }
+    }
+
+    /**
+     * Compile the condition into the evaluator over space marines.
+     *
+     * @param condition the condition.
+     * @return the evaluator.
+     */
+    private static Predicate<SpaceMarineView> compileView(Condition condition) {
+        Field field = condition.field;
+        Comparison comparison = condition.comparison;
+        if (condition.value == null) {
+            Function<SpaceMarineView, Object> getter = field::value;
+            return comparison == Comparison.EQ
+                    ? spaceMarine -> getter.apply(spaceMarine) == null
+                    : spaceMarine -> getter.apply(spaceMarine) != null;
+        }
+        if (field == Field.HEIGHT) {
+            LongPredicate test = comparison.with((Long) condition.value);
+            return spaceMarine -> {
+                Integer height = spaceMarine.getHeight();
+                return height != null && test.test(height);
+            };
+        }
+        if (field.isNumeric() || field.isEnum()) {
+            LongPredicate test = comparison.with(constant(condition));
+            ToLongFunction<SpaceMarineView> getter = viewGetter(field);
+            return spaceMarine -> test.test(getter.applyAsLong(spaceMarine));
+        }
+        String constant = (String) condition.value;
+        Function<SpaceMarineView, Object> getter = field::value;
+        if (comparison == Comparison.EQ) {
+            return spaceMarine -> constant.equals(getter.apply(spaceMarine));
+        }
+        if (comparison == Comparison.NE) {
+            return spaceMarine -> !constant.equals(getter.apply(spaceMarine));
+        }
+        return spaceMarine -> {
+            Object value = getter.apply(spaceMarine);
+            return value != null && comparison.test(((String) value).compareTo(constant));
+        };
+    }
+
+    /**
+     * Get the getter of the field from columns.
+     *
+     * @param field the field.
+     * @return the getter or null if the field isn't in columns.
+     */
+    private static RowGetter rowGetter(Field field) {
+        switch (field) {
+            case ID:
+                return SpaceMarineColumns::id;
+            case X:
+                return SpaceMarineColumns::x;
+            case Y:
+                return SpaceMarineColumns::y;
+            case HEALTH:
+                return SpaceMarineColumns::health;
+            case HEIGHT:
+                return SpaceMarineColumns::height;
+            case CATEGORY:
+                return SpaceMarineColumns::category;
+            case MELEE_WEAPON:
+                return SpaceMarineColumns::meleeWeapon;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Get the numeric getter of the not null field of space marines (enumerations are read by ordinals).
+     *
+     * @param field the numeric field except the height or the enumeration.
+     * @return the getter.
+     */
+    private static ToLongFunction<SpaceMarineView> viewGetter(Field field) {
+        switch (field) {
+            case ID:
+                return SpaceMarineView::getId;
+            case X:
+                return spaceMarine -> spaceMarine.getCoordinates().getX();
+            case Y:
+                return spaceMarine -> spaceMarine.getCoordinates().getY();
+            case HEALTH:
+                return SpaceMarineView::getHealth;
+            case CATEGORY:
+                return spaceMarine -> spaceMarine.getCategory().ordinal();
+            case MELEE_WEAPON:
+                return spaceMarine -> spaceMarine.getMeleeWeapon().ordinal();
+            default:
+                return spaceMarine -> spaceMarine.getChapter().getMarinesCount();
+        }
+    }
+
+    /**
+     * Get the numeric constant of the condition of the numeric field or the enumeration.
+     *
+     * @param condition the condition with the not null constant.
+     * @return the number or the ordinal.
+     */
+    private static long constant(Condition condition) {
+        return condition.value instanceof Enum ? ((Enum<?>) condition.value).ordinal() : (Long) condition.value;
+    }
+
+    /**
+     * Join two evaluators over rows by "and".
+     *
+     * @param first the first evaluator.
+     * @param second the second evaluator.
+     * @return the joined evaluator.
+     */
+    private static RowPredicate and(RowPredicate first, RowPredicate second) {
+        return (columns, row) -> first.test(columns, row) && second.test(columns, row);
+    }
+
+    /**
+     * Parse the field.
+     *
+     * @param tokens tokens of the query.
+     * @param i the index of the token.
+     * @return the field.
+     */
+    private static Field field(List<String> tokens, int i) {
+        if (i >= tokens.size()) {
+            throw new IllegalArgumentException("The field isn't found.");
+        }
+        try {
+            return Field.valueOf(tokens.get(i).toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Not found the field: " + tokens.get(i) + ".");
+        }
+    }
+
+    /**
+     * Parse the operator.
+     *
+     * @param tokens tokens of the query.
+     * @param i the index of the token.
+     * @return the operator.
+     */
+    private static Comparison comparison(List<String> tokens, int i) {
+        if (i < tokens.size()) {
+            for (Comparison comparison : Comparison.values()) {
+                if (comparison.symbol.equals(tokens.get(i))) {
+                    return comparison;
+                }
+            }
+        }
+        throw new IllegalArgumentException("The condition has the operator =, !=, <, <=, > or >=.");
+    }
+
+    /**
+     * Parse the constant of the condition by the type of the field.
+     *
+     * @param field the field.
+     * @param comparison the operator.
+     * @param token the token of the constant.
+     * @return the constant (Long, the enumeration, the string or null).
+     */
+    private static Object value(Field field, Comparison comparison, String token) {
+        boolean quoted = token.length() >= 2 && token.startsWith("\"") && token.endsWith("\"");
+        if (!quoted && token.equalsIgnoreCase("null")) {
+            if (comparison != Comparison.EQ && comparison != Comparison.NE) {
+                throw new IllegalArgumentException("Null is compared only by = and !=.");
+            }
+            return null;
+        }
+        String value = quoted ? token.substring(1, token.length() - 1) : token;
+        try {
+            if (field.isNumeric()) {
+                return Long.parseLong(value);
+            }
+            if (field == Field.CATEGORY) {
+                return AstartesCategory.valueOf(value.toUpperCase());
+            }
+            if (field == Field.MELEE_WEAPON) {
+                return MeleeWeapon.valueOf(value.toUpperCase());
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Incorrect value of the field " + field + ": " + value + ".");
+        }
+        return value;
+    }
+
+    /**
+     * Split the query into words, quoted strings, operators and commas.
+     *
+     * @param text the text of the query.
+     * @return tokens (quoted strings are kept with quotes).
+     */
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < text.length()) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                ++i;
+            } else if (c == '"') {
+                int end = text.indexOf('"', i + 1);
+                if (end == -1) {
+                    throw new IllegalArgumentException("The string isn't closed by the quote.");
+                }
+                tokens.add(text.substring(i, end + 1));
+                i = end + 1;
+            } else if (c == ',' || c == '*') {
+                tokens.add(String.valueOf(c));
+                ++i;
+            } else if (c == '=' || c == '!' || c == '<' || c == '>') {
+                int end = i + 1 < text.length() && text.charAt(i + 1) == '=' ? i + 2 : i + 1;
+                tokens.add(text.substring(i, end));
+                i = end;
+            } else {
+                int end = i;
+                while (end < text.length() && !Character.isWhitespace(text.charAt(end))
+                        && ",*=!<>\"".indexOf(text.charAt(end)) == -1) {
+                    ++end;
+                }
+                tokens.add(text.substring(i, end));
+                i = end;
+            }
+        }
+        return tokens;
+    }
+}
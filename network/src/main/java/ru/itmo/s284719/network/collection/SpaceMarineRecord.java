@@ -0,0 +1,107 @@
+package ru.itmo.s284719.network.collection;
+
+import ru.itmo.s284719.network.*;
+
+import java.time.ZonedDateTime;
+
+/**
+ * Flyweight of the record of {@link SpaceMarineRecords}: it has the same getters as {@link SpaceMarine},
+ * but reads fields from the off-heap record, so one flyweight can be moved over all records without allocation.
+ * The flyweight is valid while the table isn't changed.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class SpaceMarineRecord implements SpaceMarineView {
+    /**
+     * The table of records.
+     */
+    private final SpaceMarineRecords records;
+    /**
+     * The number of the current record.
+     */
+    private int record;
+
+    /**
+     * Constructor with all parameters.
+     *
+     * @param records the table of records.
+     */
+    SpaceMarineRecord(SpaceMarineRecords records) {
+        this.records = records;
+    }
+
+    /**
+     * Move the flyweight to the record.
+     *
+     * @param record the number of the record.
+     * @return this flyweight.
+     */
+    public SpaceMarineRecord moveTo(int record) {
+        this.record = record;
+        return this;
+    }
+
+    /**
+     * Get the number of the current record.
+     *
+     * @return the number of the record.
+     */
+    public int record() {
+        return record;
+    }
+
+    /**
+     * Copy the record to the new space marine.
+     *
+     * @return the space marine.
+     */
+    public SpaceMarine toSpaceMarine() {
+        return records.get(record);
+    }
+
+    @Override
+    public int getId() {
+        return records.id(record);
+    }
+
+    @Override
+    public String getName() {
+        return records.name(record);
+    }
+
+    @Override
+    public Coordinates getCoordinates() {
+        return new Coordinates(records.x(record), records.y(record));
+    }
+
+    @Override
+    public ZonedDateTime getCreationDate() {
+        return records.creationDate(record);
+    }
+
+    @Override
+    public Long getHealth() {
+        return records.health(record);
+    }
+
+    @Override
+    public Integer getHeight() {
+        return records.height(record);
+    }
+
+    @Override
+    public AstartesCategory getCategory() {
+        return records.category(record);
+    }
+
+    @Override
+    public MeleeWeapon getMeleeWeapon() {
+        return records.meleeWeapon(record);
+    }
+
+    @Override
+    public Chapter getChapter() {
+        return records.chapter(record);
+    }
+}
@@ -0,0 +1,418 @@
+package ru.itmo.s284719.network.collection;
+
+import ru.itmo.s284719.network.*;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Off-heap table of space marines: every space marine is the record of {@link #RECORD_SIZE} bytes
+ * in slabs of direct buffers, strings are kept in the off-heap {@link StringArena}.
+ * The heap keeps only buffers' objects and the table of time zones, so its size doesn't depend on the count of records.
+ * Removed records are filled by the last record, so records don't have holes, but their order isn't kept.
+ * Records are read by flyweights ({@link SpaceMarineRecord}) or copied to new space marines.
+ * The table isn't thread-safe.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class SpaceMarineRecords {
+    /**
+     * The size of a record in bytes.
+     */
+    public static final int RECORD_SIZE = 88;
+    /**
+     * The count of records in one slab.
+     */
+    private static final int RECORDS_PER_SLAB = 1 << 16;
+
+    /**
+     * Offsets of fields in the record.
+     */
+    private static final int ID = 0;
+    private static final int HEIGHT = 4;
+    private static final int HEALTH = 8;
+    private static final int X = 16;
+    private static final int Y = 24;
+    private static final int SECONDS = 32;
+    private static final int NANOS = 40;
+    private static final int MARINES_COUNT = 44;
+    private static final int CATEGORY = 48;
+    private static final int MELEE_WEAPON = 49;
+    private static final int HEIGHT_NULL = 50;
+    private static final int ZONE = 52;
+    private static final int NAME = 56;
+    private static final int CHAPTER_NAME = 64;
+    private static final int PARENT_LEGION = 72;
+    private static final int WORLD = 80;
+    /**
+     * Offsets of references of strings in the record.
+     */
+    private static final int[] STRINGS = {NAME, CHAPTER_NAME, PARENT_LEGION, WORLD};
+
+    /**
+     * The cached values of enumerations.
+     */
+    private static final AstartesCategory[] CATEGORIES = AstartesCategory.values();
+    private static final MeleeWeapon[] MELEE_WEAPONS = MeleeWeapon.values();
+
+    /**
+     * The slabs of records.
+     */
+    private final List<ByteBuffer> slabs = new ArrayList<>();
+    /**
+     * The count of records.
+     */
+    private int size = 0;
+    /**
+     * The storage of strings of records.
+     */
+    private StringArena strings = new StringArena();
+    /**
+     * Time zones of records by their numbers (there are few of them, so they are kept in the heap).
+     */
+    private final List<ZoneId> zones = new ArrayList<>();
+    /**
+     * The map from time zones to their numbers.
+     */
+    private final Map<ZoneId, Integer> zoneNumbers = new HashMap<>();
+
+    /**
+     * Get the count of records.
+     *
+     * @return the count of records.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the flyweight of the record.
+     * The flyweight can be moved to other records by {@link SpaceMarineRecord#moveTo(int)}.
+     *
+     * @param record the number of the record.
+     * @return the flyweight.
+     */
+    public SpaceMarineRecord record(int record) {
+        SpaceMarineRecord flyweight = new SpaceMarineRecord(this);
+        flyweight.moveTo(record);
+        return flyweight;
+    }
+
+    /**
+     * Copy the record to the new space marine.
+     *
+     * @param record the number of the record.
+     * @return the space marine.
+     */
+    public SpaceMarine get(int record) {
+        SpaceMarine spaceMarine = new SpaceMarine();
+        spaceMarine.setId(id(record));
+        spaceMarine.setName(name(record));
+        spaceMarine.setCoordinates(new Coordinates(x(record), y(record)));
+        spaceMarine.setCreationDate(creationDate(record));
+        spaceMarine.setHealth(health(record));
+        spaceMarine.setHeight(height(record));
+        spaceMarine.setCategory(category(record));
+        spaceMarine.setMeleeWeapon(meleeWeapon(record));
+        spaceMarine.setChapter(chapter(record));
+        return spaceMarine;
+    }
+
+    /**
+     * Get the ID of the record.
+     *
+     * @param record the number of the record.
+     * @return the ID.
+     */
+    public int id(int record) {
+        return slab(record).getInt(offset(record) + ID);
+    }
+
+    /**
+     * Get the name of the record.
+     *
+     * @param record the number of the record.
+     * @return the name.
+     */
+    public String name(int record) {
+        return strings.get(slab(record).getLong(offset(record) + NAME));
+    }
+
+    /**
+     * Get the coordinate x of the record.
+     *
+     * @param record the number of the record.
+     * @return the coordinate x.
+     */
+    public long x(int record) {
+        return slab(record).getLong(offset(record) + X);
+    }
+
+    /**
+     * Get the coordinate y of the record.
+     *
+     * @param record the number of the record.
+     * @return the coordinate y.
+     */
+    public long y(int record) {
+        return slab(record).getLong(offset(record) + Y);
+    }
+
+    /**
+     * Get the creation date of the record.
+     *
+     * @param record the number of the record.
+     * @return the creation date.
+     */
+    public ZonedDateTime creationDate(int record) {
+        ByteBuffer slab = slab(record);
+        int offset = offset(record);
+        return ZonedDateTime.ofInstant(Instant.ofEpochSecond(slab.getLong(offset + SECONDS), slab.getInt(offset + NANOS)),
+                zones.get(slab.getInt(offset + ZONE)));
+    }
+
+    /**
+     * Get the health of the record.
+     *
+     * @param record the number of the record.
+     * @return the health.
+     */
+    public long health(int record) {
+        return slab(record).getLong(offset(record) + HEALTH);
+    }
+
+    /**
+     * Get the height of the record.
+     *
+     * @param record the number of the record.
+     * @return the height or null.
+     */
+    public Integer height(int record) {
+        ByteBuffer slab = slab(record);
+        int offset = offset(record);
+        return slab.get(offset + HEIGHT_NULL) != 0 ? null : slab.getInt(offset + HEIGHT);
+    }
+
+    /**
+     * Check that the height of the record is null.
+     *
+     * @param record the number of the record.
+     * @return true if the height is null.
+     */
+    public boolean isHeightNull(int record) {
+        return slab(record).get(offset(record) + HEIGHT_NULL) != 0;
+    }
+
+    /**
+     * Get the height of the record without boxing.
+     *
+     * @param record the number of the record.
+     * @return the height (0 for null height).
+     */
+    public int rawHeight(int record) {
+        return slab(record).getInt(offset(record) + HEIGHT);
+    }
+
+    /**
+     * Get the category of the record.
+     *
+     * @param record the number of the record.
+     * @return the category.
+     */
+    public AstartesCategory category(int record) {
+        return CATEGORIES[slab(record).get(offset(record) + CATEGORY)];
+    }
+
+    /**
+     * Get the melee weapon of the record.
+     *
+     * @param record the number of the record.
+     * @return the melee weapon.
+     */
+    public MeleeWeapon meleeWeapon(int record) {
+        return MELEE_WEAPONS[slab(record).get(offset(record) + MELEE_WEAPON)];
+    }
+
+    /**
+     * Get the chapter of the record.
+     *
+     * @param record the number of the record.
+     * @return the shared chapter.
+     */
+    public Chapter chapter(int record) {
+        ByteBuffer slab = slab(record);
+        int offset = offset(record);
+        return ChapterDictionary.SHARED.chapter(new Chapter(strings.get(slab.getLong(offset + CHAPTER_NAME)),
+                strings.get(slab.getLong(offset + PARENT_LEGION)),
+                slab.getInt(offset + MARINES_COUNT),
+                strings.get(slab.getLong(offset + WORLD))));
+    }
+
+    /**
+     * Append the record of the space marine.
+     *
+     * @param spaceMarine the space marine.
+     * @return the number of the record.
+     */
+    int add(SpaceMarine spaceMarine) {
+        int record = append();
+        ByteBuffer slab = slab(record);
+        int offset = offset(record);
+        slab.putInt(offset + ID, spaceMarine.getId());
+        slab.putLong(offset + X, spaceMarine.getCoordinates().getX());
+        slab.putLong(offset + Y, spaceMarine.getCoordinates().getY());
+        slab.putLong(offset + SECONDS, spaceMarine.getCreationDate().toEpochSecond());
+        slab.putInt(offset + NANOS, spaceMarine.getCreationDate().getNano());
+        slab.putInt(offset + ZONE, zoneNumber(spaceMarine.getCreationDate().getZone()));
+        slab.putLong(offset + HEALTH, spaceMarine.getHealth());
+        slab.put(offset + HEIGHT_NULL, (byte) (spaceMarine.getHeight() == null ? 1 : 0));
+        slab.putInt(offset + HEIGHT, spaceMarine.getHeight() == null ? 0 : spaceMarine.getHeight());
+        slab.put(offset + CATEGORY, (byte) spaceMarine.getCategory().ordinal());
+        slab.put(offset + MELEE_WEAPON, (byte) spaceMarine.getMeleeWeapon().ordinal());
+        slab.putInt(offset + MARINES_COUNT, spaceMarine.getChapter().getMarinesCount());
+        slab.putLong(offset + NAME, strings.put(spaceMarine.getName()));
+        slab.putLong(offset + CHAPTER_NAME, strings.put(spaceMarine.getChapter().getName()));
+        slab.putLong(offset + PARENT_LEGION, strings.put(spaceMarine.getChapter().getParentLegion()));
+        slab.putLong(offset + WORLD, strings.put(spaceMarine.getChapter().getWorld()));
+        return record;
+    }
+
+    /**
+     * Append the copy of the record of other table (strings are copied to the arena of this table).
+     *
+     * @param other the other table.
+     * @param otherRecord the number of the record in the other table.
+     * @return the number of the record.
+     */
+    int add(SpaceMarineRecords other, int otherRecord) {
+        int record = append();
+        ByteBuffer slab = slab(record);
+        int offset = offset(record);
+        ByteBuffer otherSlab = other.slab(otherRecord);
+        int otherOffset = offset(otherRecord);
+        slab.put(offset, otherSlab, otherOffset, RECORD_SIZE);
+        slab.putInt(offset + ZONE, zoneNumber(other.zones.get(otherSlab.getInt(otherOffset + ZONE))));
+        for (int field : STRINGS) {
+            slab.putLong(offset + field, strings.put(other.strings.get(otherSlab.getLong(otherOffset + field))));
+        }
+        return record;
+    }
+
+    /**
+     * Remove the record (the last record is moved to its place).
+     *
+     * @param record the number of the record.
+     */
+    void remove(int record) {
+        ByteBuffer slab = slab(record);
+        int offset = offset(record);
+        for (int field : STRINGS) {
+            strings.free(slab.getLong(offset + field));
+        }
+        int last = --size;
+        if (record != last) {
+            slab.put(offset, slab(last), offset(last), RECORD_SIZE);
+        }
+        // if (two last slabs are empty) than: return the memory of the last one (the other is kept for adding).
+        if (size <= (slabs.size() - 2) * RECORDS_PER_SLAB) {
+            slabs.remove(slabs.size() - 1);
+        }
+        if (strings.needsCompaction()) {
+            compactStrings();
+        }
+    }
+
+    /**
+     * Remove all records and return the memory.
+     */
+    void clear() {
+        slabs.clear();
+        size = 0;
+        strings = new StringArena();
+    }
+
+    /**
+     * Get the count of off-heap bytes of records and strings.
+     *
+     * @return the count of bytes.
+     */
+    public long offHeapBytes() {
+        return (long) slabs.size() * RECORDS_PER_SLAB * RECORD_SIZE + strings.capacityBytes();
+    }
+
+    /**
+     * Get the count of bytes of strings (without garbage).
+     *
+     * @return the count of bytes.
+     */
+    public long stringBytes() {
+        return strings.usedBytes() - strings.garbageBytes();
+    }
+
+    /**
+     * Copy strings of all records to the new arena without garbage.
+     */
+    private void compactStrings() {
+        StringArena old = strings;
+        strings = new StringArena();
+        for (int record = 0; record < size; ++record) {
+            ByteBuffer slab = slab(record);
+            int offset = offset(record);
+            for (int field : STRINGS) {
+                slab.putLong(offset + field, strings.put(old.get(slab.getLong(offset + field))));
+            }
+        }
+    }
+
+    /**
+     * Take the number of the next record (a new slab is allocated if the last one is full).
+     *
+     * @return the number of the record.
+     */
+    private int append() {
+        if (size == slabs.size() * RECORDS_PER_SLAB) {
+            slabs.add(ByteBuffer.allocateDirect(RECORDS_PER_SLAB * RECORD_SIZE));
+        }
+        return size++;
+    }
+
+    /**
+     * Get the number of the time zone (new time zones are added to the table).
+     *
+     * @param zone the time zone.
+     * @return the number of the time zone.
+     */
+    private int zoneNumber(ZoneId zone) {
+        return zoneNumbers.computeIfAbsent(zone, z -> {
+            zones.add(z);
+            return zones.size() - 1;
+        });
+    }
+
+    /**
+     * Get the slab of the record.
+     *
+     * @param record the number of the record.
+     * @return the slab.
+     */
+    private ByteBuffer slab(int record) {
+        return slabs.get(record / RECORDS_PER_SLAB);
+    }
+
+    /**
+     * Get the offset of the record in its slab.
+     *
+     * @param record the number of the record.
+     * @return the offset in bytes.
+     */
+    private static int offset(int record) {
+        return (record % RECORDS_PER_SLAB) * RECORD_SIZE;
+    }
+}
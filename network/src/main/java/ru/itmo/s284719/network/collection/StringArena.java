@@ -0,0 +1,135 @@
+package ru.itmo.s284719.network.collection;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Off-heap storage of strings: strings are appended in UTF-8 with their lengths to pages of direct buffers
+ * and are referenced by longs (the number of the page and the offset in the page).
+ * Freed strings aren't reused, their bytes are counted as garbage until the owner copies live strings
+ * to the new arena. The arena isn't thread-safe.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class StringArena {
+    /**
+     * The reference of the null string.
+     */
+    public static final long NULL = -1;
+    /**
+     * The size of pages (longer strings have own pages).
+     */
+    private static final int PAGE_SIZE = 1 << 20;
+
+    /**
+     * The pages of strings.
+     */
+    private final List<ByteBuffer> pages = new ArrayList<>();
+    /**
+     * The page for appending of strings.
+     */
+    private ByteBuffer page;
+    /**
+     * The count of bytes of appended strings.
+     */
+    private long usedBytes = 0;
+    /**
+     * The count of bytes of freed strings.
+     */
+    private long garbageBytes = 0;
+    /**
+     * The count of bytes of all pages.
+     */
+    private long capacityBytes = 0;
+
+    /**
+     * Append the string.
+     *
+     * @param string the string.
+     * @return the reference of the string ({@link #NULL} for null).
+     */
+    public long put(String string) {
+        if (string == null) {
+            return NULL;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        int size = Integer.BYTES + bytes.length;
+        // if (the string doesn't fit into the page) than: start the new page.
+        if (page == null || page.remaining() < size) {
+            page = ByteBuffer.allocateDirect(Math.max(PAGE_SIZE, size));
+            pages.add(page);
+            capacityBytes += page.capacity();
+        }
+        long reference = ((long) (pages.size() - 1) << 32) | page.position();
+        page.putInt(bytes.length).put(bytes);
+        usedBytes += size;
+        return reference;
+    }
+
+    /**
+     * Get the string.
+     *
+     * @param reference the reference of the string.
+     * @return the string (null for {@link #NULL}).
+     */
+    public String get(long reference) {
+        if (reference == NULL) {
+            return null;
+        }
+        ByteBuffer stringPage = pages.get((int) (reference >>> 32));
+        int offset = (int) reference;
+        byte[] bytes = new byte[stringPage.getInt(offset)];
+        stringPage.get(offset + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Mark the string as garbage.
+     *
+     * @param reference the reference of the string.
+     */
+    public void free(long reference) {
+        if (reference != NULL) {
+            garbageBytes += Integer.BYTES + pages.get((int) (reference >>> 32)).getInt((int) reference);
+        }
+    }
+
+    /**
+     * Check that the most of bytes are garbage, so live strings should be copied to the new arena.
+     *
+     * @return true if the arena should be compacted.
+     */
+    public boolean needsCompaction() {
+        return garbageBytes > PAGE_SIZE && garbageBytes > usedBytes / 2;
+    }
+
+    /**
+     * Get the count of bytes of appended strings (with garbage).
+     *
+     * @return the count of bytes.
+     */
+    public long usedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Get the count of bytes of freed strings.
+     *
+     * @return the count of bytes.
+     */
+    public long garbageBytes() {
+        return garbageBytes;
+    }
+
+    /**
+     * Get the count of bytes of all pages.
+     *
+     * @return the count of bytes.
+     */
+    public long capacityBytes() {
+        return capacityBytes;
+    }
+}
@@ -0,0 +1,34 @@
+package ru.itmo.s284719.network.commands;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+public class Batch implements Command, Serializable {
+    public final ArrayList<Command> commands;
+    public final boolean atomic;
+
+    public Batch(ArrayList<Command> commands, boolean atomic) {
+        this.commands = commands;
+        this.atomic = atomic;
+    }
+
+    @Override
+    public String getName() {
+        return "batch";
+    }
+
+    @Override
+    public String getDesc() {
+        return "исполнить список комманд за один запрос и вернуть список их результатов";
+    }
+
+    @Override
+    public String getArgs() {
+        return "{commands}";
+    }
+
+    @Override
+    public int getNumbArgs() {
+        return 1;
+    }
+}
@@ -0,0 +1,16 @@
+package ru.itmo.s284719.network.commands;
+
+import java.io.Serializable;
+
+public class CategoryStats implements Command, Serializable {
+
+    @Override
+    public String getName() {
+        return "category_stats";
+    }
+
+    @Override
+    public String getDesc() {
+        return "вывести количество элементов коллекции по каждому значению поля category";
+    }
+}
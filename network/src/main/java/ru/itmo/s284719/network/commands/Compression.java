@@ -0,0 +1,31 @@
+package ru.itmo.s284719.network.commands;
+
+import java.io.Serializable;
+
+public class Compression implements Command, Serializable {
+    public boolean enabled;
+
+    public Compression(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public String getName() {
+        return "compression";
+    }
+
+    @Override
+    public String getDesc() {
+        return "включить или выключить сжатие больших ответов для соединения";
+    }
+
+    @Override
+    public String getArgs() {
+        return "enabled";
+    }
+
+    @Override
+    public int getNumbArgs() {
+        return 1;
+    }
+}
@@ -0,0 +1,32 @@
+package ru.itmo.s284719.network.commands;
+
+import java.io.Serializable;
+
+public class Query implements Command, Serializable {
+    public String text;
+
+    public Query(String text) {
+        this.text = text;
+    }
+
+    @Override
+    public String getName() {
+        return "query";
+    }
+
+    @Override
+    public String getDesc() {
+        return "выполнить запрос к коллекции: count, sum|avg|min|max поле " +
+                "или select поля с условиями where поле оператор значение [and ...] [group by поле]";
+    }
+
+    @Override
+    public String getArgs() {
+        return "query";
+    }
+
+    @Override
+    public int getNumbArgs() {
+        return 1;
+    }
+}
@@ -0,0 +1,38 @@
+package ru.itmo.s284719.network.commands;
+
+import java.io.Serializable;
+
+public class ShowPage implements Command, Serializable {
+    public int offset;
+    public int limit;
+    public String top;
+    public String cursor;
+
+    public ShowPage(int offset, int limit, String top, String cursor) {
+        this.offset = offset;
+        this.limit = limit;
+        this.top = top;
+        this.cursor = cursor;
+    }
+
+    @Override
+    public String getName() {
+        return "show_page";
+    }
+
+    @Override
+    public String getDesc() {
+        return "вывести страницу элементов коллекции: show offset limit, " +
+                "show top k by поле или show next курсор";
+    }
+
+    @Override
+    public String getArgs() {
+        return "offset limit | top k by field | next cursor";
+    }
+
+    @Override
+    public int getNumbArgs() {
+        return 2;
+    }
+}
@@ -0,0 +1,280 @@
+package ru.itmo.s284719.server;
+
+import ru.itmo.s284719.network.*;
+import ru.itmo.s284719.network.commands.Compression;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * State of the client's connection of the engine "async".
+ * The connection is driven by completion handlers run by threads of the channel's group:
+ * the completed reading decodes frames and runs commands, the completed writing writes the next frame.
+ * Only one reading and one writing are pending at a time, so commands of the client are run in order.
+ * The connection doesn't read new commands while its answers aren't written.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class AsyncSession {
+    /**
+     * The client's channel.
+     */
+    private final AsynchronousSocketChannel channel;
+    /**
+     * The function running the client's request and returning the stream of answers.
+     */
+    private final Function<Request, Iterator<Response>> dispatcher;
+    /**
+     * The pool of buffers.
+     */
+    private final BufferPool pool;
+    /**
+     * The buffer for received frames.
+     */
+    private final FrameReader reader;
+    /**
+     * The encoder of sent frames and the decoder of received frames.
+     */
+    private final FrameCodec frameCodec;
+    /**
+     * The lock of the session's state (handlers of reading and writing can be run at the same time).
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+    /**
+     * The queue of encoded frames waiting for writing (buffers are from the pool).
+     */
+    private final ArrayDeque<ByteBuffer> outbound = new ArrayDeque<>();
+    /**
+     * The count of not written bytes in the outbound queue.
+     */
+    private int outboundBytes = 0;
+    /**
+     * The queue of streams of answers which are encoded when the outbound queue is short.
+     */
+    private final ArrayDeque<Iterator<?>> streams = new ArrayDeque<>();
+    /**
+     * The field with information about the pending reading.
+     */
+    private boolean reading = false;
+    /**
+     * The field with information about the pending writing.
+     */
+    private boolean writing = false;
+    /**
+     * The field with information about the closed connection.
+     */
+    private boolean closed = false;
+    /**
+     * The field with information about buffers returned to the pool.
+     */
+    private boolean released = false;
+
+    /**
+     * Handler of the completed reading: run all received commands and read again.
+     */
+    private final CompletionHandler<Integer, Void> readHandler = new CompletionHandler<Integer, Void>() {
+        @Override
+        public void completed(Integer count, Void attachment) {
+            lock.lock();
+            try {
+                reading = false;
+                // if (the client is disconnected) than: close the connection.
+                if (closed || count == -1) {
+                    close();
+                    return;
+                }
+                ByteBuffer payload;
+                while ((payload = reader.nextFrame()) != null) {
+                    Request request = (Request) frameCodec.decode(payload, reader.isCompressed());
+                    // if (the client negotiates the compression) than: set it for the connection.
+                    if (request.command instanceof Compression) {
+                        frameCodec.setCompression(((Compression) request.command).enabled);
+                        send(Collections.singletonList(new Response(request.id, Boolean.TRUE)).iterator());
+                        continue;
+                    }
+                    send(dispatcher.apply(request));
+                }
+                // read the next commands if all answers are written (else the writing will start the reading).
+                // the writing can be completed in this thread and start the reading already.
+                if (!writing && !reading) {
+                    read();
+                }
+            } catch (Throwable e) {
+                // if (the processing is failed) than: close the connection like in failed().
+                close();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void failed(Throwable e, Void attachment) {
+            lock.lock();
+            try {
+                reading = false;
+                close();
+            } finally {
+                lock.unlock();
+            }
+        }
+    };
+
+    /**
+     * Handler of the completed writing: write the rest of the frame or the next frames.
+     */
+    private final CompletionHandler<Integer, Void> writeHandler = new CompletionHandler<Integer, Void>() {
+        @Override
+        public void completed(Integer count, Void attachment) {
+            lock.lock();
+            try {
+                writing = false;
+                if (closed) {
+                    close();
+                    return;
+                }
+                outboundBytes -= count;
+                if (!outbound.peek().hasRemaining()) {
+                    pool.release(outbound.poll());
+                }
+                write();
+                // if (all answers are written) than: read the next commands.
+                if (!writing && !reading) {
+                    read();
+                }
+            } catch (Throwable e) {
+                // if (the processing is failed) than: close the connection like in failed().
+                close();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void failed(Throwable e, Void attachment) {
+            lock.lock();
+            try {
+                writing = false;
+                close();
+            } finally {
+                lock.unlock();
+            }
+        }
+    };
+
+    /**
+     * Constructor with the shared pool of buffers.
+     *
+     * @param channel the client's channel.
+     * @param dispatcher the function running the client's request and returning the stream of answers.
+     */
+    public AsyncSession(AsynchronousSocketChannel channel, Function<Request, Iterator<Response>> dispatcher) {
+        this.channel = channel;
+        this.dispatcher = dispatcher;
+        this.pool = BufferPool.SHARED;
+        this.reader = new FrameReader(pool);
+        this.frameCodec = new FrameCodec(pool);
+        // frames are written by whole buffers, so the Nagle's algorithm only delays answers.
+        try {
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        } catch (IOException | UnsupportedOperationException e) {
+            // the option isn't important for the work of the connection.
+        }
+    }
+
+    /**
+     * Start reading of the client's commands.
+     */
+    public void start() {
+        lock.lock();
+        try {
+            read();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Start the reading (the function is called with the lock).
+     */
+    private void read() {
+        reading = true;
+        channel.read(reader.readBuffer(), null, readHandler);
+    }
+
+    /**
+     * Add the stream of answers to the outbound queue and start the writing if it isn't pending
+     * (the function is called with the lock).
+     *
+     * @param answers the stream of answers.
+     */
+    private void send(Iterator<?> answers) throws IOException {
+        streams.add(answers);
+        if (!writing) {
+            write();
+        }
+    }
+
+    /**
+     * Encode answers of streams while the outbound queue is short and start writing of its head
+     * (the function is called with the lock).
+     */
+    private void write() throws IOException {
+        while (outboundBytes < ObjectSocketChannel.OUTBOUND_LIMIT && !streams.isEmpty()) {
+            Iterator<?> stream = streams.peek();
+            if (!stream.hasNext()) {
+                streams.poll();
+                continue;
+            }
+            ByteBuffer frame = frameCodec.encode(stream.next());
+            try {
+                ByteBuffer copy = pool.acquire(frame.remaining());
+                outboundBytes += frame.remaining();
+                copy.put(frame).flip();
+                outbound.add(copy);
+            } finally {
+                frameCodec.reset();
+            }
+        }
+        if (!outbound.isEmpty()) {
+            writing = true;
+            channel.write(outbound.peek(), null, writeHandler);
+        }
+    }
+
+    /**
+     * Close the client's channel. Buffers are returned to the pool when pending operations are completed
+     * (the function is called with the lock).
+     */
+    private void close() {
+        if (!closed) {
+            closed = true;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // for logging.
+                e.printStackTrace();
+            }
+        }
+        // if (the reading or the writing still uses buffers) than: release them in its handler.
+        if (reading || writing || released) {
+            return;
+        }
+        released = true;
+        reader.release();
+        frameCodec.close();
+        for (ByteBuffer buffer : outbound) {
+            pool.release(buffer);
+        }
+        outbound.clear();
+        streams.clear();
+    }
+}
@@ -0,0 +1,34 @@
+package ru.itmo.s284719.server;
+
+/**
+ * Transport engines of the server.
+ * The engine is chosen by the second argument of the server's program.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public enum Engine {
+    /**
+     * Event loops of selector's threads with the pool of workers.
+     */
+    NIO,
+    /**
+     * Blocking channels, every client is served by its own virtual thread.
+     */
+    VIRTUAL,
+    /**
+     * Asynchronous channels with completion handlers run by the pool of the channels' group.
+     */
+    ASYNC;
+
+    /**
+     * Get the engine by the name in any case.
+     *
+     * @param name the name of the engine.
+     * @return the engine.
+     * @throws IllegalArgumentException if the engine isn't found.
+     */
+    public static Engine forName(String name) {
+        return valueOf(name.trim().toUpperCase());
+    }
+}
@@ -0,0 +1,153 @@
+package ru.itmo.s284719.server;
+
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Event loop of one selector's thread.
+ * The thread waits in {@link Selector#select()} and passes every selected key to the handler.
+ * Other threads register channels and pass tasks (e.g. writing of answers) through the queue,
+ * the selector is woken up for that.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class Reactor implements Runnable {
+    /**
+     * Handler of selected keys.
+     */
+    public interface Handler {
+        /**
+         * Process the selected key (the key is canceled and its channel is closed if the handler throws anything).
+         *
+         * @param key the selected key.
+         */
+        void handle(SelectionKey key) throws Exception;
+    }
+
+    /**
+     * The selector of the reactor.
+     */
+    private final Selector selector;
+    /**
+     * The handler of selected keys.
+     */
+    private final Handler handler;
+    /**
+     * The tasks waiting for running in the reactor's thread.
+     */
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Constructor with all parameters.
+     *
+     * @param handler the handler of selected keys.
+     */
+    public Reactor(Handler handler) throws IOException {
+        this.selector = Selector.open();
+        this.handler = handler;
+    }
+
+    /**
+     * Register the channel to the reactor's selector for operation read.
+     * The function can be called from any thread.
+     *
+     * @param channel the channel.
+     * @param attachment the object attached to the channel's key.
+     */
+    public void register(SelectableChannel channel, Object attachment) throws IOException {
+        channel.configureBlocking(false);
+        execute(() -> {
+            try {
+                channel.register(selector, SelectionKey.OP_READ, attachment);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Run the task in the reactor's thread.
+     * The function can be called from any thread.
+     *
+     * @param task the task.
+     */
+    public void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Get the key of the channel registered to the reactor's selector.
+     *
+     * @param channel the channel.
+     * @return the key or null if the channel isn't registered.
+     */
+    public SelectionKey keyFor(SelectableChannel channel) {
+        return channel.keyFor(selector);
+    }
+
+    /**
+     * Work of the reactor's thread.
+     */
+    @Override
+    public void run() {
+        do {
+            try {
+                // wait for selected keys or new tasks.
+                selector.select();
+                runTasks();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        handler.handle(key);
+                    } catch (Throwable e) {
+                        // if (the key's processing is failed) than: close only its channel, other keys are served.
+                        close(key);
+                    }
+                }
+            } catch (IOException e) {
+                // for logging.
+                // warning: the code should not start.
+                e.printStackTrace();
+            }
+        } while (selector.isOpen());
+    }
+
+    /**
+     * Cancel the key and close its channel.
+     *
+     * @param key the failed key.
+     */
+    private static void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            // for logging.
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Run the tasks from the queue.
+     */
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
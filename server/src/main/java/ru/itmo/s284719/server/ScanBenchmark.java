@@ -0,0 +1,117 @@
+package ru.itmo.s284719.server;
+
+import ru.itmo.s284719.network.*;
+import ru.itmo.s284719.network.collection.SpaceMarineCollection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.LongSupplier;
+
+/**
+ * Benchmark of scans of the collection: the scan of space marines' objects
+ * against the scan of primitive columns of the collection and the parallel fork-join scan of columns.
+ * Both scans compute the average height and the count of space marines with the melee weapon
+ * greater than {@link MeleeWeapon#CHAIN_SWORD}.
+ * Arguments: count of space marines (1000000 by default), count of measured rounds (20 by default).
+ * The storage of the collection is chosen by the system's property "storage" ("heap" by default).
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class ScanBenchmark {
+    /**
+     * The count of rounds before measuring (for the JIT compiler).
+     */
+    private static final int WARMUP_ROUNDS = 10;
+
+    /**
+     * Main function of the benchmark.
+     *
+     * @param args count of space marines, count of measured rounds.
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+        // fill the collection by random space marines (every tenth of them hasn't the height).
+        Random random = new Random(284719);
+        AstartesCategory[] categories = AstartesCategory.values();
+        MeleeWeapon[] meleeWeapons = MeleeWeapon.values();
+        List<SpaceMarine> spaceMarines = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            spaceMarines.add(new SpaceMarine("marine" + i,
+                    new Coordinates(random.nextInt(658), (long) random.nextInt(1000)),
+                    1L + random.nextInt(1000),
+                    random.nextInt(10) == 0 ? null : random.nextInt(300),
+                    categories[random.nextInt(categories.length)],
+                    meleeWeapons[random.nextInt(meleeWeapons.length)],
+                    new Chapter("chapter" + random.nextInt(100), "legion", 1 + random.nextInt(1000), "world")));
+        }
+        SpaceMarineCollection collection = SpaceMarineCollection.forStorage(
+                System.getProperty(SpaceMarineCollection.STORAGE_PROPERTY, "heap"), spaceMarines);
+        System.out.println("Space marines: " + collection.size() + ". " + collection + ".");
+
+        int weapon = MeleeWeapon.CHAIN_SWORD.ordinal();
+        // the scan of objects: references to space marines, boxed heights and enumerations
+        // (the array of references is taken once, so only the scan is measured).
+        SpaceMarine[] snapshot = collection.toArray();
+        LongSupplier objects = () -> {
+            long sum = 0;
+            long counted = 0;
+            long greater = 0;
+            for (SpaceMarine spaceMarine : snapshot) {
+                Integer height = spaceMarine.getHeight();
+                if (height != null) {
+                    sum += height;
+                    ++counted;
+                }
+                if (spaceMarine.getMeleeWeapon().ordinal() > weapon) {
+                    ++greater;
+                }
+            }
+            return sum / Math.max(1, counted) + greater;
+        };
+        // the scan of columns: consecutive primitive arrays.
+        LongSupplier columns = () -> collection.scan(c -> c.sumOfHeights(0, c.size()) / Math.max(1, c.countOfHeights(0, c.size()))
+                + c.countGreaterThanMeleeWeapon(weapon, 0, c.size()));
+
+        // the parallel scan of columns: ranges of rows are scanned by fork-join tasks and their sums are merged.
+        LongSupplier parallel = () -> {
+            long[] totals = collection.parallelScan((c, from, to) -> new long[] {c.sumOfHeights(from, to),
+                            c.countOfHeights(from, to), c.countGreaterThanMeleeWeapon(weapon, from, to)},
+                    (first, second) -> new long[] {first[0] + second[0], first[1] + second[1], first[2] + second[2]});
+            return totals[0] / Math.max(1, totals[1]) + totals[2];
+        };
+
+        double objectsTime = measure("Scan of objects", objects, rounds);
+        double columnsTime = measure("Scan of columns", columns, rounds);
+        double parallelTime = measure("Parallel scan of columns", parallel, rounds);
+        System.out.printf("Speedup: %.1f times.%n", objectsTime / columnsTime);
+        System.out.printf("Parallel speedup: %.1f times (%d processors).%n", columnsTime / parallelTime,
+                Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Run the scan in warmup rounds and measured rounds and print the average time.
+     *
+     * @param name the name of the scan.
+     * @param scan the scan.
+     * @param rounds the count of measured rounds.
+     * @return the average time of the scan in milliseconds.
+     */
+    private static double measure(String name, LongSupplier scan, int rounds) {
+        long result = 0;
+        for (int i = 0; i < WARMUP_ROUNDS; ++i) {
+            result += scan.getAsLong();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; ++i) {
+            result += scan.getAsLong();
+        }
+        double time = (System.nanoTime() - start) / 1e6 / rounds;
+        // the result is printed, so the JIT compiler can't remove the scan.
+        System.out.printf("%s: %.3f ms (result %d).%n", name, time, result / (WARMUP_ROUNDS + rounds));
+        return time;
+    }
+}
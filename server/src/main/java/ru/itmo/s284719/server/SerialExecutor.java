@@ -0,0 +1,72 @@
+package ru.itmo.s284719.server;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+
+/**
+ * Executor which runs tasks one by one in the order of their submitting on threads of other executor.
+ * It keeps the order of commands of one client while commands of different clients are run in parallel.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class SerialExecutor implements Executor {
+    /**
+     * The tasks waiting for the previous task.
+     */
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    /**
+     * The executor with threads for tasks.
+     */
+    private final Executor executor;
+    /**
+     * The running task (null if there isn't that).
+     */
+    private Runnable active;
+
+    /**
+     * Constructor with all parameters.
+     *
+     * @param executor the executor with threads for tasks.
+     */
+    public SerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Run the task after all previous tasks.
+     *
+     * @param task the task.
+     */
+    @Override
+    public void execute(Runnable task) {
+        synchronized (this) {
+            tasks.add(() -> {
+                try {
+                    task.run();
+                } finally {
+                    scheduleNext();
+                }
+            });
+            // if (the previous task is running) than: the task is run after that.
+            if (active != null) {
+                return;
+            }
+        }
+        scheduleNext();
+    }
+
+    /**
+     * Give the next task to the executor with threads (out of the lock, the executor can run the task at once).
+     */
+    private void scheduleNext() {
+        Runnable next;
+        synchronized (this) {
+            next = active = tasks.poll();
+        }
+        if (next != null) {
+            executor.execute(next);
+        }
+    }
+}
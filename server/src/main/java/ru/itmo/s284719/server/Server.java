@@ -30,11 +30,13 @@ public class Server {
     /**
      * Main function for server.
      *
-     * @param args the file's name with collection in format JSON.
+     * @param args the file's name with collection in format JSON and the name of the engine ("nio", "virtual" or "async").
      */
     public static void main(String[] args) {
         // create GSON's parser for format JSON.
-        final Gson gson = Converters.registerZoneId(new GsonBuilder()).setPrettyPrinting().create();
+        // equal chapters of loaded space marines are shared by the dictionary.
+        final Gson gson = Converters.registerChapter(Converters.registerZoneId(new GsonBuilder()))
+                .setPrettyPrinting().create();
 
         // initialization system's streams of server with auto-flush.
         PrintWriter err = new PrintWriter(
@@ -150,7 +152,18 @@ public class Server {
             return;
         }
 
+        // choose the server's engine (the default engine is "nio").
+        Engine engine = Engine.NIO;
+        if (args.length > 1) {
+            try {
+                engine = Engine.forName(args[1]);
+            } catch (IllegalArgumentException e) {
+                // if (the engine isn't found) than: print about that.
+                err.println("Incorrect engine: " + args[1] + ". Server's default engine: " + Engine.NIO + ".");
+            }
+        }
+
         // create server.
-        new ServerConsole(port, queue);
+        new ServerConsole(port, queue, engine);
     }
 }
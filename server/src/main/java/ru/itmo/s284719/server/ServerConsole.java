@@ -9,7 +9,6 @@ import java.net.*;
 import java.nio.channels.*;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Server's class for commands.
@@ -32,19 +31,48 @@ public class ServerConsole extends ModifiedCMD {
      */
     private ServerSocketChannel serverChannel;
     /**
-     * The selector for registering server's channel for operation accept.
+     * The server's asynchronous channel (only for the engine "async").
      */
-    private Selector serverSelector;
+    private AsynchronousServerSocketChannel asyncServerChannel;
     /**
-     * The selector for registering client's channel for operation read.
+     * The count of threads of the asynchronous channels' group running completion handlers.
+     * It's chosen by the system's property "async.threads" (the count of processors by default).
      */
-    private Selector clientSelector;
+    public static final int ASYNC_THREADS = Integer.getInteger("async.threads", Runtime.getRuntime().availableProcessors());
     /**
-     * The list with client's channels.
+     * The server's datagram channel for read-only queries.
      */
-    private List<SocketChannel> listChannels = new LinkedList<>();
+    private DatagramObjectChannel datagramChannel;
     /**
-     * The thread for processing connections.
+     * The count of selector's threads for client's channels.
+     * It's chosen by the system's property "reactors" (the count of processors by default).
+     */
+    public static final int REACTORS = Integer.getInteger("reactors", Runtime.getRuntime().availableProcessors());
+    /**
+     * The event loops of selector's threads for client's channels.
+     */
+    private Reactor[] reactors;
+    /**
+     * The count of threads executing clients' commands.
+     * It's chosen by the system's property "workers" (the count of processors by default).
+     */
+    public static final int WORKERS = Integer.getInteger("workers", Runtime.getRuntime().availableProcessors());
+    /**
+     * The capacity of the queue of clients' commands waiting for workers (connections aren't read when it's reached).
+     * It's chosen by the system's property "workers.queue" (10000 by default).
+     */
+    public static final int WORKERS_QUEUE = Integer.getInteger("workers.queue", 10000);
+    /**
+     * The capacity of the queue of connections waiting for accepting.
+     * It's chosen by the system's property "backlog" (4096 by default).
+     */
+    public static final int BACKLOG = Integer.getInteger("backlog", 4096);
+    /**
+     * The pool of threads executing clients' commands.
+     */
+    private final WorkerPool workers = new WorkerPool(Math.max(1, WORKERS), WORKERS_QUEUE);
+    /**
+     * The thread for accepting connections.
      */
     private Thread threadConnections;
     /**
@@ -57,15 +85,16 @@ public class ServerConsole extends ModifiedCMD {
      * Constructor without parameters (with default parameters).
      */
     public ServerConsole() {
-        this(Server.DEFAULT_PORT, new PriorityQueue<SpaceMarine>());
+        this(Server.DEFAULT_PORT, new PriorityQueue<SpaceMarine>(), Engine.NIO);
     }
     /**
      * Constructor with all parameters.
      *
      * @param port the server's port.
      * @param queue the queue for the server.
+     * @param engine the transport engine of the server.
      */
-    public ServerConsole(int port, PriorityQueue<SpaceMarine> queue) {
+    public ServerConsole(int port, PriorityQueue<SpaceMarine> queue, Engine engine) {
         // create ServerConsole with the SpaceMarine's queue and default functions.
         super(queue);
 
@@ -74,92 +103,51 @@ public class ServerConsole extends ModifiedCMD {
             IP = InetAddress.getByName("localhost").getHostAddress();
             PORT = port;
 
-            // open server's and client's selectors.
-            serverSelector = Selector.open();
-            clientSelector = Selector.open();
+            // open the event loops for client's channels (other engines use one loop for datagrams).
+            reactors = new Reactor[engine == Engine.NIO ? Math.max(1, REACTORS) : 1];
+            for (int i = 0; i < reactors.length; ++i) {
+                reactors[i] = new Reactor(this::handleKey);
+            }
 
-            // open server's channel.
-            serverChannel = ServerSocketChannel.open();
-            // initialization not-blocking server's channel and register the channel to the server's selector
-            // for operation accept of server's channel.
-            serverChannel.bind(new InetSocketAddress(PORT)).configureBlocking(false).register(serverSelector, SelectionKey.OP_ACCEPT);
+            // if (the engine is "async") than: open the server's channel in the group with own threads.
+            if (engine == Engine.ASYNC) {
+                AsynchronousChannelGroup group = AsynchronousChannelGroup.withFixedThreadPool(
+                        Math.max(1, ASYNC_THREADS), Thread.ofPlatform().name("async-", 0).daemon().factory());
+                asyncServerChannel = AsynchronousServerSocketChannel.open(group);
+                asyncServerChannel.bind(new InetSocketAddress(PORT), BACKLOG);
+            } else {
+                // else: open blocking server's channel (the accepting thread waits in that).
+                serverChannel = ServerSocketChannel.open();
+                serverChannel.bind(new InetSocketAddress(PORT), BACKLOG);
+            }
+            // open datagram's channel with the same port and register that to the first event loop for operation read.
+            datagramChannel = new DatagramObjectChannel(DatagramChannel.open());
+            datagramChannel.channel().bind(new InetSocketAddress(PORT));
+            reactors[0].register(datagramChannel.channel(), datagramChannel);
 
             // print IP and port about the created server.
-            out.println("Server with IP: " + IP + ", Port: " + PORT + " is working...");
+            out.println("Server with IP: " + IP + ", Port: " + PORT + ", Engine: " + engine + " is working...");
 
             // was print about working the server.
             wasWorking = true;
 
-            // initialization new thread for processing of client-server connections.
-            threadConnections = new Thread(() -> {
-                do {
-                    try {
-                        // select count new connections now.
-                        int serverSelect = serverSelector.selectNow();
-                        // if (the count more than zero) than: received new connections.
-                        if (serverSelect != 0) {
-                            Iterator<SelectionKey> keysServer = serverSelector.selectedKeys().iterator();
-                            while (keysServer.hasNext()) {
-                                try {
-                                    // received server-client channel and register that to clientSelector for operation read
-                                    SocketChannel channel = ((ServerSocketChannel) keysServer.next().channel()).accept();
-                                    channel.configureBlocking(false).register(clientSelector, SelectionKey.OP_READ);
-                                    // add the channel to listChannels with client's channels.
-                                    listChannels.add(channel);
-//                                // for logging.
-//                                // print information about the new connection.
-//                                out.println("Client with IP: " + channel.socket().getInetAddress().getHostAddress()
-//                                        + ", PORT: " + channel.socket().getPort()
-//                                        + " is connected");
-                                } catch (Exception e) {
-                                    e.printStackTrace();
-                                } finally {
-                                    keysServer.remove();
-                                }
-                            }
-                        }
-
-                        // select count new client's commands.
-                        int clientSelect = clientSelector.selectNow();
-                        // if (the count more than zero) than: execute the commands.
-                        if (clientSelect != 0) {
-                            Iterator<SelectionKey> keysClient = clientSelector.selectedKeys().iterator();
-                            while (keysClient.hasNext()) {
-                                // get client's channel.
-                                SocketChannel channel = (SocketChannel) keysClient.next().channel();
-                                try {
-                                    // execute client's command.
-                                    runClientCommand(channel);
-                                } catch (Exception e) {
-                                    channel.close();
-                                } finally {
-                                    keysClient.remove();
-                                }
-                            }
-                        }
-                    } catch (IOException e) {
-                        // for logging.
-                        // warning: the code should not start.
-                        e.printStackTrace();
-                    }
-
-                    // remove closed client's channels from client's selector and list with channels.
-                    Iterator<SocketChannel> channels = listChannels.iterator();
-                    while (channels.hasNext()) {
-                        SocketChannel channel = channels.next();
-                        if (!channel.isConnected()) {
-                            // for logging.
-//                                out.println("Client with IP: " + channel.socket().getInetAddress().getHostAddress()
-//                                        + ", PORT: " + channel.socket().getPort()
-//                                        + " is disconnected");
-                            clientSelector.keys().remove(channel.keyFor(clientSelector));
-                            channels.remove();
-                        }
-                    }
-                } while (true);
-            });
-            // start the thread for processing connections.
-            threadConnections.start();
+            // start the threads of event loops.
+            for (int i = 0; i < reactors.length; ++i) {
+                Thread thread = new Thread(reactors[i], "reactor-" + i);
+                thread.setDaemon(true);
+                thread.start();
+            }
+            // if (the engine is "async") than: accept connections by the completion handler.
+            if (engine == Engine.ASYNC) {
+                acceptAsync();
+            } else {
+                // else: initialization new thread for accepting of client-server connections.
+                threadConnections = new Thread(engine == Engine.NIO ? this::acceptToReactors : this::acceptToVirtualThreads,
+                        "acceptor");
+                threadConnections.setDaemon(true);
+                // start the thread for accepting connections.
+                threadConnections.start();
+            }
 
             // work server's console.
             do {
@@ -178,137 +166,275 @@ public class ServerConsole extends ModifiedCMD {
     }
 
     /**
-     * Run client's command.
+     * Accept connections and give them to event loops by turns.
+     * The function is run by the accepting thread of the engine "nio".
+     */
+    private void acceptToReactors() {
+        int next = 0;
+        do {
+            try {
+                // wait for the new connection and give that to the next event loop.
+                SocketChannel channel = serverChannel.accept();
+                reactors[next].register(channel, new Session(new ObjectSocketChannel(channel), reactors[next], workers));
+                next = (next + 1) % reactors.length;
+//                // for logging.
+//                // print information about the new connection.
+//                out.println("Client with IP: " + channel.socket().getInetAddress().getHostAddress()
+//                        + ", PORT: " + channel.socket().getPort()
+//                        + " is connected");
+            } catch (IOException e) {
+                // for logging.
+                // warning: the code should not start.
+                e.printStackTrace();
+            }
+        } while (serverChannel.isOpen());
+    }
+
+    /**
+     * Accept connections and serve every client by its own virtual thread.
+     * The function is run by the accepting thread of the engine "virtual".
+     */
+    private void acceptToVirtualThreads() {
+        Thread.Builder builder = Thread.ofVirtual().name("client-", 0);
+        do {
+            try {
+                // wait for the new connection and start the virtual thread for that.
+                SocketChannel channel = serverChannel.accept();
+                builder.start(() -> serveBlocking(new ObjectSocketChannel(channel)));
+            } catch (IOException e) {
+                // for logging.
+                // warning: the code should not start.
+                e.printStackTrace();
+            }
+        } while (serverChannel.isOpen());
+    }
+
+    /**
+     * Accept the next connection of the engine "async".
+     * The completion handler starts the client's session and accepts the next connection again.
+     */
+    private void acceptAsync() {
+        asyncServerChannel.accept(null, new CompletionHandler<AsynchronousSocketChannel, Void>() {
+            @Override
+            public void completed(AsynchronousSocketChannel channel, Void attachment) {
+                acceptAsync();
+                new AsyncSession(channel, ServerConsole.this::answers).start();
+            }
+
+            @Override
+            public void failed(Throwable e, Void attachment) {
+                // if (the server's channel is open) than: print the exception and accept again.
+                if (asyncServerChannel.isOpen()) {
+                    // for logging.
+                    e.printStackTrace();
+                    acceptAsync();
+                }
+            }
+        });
+    }
+
+    /**
+     * Serve the client through the blocking channel: receive requests and send answers one by one.
+     * The function is run by the client's virtual thread until the client is disconnected.
      *
-     * @param channel the client's channel.
+     * @param channel the client's connection.
      */
-    private void runClientCommand(SocketChannel channel) throws IOException, ClassNotFoundException {
-        Object object = ObjectSocketChannel.getObject(channel);
-        Command command = (Command) object;
+    private void serveBlocking(ObjectSocketChannel channel) {
+        try (channel) {
+            do {
+                Request request = (Request) channel.getObject();
+                // if (the client negotiates the compression) than: set it for the connection.
+                if (request.command instanceof Compression) {
+                    channel.setCompression(((Compression) request.command).enabled);
+                    channel.sendObject(new Response(request.id, Boolean.TRUE));
+                    continue;
+                }
+                Iterator<Response> answers = answers(request);
+                while (answers.hasNext()) {
+                    channel.sendObject(answers.next());
+                }
+            } while (true);
+        } catch (Exception e) {
+            // the client is disconnected or its command is failed.
+        }
+    }
+
+    /**
+     * Process the selected key of the client's channel or the datagram's channel.
+     * The function is called by threads of event loops,
+     * received commands are given to the pool of workers.
+     *
+     * @param key the selected key.
+     */
+    private void handleKey(SelectionKey key) {
+        // if (the key is the datagram's channel) than: answer all received queries.
+        if (key.attachment() instanceof DatagramObjectChannel) {
+            try {
+                runDatagramQueries(key);
+            } catch (IOException e) {
+                // for logging.
+                e.printStackTrace();
+            }
+            return;
+        }
+        Session session = (Session) key.attachment();
+        ObjectSocketChannel channel = session.channel;
+        try {
+            // write the waiting answers while the client's socket accepts them.
+            if (key.isWritable()) {
+                channel.flush();
+            }
+            // read the client's bytes and give all received commands to workers (if they aren't saturated).
+            if (key.isReadable() && !workers.isSaturated()) {
+                if (channel.read() == -1) {
+                    throw new EOFException("The client is disconnected.");
+                }
+                while (channel.hasObject()) {
+                    Request request = (Request) channel.nextObject();
+                    // if (the client negotiates the compression) than: set it for the connection.
+                    if (request.command instanceof Compression) {
+                        channel.setCompression(((Compression) request.command).enabled);
+                        channel.queueObject(new Response(request.id, Boolean.TRUE));
+                        continue;
+                    }
+                    session.executor.execute(() -> runRequest(session, request));
+                }
+            }
+            // wait for writing while the answers aren't written and stop reading while there are many of them
+            // or while workers are saturated.
+            session.updateInterest();
+        } catch (Exception e) {
+            session.close();
+        }
+    }
 
+    /**
+     * Execute the client's request in the worker's thread and send the result with the request's ID.
+     * If the command is failed than the client's connection is closed.
+     *
+     * @param session the client's session.
+     * @param request the client's request.
+     */
+    private void runRequest(Session session, Request request) {
+        try {
+            session.send(answers(request));
+        } catch (RuntimeException e) {
+            session.reactor.execute(session::close);
+        }
+    }
+
+    /**
+     * Execute the client's request and get answers with the request's ID.
+     * The command "show" has the stream of answers, other commands have one answer.
+     * The function is shared by all engines.
+     *
+     * @param request the client's request.
+     * @return the stream of answers.
+     */
+    private Iterator<Response> answers(Request request) {
+        // if (the command is "show") than: stream the collection by chunks.
+        if (request.command instanceof Show) {
+            return showChunks(request.id);
+        }
+        return Collections.singletonList(new Response(request.id, runClientCommand(request.command))).iterator();
+    }
+
+    /**
+     * Run client's command.
+     *
+     * @param command the received client's command.
+     * @return the result of the command for sending to the client.
+     */
+    private Object runClientCommand(Command command) {
         // see command's name.
         switch (command.getName()) {
-            // add spaceMarine to queue.
+            // add spaceMarine to the collection.
             case "add":
-                SpaceMarine spaceMarine = ((Add) object).spaceMarine;
-                queue.add(spaceMarine);
-                ObjectSocketChannel.sendObject(channel, null);
-                break;
+                collection.add(((Add) command).spaceMarine);
+                return null;
 
-            // if (the the spaceMarine's less than all spaceMarines from the queue)
-            // than: add that to queue
+            // if (the the spaceMarine's less than all spaceMarines from the collection)
+            // than: add that to the collection.
             case "add_if_min":
-                // get minimal spaceMarine from the queue.
-                spaceMarine = ((AddIfMin) object).spaceMarine;
-                Optional<SpaceMarine> optional = queue.stream().min(SpaceMarine::compareTo);
-                // if (queue isn't empty and new spaceMarine less than the old minimal spaceMarine)
-                if (!optional.isPresent() || spaceMarine.compareTo(optional.get()) < 0) {
-                    // than: add new spaceMarine to the queue.
-                    queue.add(spaceMarine);
-                }
-                ObjectSocketChannel.sendObject(channel, null);
-                break;
+                collection.addIfMin(((AddIfMin) command).spaceMarine);
+                return null;
 
-            // send average of height of spaceMarines from the queue to client.
+            // send average of height of spaceMarines from the collection to client.
             case "average_of_height":
-                String str;
-                if (queue.isEmpty()) {
-                    str = "The average value of the height: 0.";
-                } else {
-                    int result = queue.stream().mapToInt(SpaceMarine::getHeight).sum();
-                    str = "The average value of the height: " + ((double) result) / queue.size() + ".";
+                if (collection.isEmpty()) {
+                    return "The average value of the height: 0.";
+                }
+                return "The average value of the height: " + collection.averageOfHeight() + ".";
+
+            // send counts of spaceMarines by categories to client.
+            case "category_stats":
+                return categoryStatsMessage();
+
+            // send the result of the query over the collection to client.
+            case "query":
+                try {
+                    return queryMessage(((Query) command).text);
+                } catch (IllegalArgumentException e) {
+                    return "query: " + e.getMessage();
                 }
-                ObjectSocketChannel.sendObject(channel, str);
-                break;
 
-            // clear the queue.
+            // clear the collection.
             case "clear":
-                queue.clear();
-                ObjectSocketChannel.sendObject(channel, null);
-                break;
+                collection.clear();
+                return null;
 
-            // send count spaceMarines from the queue greater than the meleeWeapon.
+            // send count spaceMarines from the collection greater than the meleeWeapon.
             case "count_greater_than_melee_weapon":
-                MeleeWeapon meleeWeapon = ((CountGreaterThanMeleeWeapon) object).meleeWeapon;
-                long count = queue.stream()
-                        .filter(sM -> sM.getMeleeWeapon().compareTo(meleeWeapon) > 0)
-                        .count();
-                str = count + " queue's elements have the value \"Melee Weapon\", greater than the given value.";
-                ObjectSocketChannel.sendObject(channel, str);
-                break;
-
-            // send info about the queue to client.
+                MeleeWeapon meleeWeapon = ((CountGreaterThanMeleeWeapon) command).meleeWeapon;
+                return collection.countGreaterThanMeleeWeapon(meleeWeapon)
+                        + " queue's elements have the value \"Melee Weapon\", greater than the given value.";
+
+            // send info about the collection to client.
             case "info":
-                str = "collectionType: PriorityQueue<SpaceMarine>, " +
+                return "collectionType: " + collection + ", " +
                         "createTime: " + new SimpleDateFormat("hh:mm:ss dd-MM-yyyy").format(creationTime) +
-                        ", length: " + queue.size() + ".";
-                ObjectSocketChannel.sendObject(channel, str);
-                break;
+                        ", length: " + collection.size() + ".";
 
-            // remove any spaceMarine from the queue with height less than the height.
+            // remove any spaceMarine from the collection with the height.
             case "remove_any_by_height":
-                int height = ((RemoveAnyByHeight) object).height;
-                Iterator<SpaceMarine> iter = queue.iterator();
-                while (iter.hasNext()) {
-                    SpaceMarine sM = iter.next();
-                    if (sM.getHeight().equals(height)) {
-                        iter.remove();
-                        break;
-                    }
-                }
-                ObjectSocketChannel.sendObject(channel, null);
-                break;
+                collection.removeAnyByHeight(((RemoveAnyByHeight) command).height);
+                return null;
 
             // remove spaceMarine by the ID.
             case "remove_by_id":
-                int id = ((RemoveById) object).id;
-                iter = queue.iterator();
-                while (iter.hasNext()) {
-                    SpaceMarine sM = iter.next();
-                    if (sM.getId() == id) {
-                        iter.remove();
-                        break;
-                    }
-                }
-                ObjectSocketChannel.sendObject(channel, null);
-                break;
+                collection.removeById(((RemoveById) command).id);
+                return null;
 
-            // remove all spaceMarine from the queue greater than the spaceMarine.
+            // remove all spaceMarine from the collection greater than the spaceMarine.
             case "remove_greater":
-                spaceMarine = ((RemoveGreater) object).spaceMarine;
-                queue.removeIf(sM -> sM.compareTo(spaceMarine) > 0);
-                ObjectSocketChannel.sendObject(channel, null);
-                break;
+                collection.removeGreater(((RemoveGreater) command).spaceMarine);
+                return null;
 
-            // send and remove spaceMarine from a head of the queue.
+            // send and remove spaceMarine from a head of the collection.
             case "remove_head":
-                ObjectSocketChannel.sendObject(channel, queue.poll());
-                break;
+                return collection.poll();
 
-            // send the queue in the format JSON to client.
+            // send the collection sorted by height in one chunk (the command is in a batch).
             case "show":
-                List<SpaceMarine> list = queue.stream()
-                        .sorted(Comparator.comparing(SpaceMarine::getHeight))
-                        .collect(Collectors.toList());
-                ObjectSocketChannel.sendObject(channel, gson.toJson(list));
-                break;
+                return new Chunk(0, Arrays.asList(collection.sortedByHeight()), true);
+
+            // send the page of the collection with the cursor of the next page.
+            case "show_page":
+                try {
+                    return showCursors.page((ShowPage) command);
+                } catch (IllegalArgumentException e) {
+                    return "show: " + e.getMessage();
+                }
 
             // update spaceMarine with same ID.
             case "update":
-                Update updateValue = (Update) object;
-                id = updateValue.id;
-                spaceMarine = updateValue.newSpaceMarine;
-                iter = queue.iterator();
-                while (iter.hasNext()) {
-                    SpaceMarine sM = iter.next();
-                    if (sM.getId() == id) {
-                        iter.remove();
-                        break;
-                    }
-                }
-                queue.add(spaceMarine);
-                ObjectSocketChannel.sendObject(channel, null);
-                break;
+                Update updateValue = (Update) command;
+                collection.update(updateValue.id, updateValue.newSpaceMarine);
+                return null;
+
+            // execute all commands of the batch and send the list of their results.
+            case "batch":
+                return runBatch((Batch) command);
 
             //if (the command's not found) than: throw exception.
             default:
@@ -316,6 +442,172 @@ public class ServerConsole extends ModifiedCMD {
         }
     }
 
+    /**
+     * Answer all received datagrams with read-only queries.
+     * Every answer is sent in one datagram with the ID of the request.
+     * Queries which change the collection are answered with the exception, broken datagrams are ignored.
+     * Answers which don't fit into one datagram are replaced with {@link DatagramTooBigException}.
+     * While workers are saturated datagrams aren't read (clients repeat their queries).
+     *
+     * @param key the key of the datagram's channel.
+     */
+    private void runDatagramQueries(SelectionKey key) throws IOException {
+        do {
+            // if (workers are saturated) than: stop reading until they have the room.
+            if (workers.isSaturated()) {
+                key.interestOps(0);
+                workers.whenAvailable(() -> reactors[0].execute(() -> {
+                    if (key.isValid()) {
+                        key.interestOps(SelectionKey.OP_READ);
+                    }
+                }));
+                return;
+            }
+            Pair<SocketAddress, Object> received;
+            try {
+                received = datagramChannel.receive();
+            } catch (ClassNotFoundException | ObjectStreamException | EOFException | RuntimeException | Error e) {
+                // if (the datagram is broken) than: ignore that (errors of decoding are broken datagrams too).
+                continue;
+            }
+            if (received == null) {
+                return;
+            }
+            if (!(received.second instanceof Request)) {
+                continue;
+            }
+            SocketAddress address = received.first;
+            Request request = (Request) received.second;
+            workers.execute(() -> runDatagramQuery(address, request));
+        } while (true);
+    }
+
+    /**
+     * Execute the read-only query in the worker's thread and send the answer by the datagram.
+     *
+     * @param address the client's address.
+     * @param request the client's request.
+     */
+    private void runDatagramQuery(SocketAddress address, Request request) {
+        Object result;
+        // if (the request hasn't the command) than: answer with the exception.
+        if (request.command == null) {
+            result = new IllegalArgumentException("The request hasn't the command.");
+        } else if (request.command instanceof Info
+                || request.command instanceof AverageOfHeight
+                || request.command instanceof CategoryStats
+                || request.command instanceof Query
+                || request.command instanceof CountGreaterThanMeleeWeapon) {
+            try {
+                result = runClientCommand(request.command);
+            } catch (RuntimeException e) {
+                result = new IllegalArgumentException(e.getMessage());
+            }
+        } else {
+            result = new IllegalArgumentException("The command isn't available by datagrams: " + request.command.getName());
+        }
+        // the stack trace doesn't fit into the datagram.
+        if (result instanceof Exception) {
+            ((Exception) result).setStackTrace(new StackTraceElement[0]);
+        }
+        try {
+            try {
+                datagramChannel.send(new Response(request.id, result), address);
+            } catch (DatagramTooBigException e) {
+                // if (the answer doesn't fit into the datagram) than: the client repeats the query through its connection.
+                e.setStackTrace(new StackTraceElement[0]);
+                datagramChannel.send(new Response(request.id, e), address);
+            }
+        } catch (IOException e) {
+            // if (the datagram isn't sent) than: the client will repeat the query.
+        }
+    }
+
+    /**
+     * Get the stream of answers with the collection sorted by height in chunks of {@link ShowCache#CHUNK_SIZE} space marines.
+     * Chunks are taken from the cache, so they are sorted and encoded again only if the collection has been changed.
+     * Every chunk is written when the previous chunks are written to the client's socket.
+     *
+     * @param id the ID of the request.
+     * @return the stream of answers.
+     */
+    private Iterator<Response> showChunks(int id) {
+        Iterator<?> chunks = showCache.chunks().iterator();
+        return new Iterator<Response>() {
+            @Override
+            public boolean hasNext() {
+                return chunks.hasNext();
+            }
+
+            @Override
+            public Response next() {
+                return new Response(id, chunks.next());
+            }
+        };
+    }
+
+    /**
+     * Run all commands of the batch in one pass.
+     * If the batch is atomic than other clients don't see intermediate states of the collection
+     * and if a command fails than the collection is restored
+     * and the exception is returned instead of the results.
+     * Else the exception of the failed command is placed to the list of results.
+     *
+     * @param batch the batch of commands.
+     * @return the list of results or the exception.
+     */
+    private Object runBatch(Batch batch) {
+        // if (the batch isn't atomic) than: other clients' commands can be run between commands of the batch.
+        if (!batch.atomic) {
+            List<Object> results = new ArrayList<>(batch.commands.size());
+            for (Command command : batch.commands) {
+                try {
+                    results.add(runClientCommand(command));
+                } catch (RuntimeException e) {
+                    results.add(e);
+                }
+            }
+            return results;
+        }
+        // else: run all commands with the write lock and roll back them if a command fails.
+        return collection.atomically(() -> {
+            // (the snapshot of the off-heap collection is kept off the heap too).
+            List<SpaceMarine> snapshot = collection.snapshot();
+            List<Object> results = new ArrayList<>(batch.commands.size());
+            for (Command command : batch.commands) {
+                try {
+                    results.add(runClientCommand(command));
+                } catch (RuntimeException e) {
+                    collection.replaceAll(snapshot);
+                    return e;
+                }
+            }
+            return results;
+        });
+    }
+
+    /**
+     * Output statistics of the server's work.
+     *
+     * @param args arguments for the command.
+     */
+    @Override
+    public void stats(String[] args) {
+        // if (the command has parameters) than: print exception and return.
+        if (args == null || args.length != 0) {
+            err.println("stats: this command hasn't parameters.");
+            return;
+        }
+
+        out.println(BufferPool.SHARED);
+        out.println(ObjectSocketChannel.getCompressionStats());
+        out.println(showCache);
+        out.println(showCursors);
+        out.println(collection);
+        out.println(ChapterDictionary.SHARED);
+        out.println(workers);
+    }
+
     /**
      * Output the first item in the collection and deletes it.
      *
@@ -0,0 +1,131 @@
+package ru.itmo.s284719.server;
+
+import ru.itmo.s284719.network.ObjectSocketChannel;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+
+/**
+ * State of the client's connection on the server.
+ * Commands of the client are run one by one by the pool of workers,
+ * their answers are written by the thread of the owning event loop.
+ * The connection isn't read while the pool of workers is saturated.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class Session {
+    /**
+     * The client's connection.
+     */
+    public final ObjectSocketChannel channel;
+    /**
+     * The event loop which owns the client's channel.
+     */
+    public final Reactor reactor;
+    /**
+     * The executor of client's commands in the order of their receiving.
+     */
+    public final Executor executor;
+    /**
+     * The pool of workers.
+     */
+    private final WorkerPool workers;
+    /**
+     * The field with information about waiting for the room in the pool of workers
+     * (it's used only by the thread of the event loop).
+     */
+    private boolean paused = false;
+
+    /**
+     * Constructor with all parameters.
+     *
+     * @param channel the client's connection.
+     * @param reactor the event loop which owns the client's channel.
+     * @param workers the pool of workers.
+     */
+    public Session(ObjectSocketChannel channel, Reactor reactor, WorkerPool workers) {
+        this.channel = channel;
+        this.reactor = reactor;
+        this.workers = workers;
+        this.executor = new SerialExecutor(workers);
+    }
+
+    /**
+     * Send the answer to the client from the thread of the event loop.
+     * The function can be called from any thread.
+     *
+     * @param answer the answer.
+     */
+    public void send(Object answer) {
+        reactor.execute(() -> {
+            try {
+                channel.queueObject(answer);
+                updateInterest();
+            } catch (Exception e) {
+                close();
+            }
+        });
+    }
+
+    /**
+     * Send the stream of answers to the client from the thread of the event loop.
+     * The function can be called from any thread.
+     *
+     * @param answers the stream of answers.
+     */
+    public void send(Iterator<?> answers) {
+        reactor.execute(() -> {
+            try {
+                channel.queueObjects(answers);
+                updateInterest();
+            } catch (Exception e) {
+                close();
+            }
+        });
+    }
+
+    /**
+     * Set operations of the selector which the connection waits for.
+     * If the pool of workers is saturated than the connection isn't read until the pool has the room.
+     * The function is called by the thread of the event loop.
+     */
+    public void updateInterest() {
+        SelectionKey key = reactor.keyFor(channel.channel());
+        if (key == null || !key.isValid()) {
+            return;
+        }
+        int ops = channel.interestOps();
+        // if (workers are saturated) than: stop reading and wait for the room once.
+        if ((ops & SelectionKey.OP_READ) != 0 && workers.isSaturated()) {
+            ops &= ~SelectionKey.OP_READ;
+            if (!paused) {
+                paused = true;
+                workers.whenAvailable(() -> reactor.execute(this::resume));
+            }
+        }
+        key.interestOps(ops);
+    }
+
+    /**
+     * Read the connection again when the pool of workers has the room.
+     */
+    private void resume() {
+        paused = false;
+        updateInterest();
+    }
+
+    /**
+     * Close the client's connection.
+     */
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // for logging.
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package ru.itmo.s284719.server;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded pool of threads for executing clients' commands out of threads of event loops.
+ * Tasks are never run by the thread which submits them: when the queue reaches its capacity the pool is saturated,
+ * event loops stop reading new commands (see {@link #isSaturated()}) and they are woken by {@link #whenAvailable(Runnable)}
+ * when the queue is drained to three quarters of the capacity. Tasks which are submitted by workers
+ * (the next commands of clients) are queued over the capacity, so they aren't lost.
+ * The pool counts the depth of the queue and the time of waiting of tasks in that.
+ *
+ * @version 0.1
+ * @author Danhout.
+ */
+public class WorkerPool implements Executor {
+    /**
+     * The executor with threads.
+     */
+    private final ThreadPoolExecutor executor;
+    /**
+     * The depth of the queue at which the pool is saturated.
+     */
+    private final int capacity;
+    /**
+     * The depth of the queue at which waiters are woken.
+     */
+    private final int resumeDepth;
+    /**
+     * The tasks waiting for the room in the queue.
+     */
+    private final Queue<Runnable> waiters = new ConcurrentLinkedQueue<>();
+    /**
+     * The count of started tasks.
+     */
+    private final LongAdder tasks = new LongAdder();
+    /**
+     * The total time of waiting of started tasks in nanoseconds.
+     */
+    private final LongAdder waitNanos = new LongAdder();
+    /**
+     * The maximal time of waiting of one task in nanoseconds.
+     */
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    /**
+     * The maximal depth of the queue.
+     */
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    /**
+     * Constructor with all parameters.
+     *
+     * @param threads the count of threads.
+     * @param capacity the capacity of the queue of tasks.
+     */
+    public WorkerPool(int threads, int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.resumeDepth = this.capacity - this.capacity / 4 - 1;
+        AtomicInteger number = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                task -> {
+                    Thread thread = new Thread(task, "worker-" + number.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Run the task in a thread of the pool.
+     *
+     * @param task the task.
+     */
+    @Override
+    public void execute(Runnable task) {
+        long submitted = System.nanoTime();
+        executor.execute(() -> {
+            long wait = System.nanoTime() - submitted;
+            tasks.increment();
+            waitNanos.add(wait);
+            maxWaitNanos.accumulateAndGet(wait, Math::max);
+            // the task has been taken from the queue, so the queue may have the room for waiters.
+            if (!waiters.isEmpty() && hasRoom()) {
+                wakeWaiters();
+            }
+            task.run();
+        });
+        maxQueueDepth.accumulateAndGet(executor.getQueue().size(), Math::max);
+    }
+
+    /**
+     * Check that the queue has reached its capacity, so new commands mustn't be read.
+     *
+     * @return true if the pool is saturated.
+     */
+    public boolean isSaturated() {
+        return executor.getQueue().size() >= capacity;
+    }
+
+    /**
+     * Run the waiter once when the queue has the room for new commands.
+     * The waiter is run by the worker's thread or by the calling thread, so it must be short
+     * (e.g. give the task to the event loop).
+     *
+     * @param waiter the waiter.
+     */
+    public void whenAvailable(Runnable waiter) {
+        waiters.add(waiter);
+        // if (the queue has been drained before the waiter was added) than: wake it at once.
+        if (hasRoom()) {
+            wakeWaiters();
+        }
+    }
+
+    /**
+     * Check that the queue is drained enough for waking waiters.
+     *
+     * @return true if the depth of the queue isn't greater than the depth of waking.
+     */
+    private boolean hasRoom() {
+        return executor.getQueue().size() <= resumeDepth;
+    }
+
+    /**
+     * Run all waiters.
+     */
+    private void wakeWaiters() {
+        Runnable waiter;
+        while ((waiter = waiters.poll()) != null) {
+            waiter.run();
+        }
+    }
+
+    /**
+     * Get the count of tasks waiting in the queue.
+     *
+     * @return the depth of the queue.
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Get the average time of waiting of tasks in the queue.
+     *
+     * @return the time in milliseconds.
+     */
+    public double getAverageWait() {
+        long count = tasks.sum();
+        return count == 0 ? 0 : waitNanos.sum() / 1e6 / count;
+    }
+
+    /**
+     * Get the maximal time of waiting of one task in the queue.
+     *
+     * @return the time in milliseconds.
+     */
+    public double getMaxWait() {
+        return maxWaitNanos.get() / 1e6;
+    }
+
+    /**
+     * Get the string with statistics of the pool.
+     *
+     * @return the string with statistics.
+     */
+    @Override
+    public String toString() {
+        return String.format("Workers: {threads: %d, active: %d, queue: %d, max queue: %d, tasks: %d, "
+                        + "average wait: %.3f ms, max wait: %.3f ms}",
+                executor.getPoolSize(), executor.getActiveCount(), getQueueDepth(), maxQueueDepth.get(),
+                tasks.sum(), getAverageWait(), getMaxWait());
+    }
+}